@@ -0,0 +1,67 @@
+package com.gossip.arrienda_tu_finca;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String PROPERTIES_BY_MUNICIPALITY = "propertiesByMunicipality";
+    public static final String PROPERTY_BY_ID = "propertyById";
+    public static final String IDEMPOTENT_RESPONSES = "idempotentResponses";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${arrienda.cache.property.max-weight-bytes:16777216}") long propertyMaxWeightBytes,
+            @Value("${arrienda.cache.property.ttl-minutes:10}") long propertyTtlMinutes,
+            @Value("${arrienda.idempotency.max-entries:10000}") long idempotencyMaxEntries,
+            @Value("${arrienda.idempotency.ttl:PT24H}") Duration idempotencyTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(PROPERTIES_BY_MUNICIPALITY, Caffeine.newBuilder()
+                .maximumSize(500)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(PROPERTY_BY_ID, Caffeine.newBuilder()
+                .maximumWeight(propertyMaxWeightBytes)
+                .weigher((Object id, Object property) -> estimateSize((PropertyDTO) property))
+                .expireAfterWrite(Duration.ofMinutes(propertyTtlMinutes))
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(IDEMPOTENT_RESPONSES, Caffeine.newBuilder()
+                .maximumSize(idempotencyMaxEntries)
+                .expireAfterWrite(idempotencyTtl)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+
+    /**
+     * Approximates the bytes a PropertyDTO takes on the heap, the strings are the variable part
+     * @param property
+     * @return int with the estimated size in bytes
+     */
+    static int estimateSize(PropertyDTO property) {
+        int size = 160;
+        size += length(property.getName()) + length(property.getDescription()) + length(property.getMunicipality())
+                + length(property.getDepartment()) + length(property.getTypeOfEntrance()) + length(property.getAddress())
+                + length(property.getLink()) + length(property.getOwnerEmail());
+        if (property.getImages() != null) {
+            size += 40 * property.getImages().size();
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+}
@@ -0,0 +1,15 @@
+package com.gossip.arrienda_tu_finca;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled jobs, like the expiration of the rental requests.
+ * Tests turn it off with arrienda.scheduling.enabled=false and run the jobs by hand
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "arrienda.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
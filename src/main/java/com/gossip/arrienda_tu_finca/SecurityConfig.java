@@ -4,6 +4,7 @@ import java.util.Arrays;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -35,12 +36,15 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> 
                 auth
+                    .requestMatchers(HttpMethod.POST, "/api/v3/property/import").hasRole("HOST")
+                    .requestMatchers(HttpMethod.PUT, "/api/v3/property/*/cover/*").hasRole("HOST")
                     .requestMatchers("/api/v3/property/**").permitAll()
                     .requestMatchers("/api/v3/user/info/**").permitAll()
                     .requestMatchers("/api/v3/user/login").permitAll()
                     .requestMatchers("/api/v3/user/create").permitAll()
                     .requestMatchers("/api/v3/user/uploadPhoto/**").permitAll()
                     .requestMatchers("/api/v3/image/**").permitAll()
+                    .requestMatchers("/api/v3/rental-requests/payments/callback").permitAll()
                     .requestMatchers("/api/v3/rental-requests/create/**").hasRole("RENTER")
                     .requestMatchers("/api/v3/rental-requests/host/**").hasRole("HOST")
                     .requestMatchers("/api/v3/rental-requests/renter/**").hasRole("RENTER")
@@ -56,12 +60,15 @@ public class SecurityConfig {
                     .requestMatchers("/api/v3/rental-requests/renter-comments/**").hasRole("HOST")
                     .requestMatchers("/api/v3/rental-requests/host-comments/**").hasRole("RENTER")
                     .requestMatchers("/api/v3/rental-requests/property-comments/**").hasRole("RENTER")
+                    .requestMatchers(HttpMethod.POST, "/property/import").hasRole("HOST")
+                    .requestMatchers(HttpMethod.PUT, "/property/*/cover/*").hasRole("HOST")
                     .requestMatchers("/property/**").permitAll()
                     .requestMatchers("/user/info/**").permitAll()
                     .requestMatchers("/user/login").permitAll()
                     .requestMatchers("/user/create").permitAll()
                     .requestMatchers("/user/uploadPhoto/**").permitAll()
                     .requestMatchers("/image/**").permitAll()
+                    .requestMatchers("/rental-requests/payments/callback").permitAll()
                     .requestMatchers("/rental-requests/create/**").hasRole("RENTER")
                     .requestMatchers("/rental-requests/host/**").hasRole("HOST")
                     .requestMatchers("/rental-requests/renter/**").hasRole("RENTER")
@@ -102,7 +109,7 @@ public class SecurityConfig {
             "http://front.local:4200"
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-Requested-With", "Idempotency-Key", "Last-Event-ID"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
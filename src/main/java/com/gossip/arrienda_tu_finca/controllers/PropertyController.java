@@ -1,24 +1,41 @@
 package com.gossip.arrienda_tu_finca.controllers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.gossip.arrienda_tu_finca.dto.CursorPageDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyCalendarDTO;
+import com.gossip.arrienda_tu_finca.dto.PriceQuoteDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyCreateDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyFacetsDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyImportReportDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertySearchDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyUpdateDTO;
+import com.gossip.arrienda_tu_finca.services.PriceQuoteService;
+import com.gossip.arrienda_tu_finca.services.PropertyImportService;
 import com.gossip.arrienda_tu_finca.services.PropertyService;
 
 import jakarta.validation.Valid;
@@ -27,10 +44,14 @@ import jakarta.validation.Valid;
 @RequestMapping("/property")
 public class PropertyController {
     private PropertyService propertyService;
+    private PropertyImportService propertyImportService;
+    private PriceQuoteService priceQuoteService;
 
     @Autowired
-    public PropertyController(PropertyService propertyService) {
+    public PropertyController(PropertyService propertyService, PropertyImportService propertyImportService, PriceQuoteService priceQuoteService) {
         this.propertyService = propertyService;
+        this.propertyImportService = propertyImportService;
+        this.priceQuoteService = priceQuoteService;
     }
 
     /**
@@ -45,7 +66,7 @@ public class PropertyController {
     }
 
     /**
-     * Obtains the information of all properties
+     * Obtains the information of all properties, capped to a maximum amount
      * @return List<PropertyDTO> with the information of all properties as a JSON
      */
     @GetMapping
@@ -54,6 +75,104 @@ public class PropertyController {
         return ResponseEntity.ok(properties);
     }
 
+    /**
+     * Obtains a page of properties, the nextCursor of the response is used to ask for the next page
+     * @param size
+     * @param cursor
+     * @param sort id, rating or price
+     * @return CursorPageDTO<PropertyDTO> with the properties of the page as a JSON
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<PropertyDTO>> getPropertiesPage(@RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "id") String sort) {
+        CursorPageDTO<PropertyDTO> page = propertyService.getPropertiesPage(size, cursor, sort);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Searches the properties that match the filters and have no approved or paid rental request between the given dates
+     * @param search municipality, department, minResidents, minPrice, maxPrice, minRooms, minBathrooms, isPetFriendly, hasPool and hasGril
+     * @param arrivalDate
+     * @param departureDate
+     * @param size
+     * @param cursor
+     * @return CursorPageDTO<PropertyDTO> with the free properties as a JSON
+     */
+    @GetMapping("/available")
+    public ResponseEntity<CursorPageDTO<PropertyDTO>> searchAvailableProperties(@ModelAttribute PropertySearchDTO search,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate arrivalDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate departureDate,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor) {
+        CursorPageDTO<PropertyDTO> page = propertyService.searchAvailableProperties(search, arrivalDate, departureDate, size, cursor);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Quotes a stay in a property without reading the database, the booking form asks again on every change of dates
+     * @param id
+     * @param arrivalDate
+     * @param departureDate
+     * @param amountOfResidents
+     * @return PriceQuoteDTO with the amount of the stay and its parts as a JSON
+     */
+    @GetMapping("/{id}/quote")
+    public ResponseEntity<PriceQuoteDTO> quote(@PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate arrivalDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate departureDate,
+            @RequestParam(required = false) Integer amountOfResidents) {
+        return ResponseEntity.ok(priceQuoteService.quote(id, arrivalDate, departureDate, amountOfResidents));
+    }
+
+    /**
+     * Obtains the calendar of taken days of one or many properties, for a month view or to compare properties
+     * @param propertyIds
+     * @param from first day of the window, today or later
+     * @param to last day of the window, included
+     * @return List<PropertyCalendarDTO> with the taken days of each property as a JSON
+     */
+    @GetMapping("/calendar")
+    public ResponseEntity<List<PropertyCalendarDTO>> getCalendars(@RequestParam List<Long> propertyIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(propertyService.getCalendars(propertyIds, from, to));
+    }
+
+    /**
+     * Counts the available properties by facet for the search sidebar
+     * @param filters selected values, any of municipality, department, residents, price, petFriendly, pool and grill
+     * @return PropertyFacetsDTO with the amount of properties that match the filters and the counts of every facet value as a JSON
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<PropertyFacetsDTO> getFacets(@RequestParam Map<String, String> filters) {
+        return ResponseEntity.ok(propertyService.getFacets(filters));
+    }
+
+    /**
+     * Exports all the properties, they are written to the response while they are read
+     * @param format ndjson (one property per line) or json (a single array)
+     * @return StreamingResponseBody with the properties ordered by id
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProperties(@RequestParam(defaultValue = "ndjson") String format) {
+        MediaType mediaType = propertyService.isNdjsonExport(format) ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+        StreamingResponseBody body = out -> propertyService.exportProperties(out, format);
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    /**
+     * Searches the properties that match all the given filters in a single query
+     * @param search municipality, department, minResidents, minPrice, maxPrice, minRooms, minBathrooms, isPetFriendly, hasPool, hasGril and isAvailable
+     * @param size
+     * @param cursor
+     * @return CursorPageDTO<PropertyDTO> with the properties that match the filters as a JSON
+     */
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageDTO<PropertyDTO>> searchProperties(@ModelAttribute PropertySearchDTO search,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor) {
+        CursorPageDTO<PropertyDTO> page = propertyService.searchProperties(search, size, cursor);
+        return ResponseEntity.ok(page);
+    }
+
     /**
      * Creates a new property
      * @param propertyCreateDTO
@@ -65,6 +184,22 @@ public class PropertyController {
         return ResponseEntity.ok(createdProperty);
     }
 
+    /**
+     * Creates many properties at once, the body is read as it arrives
+     * @param contentType text/csv (with a header row) or application/x-ndjson (one PropertyCreateDTO per line)
+     * @param body
+     * @return PropertyImportReportDTO with the amount of imported rows and the errors of the rows that were skipped
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<PropertyImportReportDTO> importProperties(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        try {
+            boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+            return ResponseEntity.ok(propertyImportService.importProperties(body, csv));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Updates the information of a property with a given id
      * @param id
@@ -104,6 +239,18 @@ public class PropertyController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Chooses the cover of a property among the images already uploaded to it
+     * @param id
+     * @param imageId
+     * @return ResponseEntity<Void> with status 200
+     */
+    @PutMapping("/{id}/cover/{imageId}")
+    public ResponseEntity<Void> setCoverImage(@PathVariable Long id, @PathVariable int imageId) {
+        propertyService.setCoverImage(id, imageId);
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Obtains the information of all properties with a given name
      * @return List<PropertyDTO> with the information of all properties with a given name as a JSON
@@ -1,45 +1,71 @@
 package com.gossip.arrienda_tu_finca.controllers;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.dto.CursorPageDTO;
+import com.gossip.arrienda_tu_finca.dto.PaymentDTO;
+import com.gossip.arrienda_tu_finca.dto.PaymentStatusDTO;
 import com.gossip.arrienda_tu_finca.dto.RentalRequestCreateDTO;
 import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestSearchDTO;
 import com.gossip.arrienda_tu_finca.exceptions.RentalRequestNotFoundException;
+import com.gossip.arrienda_tu_finca.services.IdempotencyService;
+import com.gossip.arrienda_tu_finca.services.PaymentService;
+import com.gossip.arrienda_tu_finca.services.RentalRequestEventStream;
 import com.gossip.arrienda_tu_finca.services.RentalRequestService;
 
 @RestController
 @RequestMapping("/rental-requests")
 public class RentalRequestController {
     private final RentalRequestService rentalRequestService;
+    private final RentalRequestEventStream rentalRequestEventStream;
+    private final IdempotencyService idempotencyService;
+    private final PaymentService paymentService;
 
     @Autowired
-    public RentalRequestController(RentalRequestService rentalRequestService) {
+    public RentalRequestController(RentalRequestService rentalRequestService, RentalRequestEventStream rentalRequestEventStream,
+            IdempotencyService idempotencyService, PaymentService paymentService) {
         this.rentalRequestService = rentalRequestService;
+        this.rentalRequestEventStream = rentalRequestEventStream;
+        this.idempotencyService = idempotencyService;
+        this.paymentService = paymentService;
     }
 
     /**
-     * Creates a rental request from a renter to a property
+     * Creates a rental request from a renter to a property. A retry with the same Idempotency-Key
+     * receives the first response and does not create the request again
      * @param propertyId
      * @param rentalRequest
+     * @param idempotencyKey
+     * @param authentication
      * @return
      */
     @PostMapping("/create/{propertyId}")
-    public ResponseEntity<String> createRequest(@PathVariable Long propertyId, @RequestBody RentalRequestCreateDTO rentalRequest) {
-        rentalRequestService.createRequest(propertyId, rentalRequest);
-        return new ResponseEntity<>("Solicitud de arriendo creada", HttpStatus.OK);
+    public ResponseEntity<String> createRequest(@PathVariable Long propertyId, @RequestBody RentalRequestCreateDTO rentalRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey, Authentication authentication) {
+        return idempotencyService.execute("create", authentication.getName(), idempotencyKey, List.of(propertyId, rentalRequest), () -> {
+            rentalRequestService.createRequest(propertyId, rentalRequest);
+            return new ResponseEntity<>("Solicitud de arriendo creada", HttpStatus.OK);
+        });
     }
 
     /**
@@ -75,6 +101,66 @@ public class RentalRequestController {
         return new ResponseEntity<>(requests, HttpStatus.OK);
     }
 
+    /**
+     * Obtains a page of the rental requests of a host, the nextCursor of the response is used to ask for the next page
+     * @param email
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo
+     * @param size
+     * @param cursor
+     * @param sort newest or oldest
+     * @return CursorPageDTO<RentalRequestDto> with the requests of the page as a JSON
+     */
+    @GetMapping("/host/page")
+    public ResponseEntity<CursorPageDTO<RentalRequestDto>> getRequestsPageByHost(@RequestParam String email, @ModelAttribute RentalRequestSearchDTO search,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "newest") String sort) {
+        return ResponseEntity.ok(rentalRequestService.getRequestsPageByHost(email, search, size, cursor, sort));
+    }
+
+    /**
+     * Obtains a page of the rental requests of a renter, the nextCursor of the response is used to ask for the next page
+     * @param email
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo
+     * @param size
+     * @param cursor
+     * @param sort newest or oldest
+     * @return CursorPageDTO<RentalRequestDto> with the requests of the page as a JSON
+     */
+    @GetMapping("/renter/page")
+    public ResponseEntity<CursorPageDTO<RentalRequestDto>> getRequestsPageByRenter(@RequestParam String email, @ModelAttribute RentalRequestSearchDTO search,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "newest") String sort) {
+        return ResponseEntity.ok(rentalRequestService.getRequestsPageByRenter(email, search, size, cursor, sort));
+    }
+
+    /**
+     * Obtains a page of the rental requests of a property, the nextCursor of the response is used to ask for the next page
+     * @param propertyId
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo
+     * @param size
+     * @param cursor
+     * @param sort newest or oldest
+     * @return CursorPageDTO<RentalRequestDto> with the requests of the page as a JSON
+     */
+    @GetMapping("/property/{propertyId}/page")
+    public ResponseEntity<CursorPageDTO<RentalRequestDto>> getRequestsPageByProperty(@PathVariable Long propertyId, @ModelAttribute RentalRequestSearchDTO search,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "newest") String sort) {
+        return ResponseEntity.ok(rentalRequestService.getRequestsPageByProperty(propertyId, search, size, cursor, sort));
+    }
+
+    /**
+     * Opens a Server-Sent Events stream with the changes of the rental requests of the authenticated user,
+     * as host or as renter. The browser sends Last-Event-ID when it reconnects to receive what it missed
+     * @param authentication
+     * @param lastEventId
+     * @return SseEmitter with one rental-request event per change, or a reset event if the missed changes were discarded
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(Authentication authentication, @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return rentalRequestEventStream.subscribe(authentication.getName(), lastEventId);
+    }
+
     /**
      * A renter cancels a rental request
      * @param requestId
@@ -124,18 +210,50 @@ public class RentalRequestController {
     }
 
     /**
-     * A renter pays a rental request 
+     * A renter pays a rental request. The charge is sent to the payment gateway in the background and the request
+     * is marked as paid when the gateway confirms it, the client follows it with GET /pay/{requestId}/status.
+     * A retry with the same Idempotency-Key receives the first response
      * @param requestId
-     * @return
+     * @param paymentDto bank and account number of the renter
+     * @param idempotencyKey
+     * @param authentication
+     * @return ResponseEntity<String> with 202 when the payment is queued
      */
     @PutMapping("/pay/{requestId}")
-    public ResponseEntity<String> payRequest(@PathVariable Long requestId) {
-        try {
-            rentalRequestService.payRequest(requestId);
-            return new ResponseEntity<>("Solicitud de arriendo pagada", HttpStatus.OK);
-        } catch (RentalRequestNotFoundException e) {
-            return new ResponseEntity<>("Solicitud de arriendo no encontrada", HttpStatus.NOT_FOUND);
-        }
+    public ResponseEntity<String> payRequest(@PathVariable Long requestId, @RequestBody(required = false) PaymentDTO paymentDto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey, Authentication authentication) {
+        return idempotencyService.execute("pay", authentication.getName(), idempotencyKey, Arrays.asList(requestId, paymentDto), () -> {
+            try {
+                paymentService.submit(requestId, paymentDto);
+                return new ResponseEntity<>("Pago en proceso", HttpStatus.ACCEPTED);
+            } catch (RentalRequestNotFoundException e) {
+                return new ResponseEntity<>("Solicitud de arriendo no encontrada", HttpStatus.NOT_FOUND);
+            }
+        });
+    }
+
+    /**
+     * Obtains the state of the last payment of a rental request of the authenticated user
+     * @param requestId
+     * @param authentication
+     * @return ResponseEntity<PaymentStatusDTO> with the state of the payment as a JSON
+     */
+    @GetMapping("/pay/{requestId}/status")
+    public ResponseEntity<PaymentStatusDTO> getPaymentStatus(@PathVariable Long requestId, Authentication authentication) {
+        return ResponseEntity.ok(paymentService.getStatus(requestId, authentication.getName()));
+    }
+
+    /**
+     * Receives the result of a pending charge from the payment gateway. The gateway does not log in, it signs
+     * the body with the shared secret and the signature is checked before the result is applied
+     * @param callback body of the callback, a PaymentCallbackDTO in JSON
+     * @param signature HMAC of the body sent by the gateway
+     * @return ResponseEntity<PaymentStatusDTO> with the state of the payment after the result
+     */
+    @PostMapping("/payments/callback")
+    public ResponseEntity<PaymentStatusDTO> paymentCallback(@RequestBody String callback,
+            @RequestHeader(value = PaymentService.SIGNATURE_HEADER, required = false) String signature) {
+        return ResponseEntity.ok(paymentService.handleSignedCallback(callback, signature));
     }
 
     /**
@@ -206,4 +324,43 @@ public class RentalRequestController {
         List<CommentDTO> comments = rentalRequestService.getPropertyComments(propertyId);
         return new ResponseEntity<>(comments, HttpStatus.OK);
     }
+
+    /**
+     * Obtains a page of the comments that rate a renter, newest first, the nextCursor of the response is used to ask for the next page
+     * @param email
+     * @param size
+     * @param cursor
+     * @return CursorPageDTO<CommentDTO> with the comments of the page as a JSON
+     */
+    @GetMapping("/renter-comments/page")
+    public ResponseEntity<CursorPageDTO<CommentDTO>> getRenterCommentsPage(@RequestParam String email,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(rentalRequestService.getRenterCommentsPage(email, size, cursor));
+    }
+
+    /**
+     * Obtains a page of the comments that rate a host, newest first, the nextCursor of the response is used to ask for the next page
+     * @param email
+     * @param size
+     * @param cursor
+     * @return CursorPageDTO<CommentDTO> with the comments of the page as a JSON
+     */
+    @GetMapping("/host-comments/page")
+    public ResponseEntity<CursorPageDTO<CommentDTO>> getHostCommentsPage(@RequestParam String email,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(rentalRequestService.getHostCommentsPage(email, size, cursor));
+    }
+
+    /**
+     * Obtains a page of the comments that rate a property, newest first, the nextCursor of the response is used to ask for the next page
+     * @param propertyId
+     * @param size
+     * @param cursor
+     * @return CursorPageDTO<CommentDTO> with the comments of the page as a JSON
+     */
+    @GetMapping("/property-comments/{propertyId}/page")
+    public ResponseEntity<CursorPageDTO<CommentDTO>> getPropertyCommentsPage(@PathVariable Long propertyId,
+            @RequestParam(required = false) Integer size, @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(rentalRequestService.getPropertyCommentsPage(propertyId, size, cursor));
+    }
 }
\ No newline at end of file
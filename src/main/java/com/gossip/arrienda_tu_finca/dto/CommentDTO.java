@@ -10,7 +10,13 @@ import lombok.Setter;
 @Setter
 @NoArgsConstructor
 public class CommentDTO {
+    private Long id;
     private String content;
     private int rating;
     private String authorEmail;
+    private String authorName;
+
+    public CommentDTO(String content, int rating, String authorEmail) {
+        this(null, content, rating, authorEmail, null);
+    }
 }
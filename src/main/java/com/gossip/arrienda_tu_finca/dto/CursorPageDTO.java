@@ -0,0 +1,18 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private int size;
+    private String nextCursor;
+}
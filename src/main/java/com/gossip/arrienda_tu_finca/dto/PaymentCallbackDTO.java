@@ -0,0 +1,18 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import com.gossip.arrienda_tu_finca.services.PaymentGateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PaymentCallbackDTO {
+    private String reference;
+    private PaymentGateway.Outcome outcome;
+    private String message;
+}
@@ -0,0 +1,22 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class PaymentStatusDTO {
+    private Long paymentId;
+    private Long requestId;
+    private String status;
+    private int attempts;
+    private String reference;
+    private String message;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PriceQuoteDTO {
+    private Long propertyId;
+    private LocalDate arrivalDate;
+    private LocalDate departureDate;
+    private int nights;
+    private Integer amountOfResidents;
+    private Double pricePerNight;
+    // Noches por precio por noche, sin recargos
+    private double baseAmount;
+    private double highSeasonSurcharge;
+    private double extraResidentsSurcharge;
+    private double amount;
+}
@@ -0,0 +1,19 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertyCalendarDTO {
+    private Long propertyId;
+    private LocalDate from;
+    private LocalDate to;
+    // Noches ocupadas por solicitudes aprobadas o pagadas dentro de la ventana
+    private List<LocalDate> takenDays;
+}
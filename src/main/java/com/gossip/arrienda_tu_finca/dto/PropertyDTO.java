@@ -1,5 +1,7 @@
 package com.gossip.arrienda_tu_finca.dto;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
@@ -29,7 +31,16 @@ public class PropertyDTO {
     private boolean hasPool;
     private boolean hasGril;
     private String ownerEmail;
-    private String imageIds;
     private double rating;
+    // Galeria ordenada, exactamente una de las imagenes es la portada
+    private List<PropertyImageDTO> images;
+
+    // Usado por las consultas de proyeccion, las imagenes se cargan aparte en lote
+    public PropertyDTO(Long id, String name, String description, String municipality, String department, String typeOfEntrance,
+            String address, String link, boolean isAvailable, Double pricePerNight, int amountOfRooms, int amountOfBathrooms,
+            int amountOfResidents, boolean isPetFriendly, boolean hasPool, boolean hasGril, String ownerEmail, double rating) {
+        this(id, name, description, municipality, department, typeOfEntrance, address, link, isAvailable, pricePerNight, amountOfRooms,
+                amountOfBathrooms, amountOfResidents, isPetFriendly, hasPool, hasGril, ownerEmail, rating, null);
+    }
 }
 
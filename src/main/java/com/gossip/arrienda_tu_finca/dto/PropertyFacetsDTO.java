@@ -0,0 +1,17 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertyFacetsDTO {
+    // Propiedades disponibles que cumplen todos los filtros
+    private int total;
+    // Cantidad de propiedades por valor de cada faceta
+    private Map<String, Map<String, Integer>> facets;
+}
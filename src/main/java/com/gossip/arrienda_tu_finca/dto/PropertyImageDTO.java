@@ -0,0 +1,22 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertyImageDTO {
+    @JsonIgnore
+    private Long propertyId;
+    private int imageId;
+    private int displayOrder;
+    private boolean isCover;
+}
@@ -0,0 +1,13 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertyImportErrorDTO {
+    private int row;
+    private String message;
+}
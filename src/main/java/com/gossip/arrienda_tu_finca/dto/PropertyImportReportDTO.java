@@ -0,0 +1,17 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertyImportReportDTO {
+    private int imported;
+    private int failed;
+    // Solo las primeras filas con error, failed tiene el total
+    private List<PropertyImportErrorDTO> errors;
+}
@@ -0,0 +1,22 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PropertySearchDTO {
+    private String municipality;
+    private String department;
+    private Integer minResidents;
+    private Double minPrice;
+    private Double maxPrice;
+    private Integer minRooms;
+    private Integer minBathrooms;
+    private Boolean isPetFriendly;
+    private Boolean hasPool;
+    private Boolean hasGril;
+    private Boolean isAvailable;
+}
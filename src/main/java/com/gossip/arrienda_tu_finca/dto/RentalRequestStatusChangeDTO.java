@@ -0,0 +1,16 @@
+package com.gossip.arrienda_tu_finca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class RentalRequestStatusChangeDTO {
+    private Long requestId;
+    private Long propertyId;
+    private String status;
+}
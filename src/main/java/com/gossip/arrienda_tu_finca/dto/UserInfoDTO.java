@@ -1,5 +1,7 @@
 package com.gossip.arrienda_tu_finca.dto;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -9,6 +11,7 @@ import lombok.Setter;
 @NoArgsConstructor
 @Getter
 @Setter
+@JsonPropertyOrder({"id", "email", "name", "surname", "phone", "ratingHost", "ratingRenter", "imageId", "host", "renter"})
 public class UserInfoDTO {
     private Long id;
     private String email;
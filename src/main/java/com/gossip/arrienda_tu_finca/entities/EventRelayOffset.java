@@ -0,0 +1,25 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Id of the last entry of the rental request event log delivered to a consumer
+ */
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "event_relay_offsets")
+public class EventRelayOffset {
+    @Id
+    private String consumer;
+
+    private long lastEventId;
+}
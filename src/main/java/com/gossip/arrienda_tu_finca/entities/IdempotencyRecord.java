@@ -0,0 +1,43 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * First response given to an Idempotency-Key, the retries with the same key receive it again until it expires
+ */
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "idempotency_keys", indexes = {
+    @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt")
+})
+public class IdempotencyRecord {
+    // Operacion y llave enviada por el cliente, por ejemplo pay:5f0c...
+    @Id
+    @Column(length = 255)
+    private String idempotencyKey;
+
+    // SHA-256 de la operacion y su cuerpo, detecta una llave reutilizada en otra solicitud
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    private int statusCode;
+
+    @Column(length = 2000)
+    private String body;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,53 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Charge of a rental request sent to the payment gateway. The request is only marked as paid
+ * when the gateway confirms the charge
+ */
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "payments", indexes = {
+    @Index(name = "idx_payments_request", columnList = "requestId, id"),
+    @Index(name = "idx_payments_status", columnList = "status"),
+    @Index(name = "idx_payments_reference", columnList = "gatewayReference")
+})
+public class Payment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long requestId;
+    private Double amount;
+    private String bank;
+    private Integer accountNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private PaymentStatus status;
+    private int attempts;
+    // Identificador del cobro en la pasarela, usado por la consulta de estado y por el callback
+    private String gatewayReference;
+    private String message;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
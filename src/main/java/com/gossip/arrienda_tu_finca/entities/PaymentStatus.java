@@ -0,0 +1,13 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+/**
+ * States of a payment. QUEUED and PROCESSING wait for a worker, PENDING waits for the confirmation of the gateway,
+ * the others are final. REFUND_REQUIRED is a charge the gateway confirmed for a request that can no longer be paid
+ */
+public enum PaymentStatus {
+    QUEUED, PROCESSING, PENDING, CONFIRMED, DECLINED, FAILED, REFUND_REQUIRED;
+
+    public boolean isFinal() {
+        return this == CONFIRMED || this == DECLINED || this == FAILED || this == REFUND_REQUIRED;
+    }
+}
@@ -1,10 +1,12 @@
 package com.gossip.arrienda_tu_finca.entities;
 
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -20,7 +22,13 @@ import lombok.ToString;
 @Getter
 @Setter
 @ToString
-@Table(name = "property")
+@Table(name = "property", indexes = {
+    @Index(name = "idx_property_rating_id", columnList = "rating, id"),
+    @Index(name = "idx_property_price_id", columnList = "pricePerNight, id"),
+    @Index(name = "idx_property_municipality_search", columnList = "municipality, isAvailable, amountOfResidents, pricePerNight"),
+    @Index(name = "idx_property_department_search", columnList = "department, isAvailable, amountOfResidents, pricePerNight"),
+    @Index(name = "idx_property_available_price", columnList = "isAvailable, pricePerNight")
+})
 public class Property {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -42,10 +50,14 @@ public class Property {
     private boolean hasPool;
     private boolean hasGril;
 
+    // Formato anterior de las imagenes (ids separados por coma), solo lo lee PropertyImageMigration
     private String imageIds;
     private double rating;
+    @Embedded
+    private RatingAggregate ratings = new RatingAggregate();
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", referencedColumnName = "id")
+    @ToString.Exclude
     private User owner;
 }
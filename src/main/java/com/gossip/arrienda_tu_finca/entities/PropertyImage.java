@@ -0,0 +1,38 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "property_image", indexes = {
+    @Index(name = "idx_property_image_property", columnList = "property_id, displayOrder")
+})
+public class PropertyImage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "property_id", referencedColumnName = "id", nullable = false)
+    private Property property;
+
+    // Solo el id, la imagen se descarga aparte por /image/{id}
+    private int imageId;
+    private int displayOrder;
+    private boolean isCover;
+}
@@ -0,0 +1,73 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import org.hibernate.annotations.ColumnDefault;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Running totals of the reviews of a property, a host or a renter: the sum and amount of ratings and how many reviews
+ * gave each amount of stars. The average is ratingSum / ratingCount, so a new review updates it without reading the others.
+ * The columns default to 0, the rows written before them or by the batch import start without reviews
+ */
+@Embeddable
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+public class RatingAggregate {
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long ratingSum;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int ratingCount;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stars1;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stars2;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stars3;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stars4;
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stars5;
+
+    /**
+     * Adds reviews with the same rating
+     * @param rating from 1 to 5
+     * @param amount of reviews with that rating
+     */
+    public void add(int rating, int amount) {
+        ratingSum += (long) rating * amount;
+        ratingCount += amount;
+        switch (rating) {
+            case 1 -> stars1 += amount;
+            case 2 -> stars2 += amount;
+            case 3 -> stars3 += amount;
+            case 4 -> stars4 += amount;
+            case 5 -> stars5 += amount;
+            default -> { }
+        }
+    }
+
+    /**
+     * @return double with the average rating, 0 without reviews
+     */
+    public double average() {
+        return ratingCount == 0 ? 0 : (double) ratingSum / ratingCount;
+    }
+}
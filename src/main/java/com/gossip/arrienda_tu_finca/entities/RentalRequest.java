@@ -1,14 +1,17 @@
 package com.gossip.arrienda_tu_finca.entities;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -22,21 +25,34 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Getter
 @Setter
-@Table(name = "rental_requests")
+@Table(name = "rental_requests", indexes = {
+    @Index(name = "idx_rental_requests_property_dates", columnList = "property_id, arrivalDate, departureDate"),
+    @Index(name = "idx_rental_requests_approved_at", columnList = "approvedAt"),
+    @Index(name = "idx_rental_requests_arrival", columnList = "arrivalDate"),
+    @Index(name = "idx_rental_requests_completion", columnList = "paid, completed, departureDate"),
+    @Index(name = "idx_rental_requests_renter_requested", columnList = "user_email, requestDateTime, id"),
+    @Index(name = "idx_rental_requests_property_requested", columnList = "property_id, requestDateTime, id"),
+    // Paginas de reseñas de una propiedad y de un huesped, cada una lee los ids de las reseñas en el orden del indice
+    @Index(name = "idx_rental_requests_property_review", columnList = "property_id, property_comment_id"),
+    @Index(name = "idx_rental_requests_renter_review", columnList = "user_email, renter_comment_id")
+})
 public class RentalRequest {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
  
-    @ManyToOne
+    // Las asociaciones son LAZY, cada consulta de RentalRequestRepository elige cuales cargar con un EntityGraph
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "property_id", referencedColumnName = "id")
     private Property property;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_email", referencedColumnName = "email")
     private User requester;
 
     private LocalDateTime requestDateTime;  
+    // Momento de la aprobacion, la expiracion de las solicitudes sin pagar cuenta desde aqui
+    private LocalDateTime approvedAt;
     private LocalDate arrivalDate; 
     private LocalDate departureDate;  
     private Integer amountOfResidents;
@@ -50,6 +66,11 @@ public class RentalRequest {
     private String bank;
     private Integer accountNumber;
 
+    // Protege las escrituras que leen y guardan la entidad completa, como las reseñas
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "host_comment_id", referencedColumnName = "id")
     private Comment hostComment;
@@ -0,0 +1,48 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entry of the append-only log of the rental requests. It is inserted in the same transaction as the change it
+ * describes and never updated, the relay reads the log by id and each consumer keeps its own position
+ */
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "rental_request_events", indexes = {
+    @Index(name = "idx_rental_request_events_request", columnList = "requestId, id")
+})
+public class RentalRequestEventEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long requestId;
+    private Long propertyId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private RentalRequestEventType type;
+    private String hostEmail;
+    private String renterEmail;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,17 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+/**
+ * Kinds of entries of the rental request event log, the state changes plus the reviews
+ */
+public enum RentalRequestEventType {
+    CREATED, APPROVED, REJECTED, CANCELED, PAID, COMPLETED, EXPIRED, PROPERTY_REVIEWED, HOST_REVIEWED, RENTER_REVIEWED;
+
+    /**
+     * Obtains the entry type of a state change, a request enters the pending state when it is created
+     * @param status new state of the request
+     * @return RentalRequestEventType of the change
+     */
+    public static RentalRequestEventType of(RentalRequestStatus status) {
+        return status == RentalRequestStatus.PENDING ? CREATED : valueOf(status.name());
+    }
+}
@@ -0,0 +1,52 @@
+package com.gossip.arrienda_tu_finca.entities;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * States of a rental request, derived from its flags, and the legal transitions between them.
+ * The guarded UPDATEs of RentalRequestRepository only match the rows in a state that allows the transition
+ */
+public enum RentalRequestStatus {
+    PENDING, APPROVED, PAID, COMPLETED, REJECTED, CANCELED, EXPIRED;
+
+    /**
+     * Obtains the state of a rental request from its flags
+     * @param request
+     * @return RentalRequestStatus of the request
+     */
+    public static RentalRequestStatus of(RentalRequest request) {
+        if (request.isCanceled()) {
+            return CANCELED;
+        }
+        if (request.isRejected()) {
+            return REJECTED;
+        }
+        if (request.isExpired()) {
+            return EXPIRED;
+        }
+        if (request.isCompleted()) {
+            return COMPLETED;
+        }
+        if (request.isPaid()) {
+            return PAID;
+        }
+        return request.isApproved() ? APPROVED : PENDING;
+    }
+
+    /**
+     * @return Set<RentalRequestStatus> with the states this one can move to, empty for the final states
+     */
+    public Set<RentalRequestStatus> next() {
+        return switch (this) {
+            case PENDING -> EnumSet.of(APPROVED, REJECTED, CANCELED, EXPIRED);
+            case APPROVED -> EnumSet.of(PAID, REJECTED, CANCELED, EXPIRED);
+            case PAID -> EnumSet.of(COMPLETED);
+            default -> EnumSet.noneOf(RentalRequestStatus.class);
+        };
+    }
+
+    public boolean canMoveTo(RentalRequestStatus target) {
+        return next().contains(target);
+    }
+}
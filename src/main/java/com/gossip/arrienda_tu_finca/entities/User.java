@@ -3,8 +3,10 @@ package com.gossip.arrienda_tu_finca.entities;
 import java.util.List;
 import java.util.Objects;
 
+import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -40,8 +42,29 @@ public class User {
     private boolean isRenter;
     private double ratingRenter;
     private int imageId;
+
+    @Embedded
+    @AttributeOverride(name = "ratingSum", column = @Column(name = "host_rating_sum", nullable = false))
+    @AttributeOverride(name = "ratingCount", column = @Column(name = "host_rating_count", nullable = false))
+    @AttributeOverride(name = "stars1", column = @Column(name = "host_stars1", nullable = false))
+    @AttributeOverride(name = "stars2", column = @Column(name = "host_stars2", nullable = false))
+    @AttributeOverride(name = "stars3", column = @Column(name = "host_stars3", nullable = false))
+    @AttributeOverride(name = "stars4", column = @Column(name = "host_stars4", nullable = false))
+    @AttributeOverride(name = "stars5", column = @Column(name = "host_stars5", nullable = false))
+    private RatingAggregate hostRatings = new RatingAggregate();
+
+    @Embedded
+    @AttributeOverride(name = "ratingSum", column = @Column(name = "renter_rating_sum", nullable = false))
+    @AttributeOverride(name = "ratingCount", column = @Column(name = "renter_rating_count", nullable = false))
+    @AttributeOverride(name = "stars1", column = @Column(name = "renter_stars1", nullable = false))
+    @AttributeOverride(name = "stars2", column = @Column(name = "renter_stars2", nullable = false))
+    @AttributeOverride(name = "stars3", column = @Column(name = "renter_stars3", nullable = false))
+    @AttributeOverride(name = "stars4", column = @Column(name = "renter_stars4", nullable = false))
+    @AttributeOverride(name = "stars5", column = @Column(name = "renter_stars5", nullable = false))
+    private RatingAggregate renterRatings = new RatingAggregate();
     
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL)
+    @ToString.Exclude
     private List<Property> properties;
 
     @Override
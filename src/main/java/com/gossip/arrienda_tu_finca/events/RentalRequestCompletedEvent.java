@@ -0,0 +1,24 @@
+package com.gossip.arrienda_tu_finca.events;
+
+import java.time.LocalDate;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published once for every rental request that reaches completed, by the host or by the completion sweep.
+ * It is published inside the transaction that completes the request, listeners that must only see
+ * committed changes use @TransactionalEventListener
+ */
+@Getter
+@ToString(callSuper = true)
+public class RentalRequestCompletedEvent extends RentalRequestStatusEvent {
+    private LocalDate departureDate;
+
+    public RentalRequestCompletedEvent(Long requestId, Long propertyId, String hostEmail, String renterEmail, LocalDate departureDate) {
+        super(requestId, propertyId, hostEmail, renterEmail, RentalRequestStatus.COMPLETED);
+        this.departureDate = departureDate;
+    }
+}
@@ -0,0 +1,23 @@
+package com.gossip.arrienda_tu_finca.events;
+
+import java.util.List;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+
+/**
+ * Receives the entries of the rental request event log from RentalRequestEventRelay, every bean that implements it
+ * is a consumer. Delivery is at least once: a batch is delivered again if consume throws or the application stops
+ * before the position is saved, so consumers must tolerate repeated entries, for example by their id
+ */
+public interface RentalRequestEventConsumer {
+    /**
+     * @return String with the name that identifies the position of the consumer, it must not change between versions
+     */
+    String getName();
+
+    /**
+     * Handles a batch of entries sorted by id. It runs inside the transaction that saves the position of the consumer
+     * @param entries
+     */
+    void consume(List<RentalRequestEventEntry> entries);
+}
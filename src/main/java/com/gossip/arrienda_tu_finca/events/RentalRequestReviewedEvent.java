@@ -0,0 +1,22 @@
+package com.gossip.arrienda_tu_finca.events;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published when the renter reviews the property or the host, or the host reviews the renter.
+ * It is published inside the transaction that saves the review
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RentalRequestReviewedEvent {
+    private Long requestId;
+    private Long propertyId;
+    private String hostEmail;
+    private String renterEmail;
+    private RentalRequestEventType type;
+}
@@ -0,0 +1,23 @@
+package com.gossip.arrienda_tu_finca.events;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published every time a rental request is created or moves to another state, with the host and the renter
+ * that have to be told about it. It is published inside the transaction that changes the request,
+ * listeners that must only see committed changes use @TransactionalEventListener
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RentalRequestStatusEvent {
+    private Long requestId;
+    private Long propertyId;
+    private String hostEmail;
+    private String renterEmail;
+    private RentalRequestStatus status;
+}
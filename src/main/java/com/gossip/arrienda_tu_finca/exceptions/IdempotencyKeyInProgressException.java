@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class InvalidCallbackSignatureException extends RuntimeException {
+    public InvalidCallbackSignatureException(String message) {
+        super(message);
+    }
+}
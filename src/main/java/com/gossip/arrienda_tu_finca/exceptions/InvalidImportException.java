@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class InvalidImportException extends RuntimeException {
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.exceptions;
+
+public class OverlappingRequestException extends RuntimeException {
+    public OverlappingRequestException(String message) {
+        super(message);
+    }
+}
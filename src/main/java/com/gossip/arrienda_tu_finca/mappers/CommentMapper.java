@@ -0,0 +1,29 @@
+package com.gossip.arrienda_tu_finca.mappers;
+
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.User;
+
+@Component
+public class CommentMapper {
+
+    /**
+     * Creates the DTO of a comment, null comments stay null
+     * @param comment
+     * @return CommentDTO with the id, content, rating, email and name of the author
+     */
+    public CommentDTO toDTO(Comment comment) {
+        if (comment == null) {
+            return null;
+        }
+        User author = comment.getUser();
+        if (author == null) {
+            return new CommentDTO(comment.getId(), comment.getContent(), comment.getRating(), null, null);
+        }
+        // El mismo nombre que arma RentalRequestRepository.COMMENT_DTO_SELECT
+        String name = ((author.getName() == null ? "" : author.getName()) + " " + (author.getSurname() == null ? "" : author.getSurname())).trim();
+        return new CommentDTO(comment.getId(), comment.getContent(), comment.getRating(), author.getEmail(), name);
+    }
+}
@@ -0,0 +1,99 @@
+package com.gossip.arrienda_tu_finca.mappers;
+
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyCreateDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyUpdateDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+
+/**
+ * Maps properties field by field, with the same matching ModelMapper used (owner.email to ownerEmail).
+ * The images are not part of the entity, PropertyService adds them
+ */
+@Component
+public class PropertyMapper {
+
+    /**
+     * Creates the DTO of a property
+     * @param property
+     * @return PropertyDTO or null if the property is null
+     */
+    public PropertyDTO toDTO(Property property) {
+        if (property == null) {
+            return null;
+        }
+        return new PropertyDTO(
+            property.getId(),
+            property.getName(),
+            property.getDescription(),
+            property.getMunicipality(),
+            property.getDepartment(),
+            property.getTypeOfEntrance(),
+            property.getAddress(),
+            property.getLink(),
+            property.isAvailable(),
+            property.getPricePerNight(),
+            property.getAmountOfRooms(),
+            property.getAmountOfBathrooms(),
+            property.getAmountOfResidents(),
+            property.isPetFriendly(),
+            property.isHasPool(),
+            property.isHasGril(),
+            property.getOwner() == null ? null : property.getOwner().getEmail(),
+            property.getRating());
+    }
+
+    /**
+     * Creates a new property entity without owner from the creation DTO
+     * @param propertyCreateDTO
+     * @return Property or null if the DTO is null
+     */
+    public Property toEntity(PropertyCreateDTO propertyCreateDTO) {
+        if (propertyCreateDTO == null) {
+            return null;
+        }
+        Property property = new Property();
+        property.setName(propertyCreateDTO.getName());
+        property.setDescription(propertyCreateDTO.getDescription());
+        property.setMunicipality(propertyCreateDTO.getMunicipality());
+        property.setDepartment(propertyCreateDTO.getDepartment());
+        property.setTypeOfEntrance(propertyCreateDTO.getTypeOfEntrance());
+        property.setAddress(propertyCreateDTO.getAddress());
+        property.setLink(propertyCreateDTO.getLink());
+        property.setPricePerNight(propertyCreateDTO.getPricePerNight());
+        property.setAmountOfRooms(unbox(propertyCreateDTO.getAmountOfRooms()));
+        property.setAmountOfBathrooms(unbox(propertyCreateDTO.getAmountOfBathrooms()));
+        property.setAmountOfResidents(unbox(propertyCreateDTO.getAmountOfResidents()));
+        property.setPetFriendly(Boolean.TRUE.equals(propertyCreateDTO.getIsPetFriendly()));
+        property.setHasPool(Boolean.TRUE.equals(propertyCreateDTO.getHasPool()));
+        property.setHasGril(Boolean.TRUE.equals(propertyCreateDTO.getHasGril()));
+        return property;
+    }
+
+    /**
+     * Copies every field of the update DTO into the property, null values included
+     * @param propertyUpdateDTO
+     * @param property
+     */
+    public void updateEntity(PropertyUpdateDTO propertyUpdateDTO, Property property) {
+        property.setName(propertyUpdateDTO.getName());
+        property.setDescription(propertyUpdateDTO.getDescription());
+        property.setMunicipality(propertyUpdateDTO.getMunicipality());
+        property.setDepartment(propertyUpdateDTO.getDepartment());
+        property.setTypeOfEntrance(propertyUpdateDTO.getTypeOfEntrance());
+        property.setAddress(propertyUpdateDTO.getAddress());
+        property.setLink(propertyUpdateDTO.getLink());
+        property.setPricePerNight(propertyUpdateDTO.getPricePerNight());
+        property.setAmountOfRooms(propertyUpdateDTO.getAmountOfRooms());
+        property.setAmountOfBathrooms(propertyUpdateDTO.getAmountOfBathrooms());
+        property.setAmountOfResidents(propertyUpdateDTO.getAmountOfResidents());
+        property.setPetFriendly(propertyUpdateDTO.isPetFriendly());
+        property.setHasPool(propertyUpdateDTO.isHasPool());
+        property.setHasGril(propertyUpdateDTO.isHasGril());
+    }
+
+    private int unbox(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
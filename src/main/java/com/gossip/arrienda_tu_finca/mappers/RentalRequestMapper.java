@@ -0,0 +1,59 @@
+package com.gossip.arrienda_tu_finca.mappers;
+
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.dto.RentalRequestCreateDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+
+/**
+ * Maps rental requests field by field, property.id goes to propertyId and requester.email to requesterEmail
+ */
+@Component
+public class RentalRequestMapper {
+
+    /**
+     * Creates the DTO of a rental request
+     * @param request
+     * @return RentalRequestDto or null if the request is null
+     */
+    public RentalRequestDto toDTO(RentalRequest request) {
+        if (request == null) {
+            return null;
+        }
+        return new RentalRequestDto(
+            request.getId(),
+            request.getProperty() == null ? null : request.getProperty().getId(),
+            request.getRequester() == null ? null : request.getRequester().getEmail(),
+            request.getRequestDateTime(),
+            request.getArrivalDate(),
+            request.getDepartureDate(),
+            request.getAmountOfResidents(),
+            request.getAmount(),
+            request.isRejected(),
+            request.isCanceled(),
+            request.isPaid(),
+            request.isCompleted(),
+            request.isApproved(),
+            request.isExpired(),
+            request.getBank(),
+            request.getAccountNumber());
+    }
+
+    /**
+     * Creates a new rental request with the dates and residents of the DTO,
+     * the property and the requester are set by the service
+     * @param rentalRequestCreateDTO
+     * @return RentalRequest or null if the DTO is null
+     */
+    public RentalRequest toEntity(RentalRequestCreateDTO rentalRequestCreateDTO) {
+        if (rentalRequestCreateDTO == null) {
+            return null;
+        }
+        RentalRequest request = new RentalRequest();
+        request.setArrivalDate(rentalRequestCreateDTO.getArrivalDate());
+        request.setDepartureDate(rentalRequestCreateDTO.getDepartureDate());
+        request.setAmountOfResidents(rentalRequestCreateDTO.getAmountOfResidents());
+        return request;
+    }
+}
@@ -0,0 +1,80 @@
+package com.gossip.arrienda_tu_finca.mappers;
+
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.dto.ChangeUserInfoDTO;
+import com.gossip.arrienda_tu_finca.dto.LoginDTO;
+import com.gossip.arrienda_tu_finca.dto.UserDTO;
+import com.gossip.arrienda_tu_finca.dto.UserInfoDTO;
+import com.gossip.arrienda_tu_finca.entities.User;
+
+@Component
+public class UserMapper {
+
+    /**
+     * Creates a user with only the credentials of the login
+     * @param loginDTO
+     * @return User or null if the DTO is null
+     */
+    public User toEntity(LoginDTO loginDTO) {
+        if (loginDTO == null) {
+            return null;
+        }
+        User user = new User();
+        user.setEmail(loginDTO.getEmail());
+        user.setPassword(loginDTO.getPassword());
+        return user;
+    }
+
+    /**
+     * Creates a user with the information of the registration
+     * @param userDTO
+     * @return User or null if the DTO is null
+     */
+    public User toEntity(UserDTO userDTO) {
+        if (userDTO == null) {
+            return null;
+        }
+        User user = new User();
+        user.setEmail(userDTO.getEmail());
+        user.setName(userDTO.getName());
+        user.setSurname(userDTO.getSurname());
+        user.setPassword(userDTO.getPassword());
+        user.setPhone(userDTO.getPhone());
+        user.setHost(userDTO.isHost());
+        user.setRenter(userDTO.isRenter());
+        return user;
+    }
+
+    /**
+     * Creates a user with the information that can be changed
+     * @param changeUserInfoDTO
+     * @return User or null if the DTO is null
+     */
+    public User toEntity(ChangeUserInfoDTO changeUserInfoDTO) {
+        if (changeUserInfoDTO == null) {
+            return null;
+        }
+        User user = new User();
+        user.setEmail(changeUserInfoDTO.getEmail());
+        user.setName(changeUserInfoDTO.getName());
+        user.setSurname(changeUserInfoDTO.getSurname());
+        user.setPhone(changeUserInfoDTO.getPhone());
+        user.setHost(changeUserInfoDTO.isHost());
+        user.setRenter(changeUserInfoDTO.isRenter());
+        return user;
+    }
+
+    /**
+     * Creates the public information of a user
+     * @param user
+     * @return UserInfoDTO or null if the user is null
+     */
+    public UserInfoDTO toInfoDTO(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserInfoDTO(user.getId(), user.getEmail(), user.getName(), user.getSurname(), user.getPhone(),
+                user.isHost(), user.getRatingHost(), user.isRenter(), user.getRatingRenter(), user.getImageId());
+    }
+}
@@ -0,0 +1,19 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.gossip.arrienda_tu_finca.entities.EventRelayOffset;
+
+import jakarta.persistence.LockModeType;
+
+public interface EventRelayOffsetRepository extends JpaRepository<EventRelayOffset, String> {
+    // Bloquea la posicion del consumidor hasta el final de la transaccion, dos instancias no entregan el mismo lote a la vez
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM EventRelayOffset o WHERE o.consumer = :consumer")
+    Optional<EventRelayOffset> lockByConsumer(@Param("consumer") String consumer);
+}
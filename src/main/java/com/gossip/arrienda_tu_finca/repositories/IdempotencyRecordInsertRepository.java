@@ -0,0 +1,7 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import com.gossip.arrienda_tu_finca.entities.IdempotencyRecord;
+
+public interface IdempotencyRecordInsertRepository {
+    void insert(IdempotencyRecord record);
+}
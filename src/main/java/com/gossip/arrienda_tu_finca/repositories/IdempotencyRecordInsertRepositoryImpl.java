@@ -0,0 +1,22 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import com.gossip.arrienda_tu_finca.entities.IdempotencyRecord;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Inserts the idempotency records with persist. The id is assigned, so save would merge it: the merge finds the row
+ * another instance committed with the same key and updates it, instead of failing with the duplicate key
+ */
+public class IdempotencyRecordInsertRepositoryImpl implements IdempotencyRecordInsertRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insert(IdempotencyRecord record) {
+        entityManager.persist(record);
+        entityManager.flush();
+    }
+}
@@ -0,0 +1,24 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.gossip.arrienda_tu_finca.entities.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String>, IdempotencyRecordInsertRepository {
+    // Borra las respuestas vencidas, usa idx_idempotency_keys_expires_at
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Borra la respuesta vencida de una llave que aun no borro la purga, para que la llave se pueda usar de nuevo
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :id AND r.expiresAt < :now")
+    int deleteExpiredKey(@Param("id") String id, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,30 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.gossip.arrienda_tu_finca.entities.Payment;
+import com.gossip.arrienda_tu_finca.entities.PaymentStatus;
+
+import jakarta.persistence.LockModeType;
+
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+    // Bloquea el pago hasta el final de la transaccion, la consulta de estado y el callback no lo confirman dos veces
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> lockById(@Param("id") Long paymentId);
+
+    // Ultimo pago de una solicitud, usa idx_payments_request
+    Optional<Payment> findFirstByRequestIdOrderByIdDesc(Long requestId);
+
+    Optional<Payment> findByGatewayReference(String gatewayReference);
+
+    // Pagos que quedaron en la cola cuando la aplicacion se detuvo
+    @Query("SELECT p.id FROM Payment p WHERE p.status = :status ORDER BY p.id")
+    List<Long> findIdsByStatus(@Param("status") PaymentStatus status);
+}
@@ -0,0 +1,64 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RatingAggregate;
+
+/**
+ * Inserts properties with JDBC batches. Hibernate does not batch inserts of entities with IDENTITY ids,
+ * so the bulk import writes the rows directly. On MySQL the datasource url needs rewriteBatchedStatements=true
+ * for the driver to send each batch as a multi row insert
+ */
+@Repository
+public class PropertyBatchRepository {
+    private static final String INSERT_PROPERTY = "INSERT INTO property (name, description, municipality, department, type_of_entrance, address, link, "
+            + "is_available, price_per_night, amount_of_rooms, amount_of_bathrooms, amount_of_residents, is_pet_friendly, has_pool, has_gril, rating, owner_id, "
+            + "rating_sum, rating_count, stars1, stars2, stars3, stars4, stars5) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PropertyBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts all the properties in a single JDBC batch, the ids of the properties are not read back
+     * @param properties properties with an owner that already exists
+     */
+    public void insertAll(List<Property> properties) {
+        jdbcTemplate.batchUpdate(INSERT_PROPERTY, properties, properties.size(), (statement, property) -> {
+            statement.setString(1, property.getName());
+            statement.setString(2, property.getDescription());
+            statement.setString(3, property.getMunicipality());
+            statement.setString(4, property.getDepartment());
+            statement.setString(5, property.getTypeOfEntrance());
+            statement.setString(6, property.getAddress());
+            statement.setString(7, property.getLink());
+            statement.setBoolean(8, property.isAvailable());
+            statement.setDouble(9, property.getPricePerNight());
+            statement.setInt(10, property.getAmountOfRooms());
+            statement.setInt(11, property.getAmountOfBathrooms());
+            statement.setInt(12, property.getAmountOfResidents());
+            statement.setBoolean(13, property.isPetFriendly());
+            statement.setBoolean(14, property.isHasPool());
+            statement.setBoolean(15, property.isHasGril());
+            statement.setDouble(16, property.getRating());
+            statement.setLong(17, property.getOwner().getId());
+            RatingAggregate ratings = property.getRatings();
+            statement.setLong(18, ratings.getRatingSum());
+            statement.setInt(19, ratings.getRatingCount());
+            statement.setInt(20, ratings.getStars1());
+            statement.setInt(21, ratings.getStars2());
+            statement.setInt(22, ratings.getStars3());
+            statement.setInt(23, ratings.getStars4());
+            statement.setInt(24, ratings.getStars5());
+        });
+    }
+}
@@ -0,0 +1,33 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyImageDTO;
+import com.gossip.arrienda_tu_finca.entities.PropertyImage;
+
+@Repository
+public interface PropertyImageRepository extends JpaRepository<PropertyImage, Long> {
+
+    // Las imagenes de varias propiedades en una sola consulta, en el orden de la galeria
+    @Query("SELECT new com.gossip.arrienda_tu_finca.dto.PropertyImageDTO(pi.property.id, pi.imageId, pi.displayOrder, pi.isCover) FROM PropertyImage pi WHERE pi.property.id IN :propertyIds ORDER BY pi.displayOrder ASC, pi.id ASC")
+    List<PropertyImageDTO> findDTOsByPropertyIdIn(@Param("propertyIds") Collection<Long> propertyIds);
+
+    // Posicion para la siguiente imagen, dos subidas a la vez pueden empatar y se ordenan por id
+    @Query("SELECT COALESCE(MAX(pi.displayOrder) + 1, 0) FROM PropertyImage pi WHERE pi.property.id = :propertyId")
+    int findNextDisplayOrder(@Param("propertyId") Long propertyId);
+
+    @Query("SELECT COUNT(pi) > 0 FROM PropertyImage pi WHERE pi.property.id = :propertyId AND pi.imageId = :imageId")
+    boolean existsByPropertyIdAndImageId(@Param("propertyId") Long propertyId, @Param("imageId") int imageId);
+
+    // Marca una imagen como portada y desmarca las demas de la propiedad
+    @Modifying
+    @Query("UPDATE PropertyImage pi SET pi.isCover = CASE WHEN pi.imageId = :imageId THEN true ELSE false END WHERE pi.property.id = :propertyId")
+    int updateCover(@Param("propertyId") Long propertyId, @Param("imageId") int imageId);
+}
@@ -1,7 +1,11 @@
 package com.gossip.arrienda_tu_finca.repositories;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,14 +17,17 @@ import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
 import com.gossip.arrienda_tu_finca.entities.Property;
 
 @Repository // Añadir esta anotación para asegurarte de que Spring la detecte como un repositorio
-public interface PropertyRepository extends JpaRepository<Property, Long> {
+public interface PropertyRepository extends JpaRepository<Property, Long>, PropertySearchRepository {
+
+    // Selecciona solo las columnas del DTO, el LEFT JOIN mantiene las propiedades sin propietario
+    String PROPERTY_DTO_SELECT = "SELECT new com.gossip.arrienda_tu_finca.dto.PropertyDTO(p.id, p.name, p.description, p.municipality, p.department, p.typeOfEntrance, p.address, p.link, p.isAvailable, p.pricePerNight, p.amountOfRooms, p.amountOfBathrooms, p.amountOfResidents, p.isPetFriendly, p.hasPool, p.hasGril, o.email, p.rating) FROM Property p LEFT JOIN p.owner o ";
 
     // Encuentra todas las propiedades que pertenecen a un usuario específico (por su email)
     @Query("SELECT p FROM Property p WHERE p.owner.email = :email")
     List<Property> findAllByOwnerEmail(@Param("email") String ownerEmail);
 
     // Consulta personalizada para obtener una propiedad como DTO usando su ID
-    @Query("SELECT new com.gossip.arrienda_tu_finca.dto.PropertyDTO(p.id, p.name, p.description, p.municipality, p.department, p.typeOfEntrance, p.address, p.link, p.isAvailable, p.pricePerNight, p.amountOfRooms, p.amountOfBathrooms, p.amountOfResidents, p.isPetFriendly, p.hasPool, p.hasGril, p.owner.email, p.imageIds, p.rating) FROM Property p WHERE p.id = :propertyId")
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.id = :propertyId")
     PropertyDTO findPropertyDTOById(@Param("propertyId") Long propertyId);
 
     // Encuentra todas las propiedades disponibles (activas)
@@ -41,22 +48,86 @@ public interface PropertyRepository extends JpaRepository<Property, Long> {
     @Query("UPDATE Property p SET p.isAvailable = false WHERE p.id = :propertyId")
     void deactivatePropertyById(@Param("propertyId") Long propertyId);
 
+    // Propiedades que aun guardan las imagenes como ids separados por coma, por bloques de ids
+    @Query("SELECT p.id, p.imageIds, p.municipality FROM Property p WHERE p.imageIds IS NOT NULL AND p.id > :lastId ORDER BY p.id")
+    List<Object[]> findLegacyImageIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Property p SET p.imageIds = null WHERE p.id = :propertyId")
+    void clearLegacyImageIds(@Param("propertyId") Long propertyId);
+
+    // Suma una reseña a los acumulados de la propiedad en un solo UPDATE, o la cambia por la anterior cuando removed no es 0.
+    // El promedio se asigna primero porque MySQL evalua el SET de izquierda a derecha con los valores ya actualizados
+    @Modifying(flushAutomatically = true)
+    @Query(
+            "UPDATE Property p SET p.rating = CAST(p.ratings.ratingSum + :rating - :removed AS double) / (p.ratings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END), "
+            + "p.ratings.ratingSum = p.ratings.ratingSum + :rating - :removed, p.ratings.ratingCount = p.ratings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END, "
+            + "p.ratings.stars1 = p.ratings.stars1 + CASE WHEN :rating = 1 THEN 1 ELSE 0 END - CASE WHEN :removed = 1 THEN 1 ELSE 0 END, "
+            + "p.ratings.stars2 = p.ratings.stars2 + CASE WHEN :rating = 2 THEN 1 ELSE 0 END - CASE WHEN :removed = 2 THEN 1 ELSE 0 END, "
+            + "p.ratings.stars3 = p.ratings.stars3 + CASE WHEN :rating = 3 THEN 1 ELSE 0 END - CASE WHEN :removed = 3 THEN 1 ELSE 0 END, "
+            + "p.ratings.stars4 = p.ratings.stars4 + CASE WHEN :rating = 4 THEN 1 ELSE 0 END - CASE WHEN :removed = 4 THEN 1 ELSE 0 END, "
+            + "p.ratings.stars5 = p.ratings.stars5 + CASE WHEN :rating = 5 THEN 1 ELSE 0 END - CASE WHEN :removed = 5 THEN 1 ELSE 0 END "
+            + "WHERE p.id = :propertyId")
+    int addRating(@Param("propertyId") Long propertyId, @Param("rating") int rating, @Param("removed") int removedRating);
+
+    // Ids de las propiedades por bloques ordenados por id, para RatingReconciliation
+    @Query("SELECT p.id FROM Property p WHERE p.id > :lastId ORDER BY p.id")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    // Propiedades con un promedio anterior a los acumulados, RatingReconciliation los reconstruye al iniciar
+    @Query("SELECT COUNT(p) > 0 FROM Property p WHERE p.ratings.ratingCount = 0 AND p.rating <> 0")
+    boolean existsRatingWithoutAggregate();
+
+    // Propiedad con su dueño en una sola consulta, para las escrituras que devuelven el PropertyDTO
+    @EntityGraph(attributePaths = "owner")
+    @Query("SELECT p FROM Property p WHERE p.id = :id")
+    Optional<Property> findWithOwnerById(@Param("id") Long id);
+
+    // Bloquea la fila de la propiedad hasta el final de la transaccion, serializa las aprobaciones de una misma propiedad
+    @Query(value = "SELECT id FROM property WHERE id = :propertyId FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("propertyId") Long propertyId);
+
+    // Paginacion por llave (keyset): cada pagina continua despues de la ultima fila de la anterior
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.id > :lastId ORDER BY p.id ASC")
+    List<PropertyDTO> findPageOrderById(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.rating < :lastRating OR (p.rating = :lastRating AND p.id > :lastId) ORDER BY p.rating DESC, p.id ASC")
+    List<PropertyDTO> findPageOrderByRating(@Param("lastRating") double lastRating, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.pricePerNight > :lastPrice OR (p.pricePerNight = :lastPrice AND p.id > :lastId) ORDER BY p.pricePerNight ASC, p.id ASC")
+    List<PropertyDTO> findPageOrderByPrice(@Param("lastPrice") double lastPrice, @Param("lastId") Long lastId, Pageable pageable);
+    // Las propiedades sin precio van despues de todas las que tienen, ordenadas por id
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.pricePerNight IS NULL AND p.id > :lastId ORDER BY p.id ASC")
+    List<PropertyDTO> findPageWithoutPrice(@Param("lastId") Long lastId, Pageable pageable);
+
     // Arrendatario
 
-    // Encuentra todas las propiedades que pertenecen a un municipio aleatorio
-    @Query("SELECT p.municipality FROM Property p ORDER BY RAND()")
-    String findRandomMunicipality();
+    // Encuentra el municipio de cada propiedad disponible, usado para sortear un municipio aleatorio en memoria
+    @Query("SELECT p.id, p.municipality FROM Property p WHERE p.isAvailable = true AND p.municipality IS NOT NULL")
+    List<Object[]> findAvailablePropertyMunicipalities();
+
+    // Precio por noche y maximo de residentes de cada propiedad, usados por la tabla de precios de las cotizaciones
+    @Query("SELECT p.id, p.pricePerNight, p.amountOfResidents FROM Property p")
+    List<Object[]> findPropertyPrices();
+
+    // Email del dueño de cada propiedad, usado por los eventos de las solicitudes que completa el barrido
+    @Query("SELECT p.id, o.email FROM Property p JOIN p.owner o WHERE p.id IN :ids")
+    List<Object[]> findOwnerEmailsByIds(@Param("ids") Collection<Long> propertyIds);
+
+    // Atributos de cada propiedad disponible usados por el indice de facetas
+    @Query("SELECT p.id, p.municipality, p.department, p.amountOfResidents, p.pricePerNight, p.isPetFriendly, p.hasPool, p.hasGril FROM Property p WHERE p.isAvailable = true")
+    List<Object[]> findAvailablePropertyFacets();
 
     // Encuentra todas las propiedades con un nombre especifico
-    @Query("SELECT p FROM Property p WHERE p.name = :name")
-    List<Property> findPropertiesByName(@Param("name") String name);
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.name = :name")
+    List<PropertyDTO> findPropertiesByName(@Param("name") String name);
     
     // Encuentra todas las propiedades de un municipio especifico
-    @Query("SELECT p FROM Property p WHERE p.municipality = :municipality")
-    List<Property> findPropertiesByMunicipality(@Param("municipality") String municipality);
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.municipality = :municipality")
+    List<PropertyDTO> findPropertiesByMunicipality(@Param("municipality") String municipality);
 
     // Encuentra todas las propiedades con una cantidad de residentes especifica
-    @Query("SELECT p FROM Property p WHERE p.amountOfResidents = :amountOfResidents")
-    List<Property> findPropertiesByAmountOfResidents(@Param("amountOfResidents") Integer amountOfResidents);
+    @Query(PROPERTY_DTO_SELECT + "WHERE p.amountOfResidents = :amountOfResidents")
+    List<PropertyDTO> findPropertiesByAmountOfResidents(@Param("amountOfResidents") Integer amountOfResidents);
 }
 
@@ -0,0 +1,12 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+
+public interface PropertySearchRepository {
+    List<PropertyDTO> searchPropertyDTOs(Specification<Property> specification, int limit);
+}
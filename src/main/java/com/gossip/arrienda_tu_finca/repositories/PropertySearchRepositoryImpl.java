@@ -0,0 +1,43 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Runs the property search as a criteria query that builds the PropertyDTO directly,
+ * the same columns selected by PropertyRepository.PROPERTY_DTO_SELECT
+ */
+public class PropertySearchRepositoryImpl implements PropertySearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PropertyDTO> searchPropertyDTOs(Specification<Property> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PropertyDTO> query = cb.createQuery(PropertyDTO.class);
+        Root<Property> p = query.from(Property.class);
+        Join<Property, User> o = p.join("owner", JoinType.LEFT);
+        query.select(cb.construct(PropertyDTO.class,
+                p.get("id"), p.get("name"), p.get("description"), p.get("municipality"), p.get("department"),
+                p.get("typeOfEntrance"), p.get("address"), p.get("link"), p.get("isAvailable"), p.get("pricePerNight"),
+                p.get("amountOfRooms"), p.get("amountOfBathrooms"), p.get("amountOfResidents"), p.get("isPetFriendly"),
+                p.get("hasPool"), p.get("hasGril"), o.get("email"), p.get("rating")));
+        query.where(specification.toPredicate(p, query, cb));
+        query.orderBy(cb.asc(p.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,67 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.PropertySearchDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * Builds the criteria used by the property search, only the filters present are added to the query
+ */
+public final class PropertySpecifications {
+
+    private PropertySpecifications() {
+    }
+
+    /**
+     * Combines all the filters of the search into a single specification
+     * @param search
+     * @param lastId id of the last property of the previous page, 0 for the first page
+     * @return Specification<Property> with the conjunction of the filters
+     */
+    public static Specification<Property> matching(PropertySearchDTO search, Long lastId) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (search.getMunicipality() != null) {
+                predicates.add(cb.equal(root.get("municipality"), search.getMunicipality()));
+            }
+            if (search.getDepartment() != null) {
+                predicates.add(cb.equal(root.get("department"), search.getDepartment()));
+            }
+            if (search.getIsAvailable() != null) {
+                predicates.add(cb.equal(root.get("isAvailable"), search.getIsAvailable()));
+            }
+            if (search.getMinResidents() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amountOfResidents"), search.getMinResidents()));
+            }
+            if (search.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("pricePerNight"), search.getMinPrice()));
+            }
+            if (search.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("pricePerNight"), search.getMaxPrice()));
+            }
+            if (search.getMinRooms() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amountOfRooms"), search.getMinRooms()));
+            }
+            if (search.getMinBathrooms() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("amountOfBathrooms"), search.getMinBathrooms()));
+            }
+            if (search.getIsPetFriendly() != null) {
+                predicates.add(cb.equal(root.get("isPetFriendly"), search.getIsPetFriendly()));
+            }
+            if (search.getHasPool() != null) {
+                predicates.add(cb.equal(root.get("hasPool"), search.getHasPool()));
+            }
+            if (search.getHasGril() != null) {
+                predicates.add(cb.equal(root.get("hasGril"), search.getHasGril()));
+            }
+            predicates.add(cb.greaterThan(root.get("id"), lastId));
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
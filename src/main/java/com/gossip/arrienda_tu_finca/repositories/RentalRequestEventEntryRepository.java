@@ -0,0 +1,19 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+
+public interface RentalRequestEventEntryRepository extends JpaRepository<RentalRequestEventEntry, Long> {
+    // Entradas posteriores a la ultima entregada a un consumidor, recorre la llave primaria
+    @Query("SELECT e FROM RentalRequestEventEntry e WHERE e.id > :lastId ORDER BY e.id")
+    List<RentalRequestEventEntry> findAfter(@Param("lastId") long lastId, Pageable pageable);
+
+    // Historia de una solicitud en el orden en que ocurrio, usa idx_rental_request_events_request
+    List<RentalRequestEventEntry> findByRequestIdOrderByIdAsc(Long requestId);
+}
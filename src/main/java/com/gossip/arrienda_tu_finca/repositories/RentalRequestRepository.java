@@ -1,16 +1,44 @@
 package com.gossip.arrienda_tu_finca.repositories;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
 import com.gossip.arrienda_tu_finca.entities.Comment;
 import com.gossip.arrienda_tu_finca.entities.RentalRequest;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
-public interface RentalRequestRepository extends JpaRepository<RentalRequest, Long> {
+public interface RentalRequestRepository extends JpaRepository<RentalRequest, Long>, RentalRequestSearchRepository {
+    // Selecciona solo las columnas del DTO sin cargar la propiedad ni el solicitante
+    String RENTAL_REQUEST_DTO_SELECT = "SELECT new com.gossip.arrienda_tu_finca.dto.RentalRequestDto(r.id, r.property.id, r.requester.email, r.requestDateTime, r.arrivalDate, r.departureDate, r.amountOfResidents, r.amount, r.rejected, r.canceled, r.paid, r.completed, r.approved, r.expired, r.bank, r.accountNumber) FROM RentalRequest r ";
+
+    // Condiciones de cada estado de RentalRequestStatus, las transiciones solo actualizan filas en un estado de origen valido
+    String IS_PENDING = "r.approved = false AND r.paid = false AND r.rejected = false AND r.canceled = false AND r.completed = false AND r.expired = false";
+    String IS_APPROVED = "r.approved = true AND r.paid = false AND r.rejected = false AND r.canceled = false AND r.completed = false AND r.expired = false";
+    String IS_PAID = "r.paid = true AND r.rejected = false AND r.canceled = false AND r.completed = false AND r.expired = false";
+
+    @Query(RENTAL_REQUEST_DTO_SELECT + "JOIN r.property p JOIN p.owner o WHERE o.email = :email")
+    List<RentalRequestDto> findDTOsByHostEmail(@Param("email") String hostEmail);
+    @Query(RENTAL_REQUEST_DTO_SELECT + "WHERE r.requester.email = :email")
+    List<RentalRequestDto> findDTOsByRenterEmail(@Param("email") String renterEmail);
+    @Query(RENTAL_REQUEST_DTO_SELECT + "WHERE r.property.id = :propertyId")
+    List<RentalRequestDto> findDTOsByPropertyId(@Param("propertyId") Long propertyId);
+
     @Query("SELECT r FROM RentalRequest r WHERE r.property.owner.email = :email")
     List<RentalRequest> findByHostEmail(@Param("email") String hostEmail);
     @Query("SELECT r FROM RentalRequest r WHERE r.requester.email = :email")
@@ -18,13 +46,119 @@ public interface RentalRequestRepository extends JpaRepository<RentalRequest, Lo
     @Query("SELECT r FROM RentalRequest r WHERE r.property.id = :propertyId")
     List<RentalRequest> findByPropertyId(@Param("propertyId") Long propertyId);
 
-    @Query("SELECT r.hostComment FROM RentalRequest r WHERE r.property.owner.email = :email")
+    // Las reseñas se leen con su autor en la misma consulta, CommentMapper usa su email
+    @Query("SELECT c FROM RentalRequest r JOIN r.hostComment c LEFT JOIN FETCH c.user WHERE r.property.owner.email = :email")
     List<Comment> findCommentsByHostEmail(@Param("email") String hostEmail);
-    @Query("SELECT r.renterComment FROM RentalRequest r WHERE r.requester.email = :email")
+    @Query("SELECT c FROM RentalRequest r JOIN r.renterComment c LEFT JOIN FETCH c.user WHERE r.requester.email = :email")
     List<Comment> findCommentsByRenterEmail(@Param("email") String renterEmail);
-    @Query("SELECT r.propertyComment FROM RentalRequest r WHERE r.property.id = :propertyId")
+    @Query("SELECT c FROM RentalRequest r JOIN r.propertyComment c LEFT JOIN FETCH c.user WHERE r.property.id = :propertyId")
     List<Comment> findCommentsByPropertyId(@Param("propertyId") Long propertyId);
+
+    // Cantidad de reseñas por calificacion de un bloque de propiedades, propietarios y arrendatarios, solo para RatingReconciliation
+    @Query("SELECT r.property.id, c.rating, COUNT(c) FROM RentalRequest r JOIN r.propertyComment c WHERE r.property.id IN :ids GROUP BY r.property.id, c.rating")
+    List<Object[]> countPropertyRatings(@Param("ids") Collection<Long> propertyIds);
+    @Query("SELECT o.id, c.rating, COUNT(c) FROM RentalRequest r JOIN r.hostComment c JOIN r.property p JOIN p.owner o WHERE o.id IN :ids GROUP BY o.id, c.rating")
+    List<Object[]> countHostRatings(@Param("ids") Collection<Long> hostIds);
+    @Query("SELECT u.id, c.rating, COUNT(c) FROM RentalRequest r JOIN r.renterComment c JOIN r.requester u WHERE u.id IN :ids GROUP BY u.id, c.rating")
+    List<Object[]> countRenterRatings(@Param("ids") Collection<Long> renterIds);
+
+    // Paginas de reseñas: el JOIN interno descarta las solicitudes sin reseña y el DTO se arma en la consulta, sin cargar el autor.
+    // El id de la reseña crece con cada una, se ordena por la columna de rental_requests que lo guarda para que el limite
+    // y el cursor recorran los indices idx_rental_requests_*_review sin ordenar en memoria.
+    // La pagina del anfitrion filtra por el dueño de la propiedad, que no esta en rental_requests: recorre sus propiedades
+    // y ordena las reseñas de todas ellas, un costo que crece con las reseñas del anfitrion y no con la tabla
+    String COMMENT_DTO_SELECT = "SELECT new com.gossip.arrienda_tu_finca.dto.CommentDTO(c.id, c.content, c.rating, u.email, TRIM(CONCAT(COALESCE(u.name, ''), ' ', COALESCE(u.surname, '')))) FROM RentalRequest r ";
+
+    @Query(COMMENT_DTO_SELECT + "JOIN Comment c ON c.id = r.propertyComment.id LEFT JOIN c.user u WHERE r.property.id = :propertyId AND r.propertyComment.id < :beforeId ORDER BY r.propertyComment.id DESC")
+    List<CommentDTO> findPropertyCommentPage(@Param("propertyId") Long propertyId, @Param("beforeId") Long beforeId, Pageable pageable);
+    @Query(COMMENT_DTO_SELECT + "JOIN r.property p JOIN Comment c ON c.id = r.hostComment.id LEFT JOIN c.user u WHERE p.owner.email = :email AND r.hostComment.id < :beforeId ORDER BY r.hostComment.id DESC")
+    List<CommentDTO> findHostCommentPage(@Param("email") String hostEmail, @Param("beforeId") Long beforeId, Pageable pageable);
+    @Query(COMMENT_DTO_SELECT + "JOIN Comment c ON c.id = r.renterComment.id LEFT JOIN c.user u WHERE r.requester.email = :email AND r.renterComment.id < :beforeId ORDER BY r.renterComment.id DESC")
+    List<CommentDTO> findRenterCommentPage(@Param("email") String renterEmail, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Planes de carga por caso de uso: el detalle trae la propiedad y el solicitante, las reseñas ademas el dueño de la propiedad
+    @EntityGraph(attributePaths = {"property", "requester"})
+    @Query("SELECT r FROM RentalRequest r WHERE r.id = :id")
+    Optional<RentalRequest> findDetailById(@Param("id") Long requestId);
+
+    @EntityGraph(attributePaths = {"property", "property.owner", "requester"})
+    @Query("SELECT r FROM RentalRequest r WHERE r.id = :id")
+    Optional<RentalRequest> findForReviewById(@Param("id") Long requestId);
+
+    // Bloquea la solicitud hasta el final de la transaccion, dos pagos o dos reseñas de la misma solicitud van uno despues del otro
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM RentalRequest r WHERE r.id = :id")
+    Optional<RentalRequest> lockById(@Param("id") Long requestId);
     
+    // Transiciones de estado en un solo UPDATE, devuelven 0 si la solicitud no existe o su estado no permite el cambio
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.approved = true, r.approvedAt = :approvedAt, r.version = r.version + 1 WHERE r.id = :id AND " + IS_PENDING)
+    int approve(@Param("id") Long requestId, @Param("approvedAt") LocalDateTime approvedAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.rejected = true, r.version = r.version + 1 WHERE r.id = :id AND ((" + IS_PENDING + ") OR (" + IS_APPROVED + "))")
+    int reject(@Param("id") Long requestId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.canceled = true, r.version = r.version + 1 WHERE r.id = :id AND ((" + IS_PENDING + ") OR (" + IS_APPROVED + "))")
+    int cancel(@Param("id") Long requestId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.paid = true, r.version = r.version + 1 WHERE r.id = :id AND " + IS_APPROVED)
+    int pay(@Param("id") Long requestId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.completed = true, r.version = r.version + 1 WHERE r.id = :id AND " + IS_PAID)
+    int complete(@Param("id") Long requestId);
+
+    // Reglas de expiracion, se leen los ids por bloques ordenados por id y cada bloque se expira en su propia transaccion
+    @Query("SELECT r.id FROM RentalRequest r WHERE r.id > :lastId AND " + IS_APPROVED + " AND (r.approvedAt < :approvedBefore OR r.arrivalDate < :arrivalBefore) ORDER BY r.id")
+    List<Long> findUnpaidIdsToExpire(@Param("lastId") Long lastId, @Param("approvedBefore") LocalDateTime approvedBefore,
+            @Param("arrivalBefore") LocalDate arrivalBefore, Pageable pageable);
+
+    @Query("SELECT r.id FROM RentalRequest r WHERE r.id > :lastId AND " + IS_PENDING + " AND r.arrivalDate < :arrivalBefore ORDER BY r.id")
+    List<Long> findPendingIdsToExpire(@Param("lastId") Long lastId, @Param("arrivalBefore") LocalDate arrivalBefore, Pageable pageable);
+
+    // Repite la condicion de la regla, una solicitud pagada o aprobada despues de leer el bloque no se expira
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.expired = true, r.version = r.version + 1 WHERE r.id IN :ids AND " + IS_APPROVED + " AND (r.approvedAt < :approvedBefore OR r.arrivalDate < :arrivalBefore)")
+    int expireUnpaid(@Param("ids") Collection<Long> requestIds, @Param("approvedBefore") LocalDateTime approvedBefore,
+            @Param("arrivalBefore") LocalDate arrivalBefore);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.expired = true, r.version = r.version + 1 WHERE r.id IN :ids AND " + IS_PENDING + " AND r.arrivalDate < :arrivalBefore")
+    int expirePending(@Param("ids") Collection<Long> requestIds, @Param("arrivalBefore") LocalDate arrivalBefore);
+
+    // Solicitudes del bloque que quedaron expiradas, con su propiedad, el email del dueño y el del solicitante
+    @Query("SELECT r.id, p.id, o.email, q.email FROM RentalRequest r LEFT JOIN r.property p LEFT JOIN p.owner o LEFT JOIN r.requester q WHERE r.id IN :ids AND r.expired = true")
+    List<Object[]> findExpiredParticipants(@Param("ids") Collection<Long> requestIds);
+
+    // Primer bloque de solicitudes pagadas cuya salida ya paso, recorre idx_rental_requests_completion y bloquea las filas
+    // hasta el final de la transaccion. Las filas completadas salen del rango, por eso no hace falta paginar por llave
+    @Query(value = "SELECT id, property_id, user_email, departure_date FROM rental_requests WHERE paid = true AND completed = false AND departure_date < :today AND canceled = false AND rejected = false AND expired = false ORDER BY departure_date, id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockCompletableStays(@Param("today") LocalDate today, @Param("limit") int limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RentalRequest r SET r.completed = true, r.version = r.version + 1 WHERE r.id IN :ids AND " + IS_PAID)
+    int completeAll(@Param("ids") Collection<Long> requestIds);
+
+    // Propiedad, email del dueño, email del solicitante y fecha de salida, usados por los eventos de cambio de estado
+    @Query("SELECT p.id, o.email, q.email, r.departureDate FROM RentalRequest r LEFT JOIN r.property p LEFT JOIN p.owner o LEFT JOIN r.requester q WHERE r.id = :id")
+    List<Object[]> findParticipantsById(@Param("id") Long requestId);
+
+    // Bloquea la solicitud hasta el final de la transaccion y devuelve su propiedad
+    @Query(value = "SELECT property_id FROM rental_requests WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockPropertyIdById(@Param("id") Long requestId);
+
+    // Otra solicitud aprobada o pagada de la propiedad que comparte alguna noche, usa idx_rental_requests_property_dates
+    @Query("SELECT COUNT(r) > 0 FROM RentalRequest r WHERE r.property.id = :propertyId AND r.id <> :requestId AND (r.approved = true OR r.paid = true) AND r.canceled = false AND r.rejected = false AND r.completed = false AND r.expired = false AND r.arrivalDate < :departureDate AND r.departureDate > :arrivalDate")
+    boolean existsOverlappingStay(@Param("propertyId") Long propertyId, @Param("requestId") Long requestId,
+            @Param("arrivalDate") LocalDate arrivalDate, @Param("departureDate") LocalDate departureDate);
+
+    // Solicitudes aprobadas o pagadas que aun ocupan fechas de la propiedad, usadas por el indice de disponibilidad
+    @Query("SELECT r.id, r.property.id, r.arrivalDate, r.departureDate FROM RentalRequest r WHERE (r.approved = true OR r.paid = true) AND r.canceled = false AND r.rejected = false AND r.completed = false AND r.expired = false AND r.arrivalDate IS NOT NULL AND r.departureDate > :today")
+    List<Object[]> findBlockingStays(@Param("today") LocalDate today);
+
     @Query("SELECT r FROM RentalRequest r WHERE r.requester.email = :email ORDER BY r.requestDateTime DESC")
     List<RentalRequest> findByRequesterEmailOrderByRequestDateTime(@Param("email") String requesterEmail);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+
+public interface RentalRequestSearchRepository {
+    List<RentalRequestDto> searchRequestDTOs(Specification<RentalRequest> specification, boolean newestFirst, int limit);
+}
@@ -0,0 +1,43 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Runs the rental request listings as a criteria query that builds the RentalRequestDto directly,
+ * the same columns selected by RentalRequestRepository.RENTAL_REQUEST_DTO_SELECT, sorted by request date and id
+ */
+public class RentalRequestSearchRepositoryImpl implements RentalRequestSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<RentalRequestDto> searchRequestDTOs(Specification<RentalRequest> specification, boolean newestFirst, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RentalRequestDto> query = cb.createQuery(RentalRequestDto.class);
+        Root<RentalRequest> r = query.from(RentalRequest.class);
+        query.select(cb.construct(RentalRequestDto.class,
+                r.get("id"), r.get("property").get("id"), r.get("requester").get("email"), r.get("requestDateTime"),
+                r.get("arrivalDate"), r.get("departureDate"), r.get("amountOfResidents"), r.get("amount"), r.get("rejected"),
+                r.get("canceled"), r.get("paid"), r.get("completed"), r.get("approved"), r.get("expired"), r.get("bank"),
+                r.get("accountNumber")));
+        query.where(specification.toPredicate(r, query, cb));
+        if (newestFirst) {
+            query.orderBy(cb.desc(r.get("requestDateTime")), cb.desc(r.get("id")));
+        } else {
+            query.orderBy(cb.asc(r.get("requestDateTime")), cb.asc(r.get("id")));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
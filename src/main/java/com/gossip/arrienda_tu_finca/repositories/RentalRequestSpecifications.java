@@ -0,0 +1,109 @@
+package com.gossip.arrienda_tu_finca.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.gossip.arrienda_tu_finca.dto.RentalRequestSearchDTO;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Builds the criteria used by the rental request listings, only the filters present are added to the query
+ */
+public final class RentalRequestSpecifications {
+
+    private RentalRequestSpecifications() {
+    }
+
+    public static Specification<RentalRequest> ofHost(String hostEmail) {
+        return (root, query, cb) -> cb.equal(root.join("property").join("owner").get("email"), hostEmail);
+    }
+
+    public static Specification<RentalRequest> ofRenter(String renterEmail) {
+        return (root, query, cb) -> cb.equal(root.get("requester").get("email"), renterEmail);
+    }
+
+    public static Specification<RentalRequest> ofProperty(Long propertyId) {
+        return (root, query, cb) -> cb.equal(root.get("property").get("id"), propertyId);
+    }
+
+    /**
+     * Combines the filters of the search into a single specification
+     * @param search
+     * @param status state parsed from the search, null for any state
+     * @return Specification<RentalRequest> with the conjunction of the filters
+     */
+    public static Specification<RentalRequest> matching(RentalRequestSearchDTO search, RentalRequestStatus status) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (status != null) {
+                predicates.add(hasStatus(root, cb, status));
+            }
+            if (search.getArrivalFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("arrivalDate"), search.getArrivalFrom()));
+            }
+            if (search.getArrivalTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("arrivalDate"), search.getArrivalTo()));
+            }
+            if (search.getRequestedFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("requestDateTime"), search.getRequestedFrom().atStartOfDay()));
+            }
+            if (search.getRequestedTo() != null) {
+                predicates.add(cb.lessThan(root.get("requestDateTime"), search.getRequestedTo().plusDays(1).atStartOfDay()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Rows after the last one of the previous page in the order (requestDateTime, id).
+     * A null requestDateTime sorts before any date, as both MySQL and H2 do by default
+     * @param lastRequestDateTime request date of the last row, null if it had none
+     * @param lastId
+     * @param newestFirst
+     * @return Specification<RentalRequest> with the keyset condition
+     */
+    public static Specification<RentalRequest> after(LocalDateTime lastRequestDateTime, Long lastId, boolean newestFirst) {
+        return (root, query, cb) -> {
+            Path<LocalDateTime> requestDateTime = root.get("requestDateTime");
+            Path<Long> id = root.get("id");
+            if (lastRequestDateTime == null) {
+                Predicate sameNullDate = cb.and(cb.isNull(requestDateTime), newestFirst ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId));
+                return newestFirst ? sameNullDate : cb.or(cb.isNotNull(requestDateTime), sameNullDate);
+            }
+            Predicate sameDate = cb.and(cb.equal(requestDateTime, lastRequestDateTime),
+                    newestFirst ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId));
+            if (newestFirst) {
+                return cb.or(cb.lessThan(requestDateTime, lastRequestDateTime), sameDate, cb.isNull(requestDateTime));
+            }
+            return cb.or(cb.greaterThan(requestDateTime, lastRequestDateTime), sameDate);
+        };
+    }
+
+    // Mismas condiciones de RentalRequestRepository.IS_PENDING, IS_APPROVED, IS_PAID y de RentalRequestStatus.of
+    private static Predicate hasStatus(Root<RentalRequest> root, CriteriaBuilder cb, RentalRequestStatus status) {
+        Predicate notCanceled = cb.isFalse(root.get("canceled"));
+        Predicate notRejected = cb.isFalse(root.get("rejected"));
+        Predicate notExpired = cb.isFalse(root.get("expired"));
+        Predicate notCompleted = cb.isFalse(root.get("completed"));
+        return switch (status) {
+            case CANCELED -> cb.isTrue(root.get("canceled"));
+            case REJECTED -> cb.and(notCanceled, cb.isTrue(root.get("rejected")));
+            case EXPIRED -> cb.and(notCanceled, notRejected, cb.isTrue(root.get("expired")));
+            case COMPLETED -> cb.and(notCanceled, notRejected, notExpired, cb.isTrue(root.get("completed")));
+            case PAID -> cb.and(notCanceled, notRejected, notExpired, notCompleted, cb.isTrue(root.get("paid")));
+            case APPROVED -> cb.and(notCanceled, notRejected, notExpired, notCompleted, cb.isFalse(root.get("paid")),
+                    cb.isTrue(root.get("approved")));
+            case PENDING -> cb.and(notCanceled, notRejected, notExpired, notCompleted, cb.isFalse(root.get("paid")),
+                    cb.isFalse(root.get("approved")));
+        };
+    }
+}
@@ -1,8 +1,11 @@
 package com.gossip.arrienda_tu_finca.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -30,4 +33,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @Query("SELECT new com.gossip.arrienda_tu_finca.dto.UserInfoDTO(u.id, u.email, u.name, u.surname, u.phone, u.isHost, u.ratingHost, u.isRenter, u.ratingRenter, u.imageId) FROM User u WHERE u.id = :userId")
     UserInfoDTO findUserInfoDTOById(@Param("userId") Long userId);
+
+    // Ids de los usuarios por bloques ordenados por id, para RatingReconciliation
+    @Query("SELECT u.id FROM User u WHERE u.id > :lastId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT COUNT(u) > 0 FROM User u WHERE (u.hostRatings.ratingCount = 0 AND u.ratingHost <> 0) "
+            + "OR (u.renterRatings.ratingCount = 0 AND u.ratingRenter <> 0)")
+    boolean existsRatingWithoutAggregate();
+
+    // Acumulados de las reseñas como propietario y como arrendatario, igual que PropertyRepository.addRating
+    @Modifying(flushAutomatically = true)
+    @Query(
+            "UPDATE User u SET u.ratingHost = CAST(u.hostRatings.ratingSum + :rating - :removed AS double) / (u.hostRatings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END), "
+            + "u.hostRatings.ratingSum = u.hostRatings.ratingSum + :rating - :removed, u.hostRatings.ratingCount = u.hostRatings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END, "
+            + "u.hostRatings.stars1 = u.hostRatings.stars1 + CASE WHEN :rating = 1 THEN 1 ELSE 0 END - CASE WHEN :removed = 1 THEN 1 ELSE 0 END, "
+            + "u.hostRatings.stars2 = u.hostRatings.stars2 + CASE WHEN :rating = 2 THEN 1 ELSE 0 END - CASE WHEN :removed = 2 THEN 1 ELSE 0 END, "
+            + "u.hostRatings.stars3 = u.hostRatings.stars3 + CASE WHEN :rating = 3 THEN 1 ELSE 0 END - CASE WHEN :removed = 3 THEN 1 ELSE 0 END, "
+            + "u.hostRatings.stars4 = u.hostRatings.stars4 + CASE WHEN :rating = 4 THEN 1 ELSE 0 END - CASE WHEN :removed = 4 THEN 1 ELSE 0 END, "
+            + "u.hostRatings.stars5 = u.hostRatings.stars5 + CASE WHEN :rating = 5 THEN 1 ELSE 0 END - CASE WHEN :removed = 5 THEN 1 ELSE 0 END "
+            + "WHERE u.id = :userId")
+    int addHostRating(@Param("userId") Long userId, @Param("rating") int rating, @Param("removed") int removedRating);
+
+    @Modifying(flushAutomatically = true)
+    @Query(
+            "UPDATE User u SET u.ratingRenter = CAST(u.renterRatings.ratingSum + :rating - :removed AS double) / (u.renterRatings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END), "
+            + "u.renterRatings.ratingSum = u.renterRatings.ratingSum + :rating - :removed, u.renterRatings.ratingCount = u.renterRatings.ratingCount + CASE WHEN :removed = 0 THEN 1 ELSE 0 END, "
+            + "u.renterRatings.stars1 = u.renterRatings.stars1 + CASE WHEN :rating = 1 THEN 1 ELSE 0 END - CASE WHEN :removed = 1 THEN 1 ELSE 0 END, "
+            + "u.renterRatings.stars2 = u.renterRatings.stars2 + CASE WHEN :rating = 2 THEN 1 ELSE 0 END - CASE WHEN :removed = 2 THEN 1 ELSE 0 END, "
+            + "u.renterRatings.stars3 = u.renterRatings.stars3 + CASE WHEN :rating = 3 THEN 1 ELSE 0 END - CASE WHEN :removed = 3 THEN 1 ELSE 0 END, "
+            + "u.renterRatings.stars4 = u.renterRatings.stars4 + CASE WHEN :rating = 4 THEN 1 ELSE 0 END - CASE WHEN :removed = 4 THEN 1 ELSE 0 END, "
+            + "u.renterRatings.stars5 = u.renterRatings.stars5 + CASE WHEN :rating = 5 THEN 1 ELSE 0 END - CASE WHEN :removed = 5 THEN 1 ELSE 0 END "
+            + "WHERE u.id = :userId")
+    int addRenterRating(@Param("userId") Long userId, @Param("rating") int rating, @Param("removed") int removedRating);
 }
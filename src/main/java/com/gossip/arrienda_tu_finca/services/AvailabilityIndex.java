@@ -0,0 +1,242 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+
+/**
+ * Keeps in memory the dates taken in every property by the approved or paid rental requests that have not ended.
+ * The stays of a property are sorted by arrival date, so an overlap check only looks at the stays that
+ * arrive between (arrival - longest stay) and departure. Stays take the nights from arrival to the day before departure.
+ * Each property also has one bitset per year with its taken nights, used by the calendars.
+ * Changes made inside a transaction are applied when it commits, so a rollback leaves the index as it was
+ */
+@Component
+public class AvailabilityIndex {
+    private final RentalRequestRepository rentalRequestRepository;
+    private final Map<Long, PropertyStays> staysByProperty = new HashMap<>();
+    private final Map<Long, Long> propertyByRequest = new HashMap<>();
+
+    @Autowired
+    public AvailabilityIndex(RentalRequestRepository rentalRequestRepository) {
+        this.rentalRequestRepository = rentalRequestRepository;
+    }
+
+    /**
+     * Loads again the stays that have not ended from the database, it runs when the application starts
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        staysByProperty.clear();
+        propertyByRequest.clear();
+        for (Object[] row : rentalRequestRepository.findBlockingStays(LocalDate.now())) {
+            add((Long) row[0], (Long) row[1], (LocalDate) row[2], (LocalDate) row[3]);
+        }
+    }
+
+    /**
+     * Registers the dates of a rental request if it takes them, or frees them if it does not anymore
+     * @param request
+     */
+    public void put(RentalRequest request) {
+        Long requestId = request.getId();
+        Long propertyId = isBlocking(request) ? request.getProperty().getId() : null;
+        LocalDate arrival = request.getArrivalDate();
+        LocalDate departure = request.getDepartureDate();
+        afterCommit(() -> {
+            synchronized (this) {
+                removeStay(requestId);
+                if (propertyId != null) {
+                    add(requestId, propertyId, arrival, departure);
+                }
+            }
+        });
+    }
+
+    /**
+     * Frees the dates of a rental request
+     * @param requestId
+     */
+    public void remove(Long requestId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                removeStay(requestId);
+            }
+        });
+    }
+
+    /**
+     * Lists the taken nights of each property between two dates, without reading the database.
+     * The stays that already ended are not kept, so the nights before today are always free
+     * @param propertyIds
+     * @param from first day of the window
+     * @param to last day of the window, included
+     * @return Map<Long, List<LocalDate>> with the taken days by property id, in the same order of the ids
+     */
+    public synchronized Map<Long, List<LocalDate>> findTakenDays(List<Long> propertyIds, LocalDate from, LocalDate to) {
+        Map<Long, List<LocalDate>> takenDays = new LinkedHashMap<>();
+        for (Long propertyId : propertyIds) {
+            PropertyStays stays = staysByProperty.get(propertyId);
+            takenDays.put(propertyId, stays == null ? List.of() : stays.takenDays(from, to));
+        }
+        return takenDays;
+    }
+
+    /**
+     * Finds the properties that have a stay overlapping the given dates
+     * @param arrival
+     * @param departure
+     * @return Set<Long> with the ids of the properties that are not free
+     */
+    public synchronized Set<Long> findTakenProperties(LocalDate arrival, LocalDate departure) {
+        Set<Long> taken = new HashSet<>();
+        staysByProperty.forEach((propertyId, stays) -> {
+            if (stays.overlaps(arrival, departure)) {
+                taken.add(propertyId);
+            }
+        });
+        return taken;
+    }
+
+    /**
+     * Checks if a property has no stay overlapping the given dates
+     * @param propertyId
+     * @param arrival
+     * @param departure
+     * @return true if the property is free
+     */
+    public synchronized boolean isFree(Long propertyId, LocalDate arrival, LocalDate departure) {
+        PropertyStays stays = staysByProperty.get(propertyId);
+        return stays == null || !stays.overlaps(arrival, departure);
+    }
+
+    /**
+     * A request takes its dates while it is approved or paid and it was not canceled, rejected, completed or expired
+     * @param request
+     * @return true if the request takes the dates of the property
+     */
+    static boolean isBlocking(RentalRequest request) {
+        return (request.isApproved() || request.isPaid()) && !request.isCanceled() && !request.isRejected()
+                && !request.isCompleted() && !request.isExpired()
+                && request.getProperty() != null && request.getArrivalDate() != null && request.getDepartureDate() != null;
+    }
+
+    private void add(Long requestId, Long propertyId, LocalDate arrival, LocalDate departure) {
+        staysByProperty.computeIfAbsent(propertyId, id -> new PropertyStays()).add(requestId, arrival, departure);
+        propertyByRequest.put(requestId, propertyId);
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void removeStay(Long requestId) {
+        Long propertyId = propertyByRequest.remove(requestId);
+        if (propertyId == null) {
+            return;
+        }
+        PropertyStays stays = staysByProperty.get(propertyId);
+        stays.remove(requestId);
+        if (stays.isEmpty()) {
+            staysByProperty.remove(propertyId);
+        }
+    }
+
+    /**
+     * Stays of one property by arrival date, two requests can arrive the same day
+     */
+    private static class PropertyStays {
+        private final TreeMap<LocalDate, Map<Long, LocalDate>> departuresByArrival = new TreeMap<>();
+        private final Map<Long, LocalDate> arrivalByRequest = new HashMap<>();
+        // Noches ocupadas por año, el bit i es el dia i + 1 del año
+        private final Map<Integer, BitSet> nightsByYear = new HashMap<>();
+        // Solo crece, una estadia larga cancelada hace la busqueda un poco mas amplia pero no incorrecta
+        private long longestStay = 0;
+
+        private void add(Long requestId, LocalDate arrival, LocalDate departure) {
+            departuresByArrival.computeIfAbsent(arrival, date -> new HashMap<>()).put(requestId, departure);
+            arrivalByRequest.put(requestId, arrival);
+            longestStay = Math.max(longestStay, ChronoUnit.DAYS.between(arrival, departure));
+            markNights(arrival, departure);
+        }
+
+        private void remove(Long requestId) {
+            LocalDate arrival = arrivalByRequest.remove(requestId);
+            Map<Long, LocalDate> departures = departuresByArrival.get(arrival);
+            departures.remove(requestId);
+            if (departures.isEmpty()) {
+                departuresByArrival.remove(arrival);
+            }
+            // Otra estadia puede compartir noches con la eliminada, se vuelven a marcar las que quedan
+            nightsByYear.clear();
+            departuresByArrival.forEach((stayArrival, stayDepartures) ->
+                    stayDepartures.values().forEach(stayDeparture -> markNights(stayArrival, stayDeparture)));
+        }
+
+        private void markNights(LocalDate arrival, LocalDate departure) {
+            for (LocalDate night = arrival; night.isBefore(departure); night = night.plusDays(1)) {
+                nightsByYear.computeIfAbsent(night.getYear(), year -> new BitSet(366)).set(night.getDayOfYear() - 1);
+            }
+        }
+
+        private List<LocalDate> takenDays(LocalDate from, LocalDate to) {
+            List<LocalDate> days = new ArrayList<>();
+            for (int year = from.getYear(); year <= to.getYear(); year++) {
+                BitSet nights = nightsByYear.get(year);
+                if (nights == null) {
+                    continue;
+                }
+                LocalDate firstDay = LocalDate.ofYearDay(year, 1);
+                int start = year == from.getYear() ? from.getDayOfYear() - 1 : 0;
+                int end = year == to.getYear() ? to.getDayOfYear() - 1 : firstDay.lengthOfYear() - 1;
+                for (int day = nights.nextSetBit(start); day >= 0 && day <= end; day = nights.nextSetBit(day + 1)) {
+                    days.add(firstDay.plusDays(day));
+                }
+            }
+            return days;
+        }
+
+        private boolean isEmpty() {
+            return arrivalByRequest.isEmpty();
+        }
+
+        private boolean overlaps(LocalDate arrival, LocalDate departure) {
+            LocalDate earliestArrival = arrival.minusDays(longestStay);
+            for (Map<Long, LocalDate> departures : departuresByArrival.subMap(earliestArrival, true, departure, false).values()) {
+                for (LocalDate stayDeparture : departures.values()) {
+                    if (stayDeparture.isAfter(arrival)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
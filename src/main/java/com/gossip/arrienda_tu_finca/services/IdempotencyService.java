@@ -0,0 +1,257 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.gossip.arrienda_tu_finca.CacheConfig;
+import com.gossip.arrienda_tu_finca.entities.IdempotencyRecord;
+import com.gossip.arrienda_tu_finca.exceptions.IdempotencyKeyInProgressException;
+import com.gossip.arrienda_tu_finca.exceptions.IdempotencyKeyReusedException;
+import com.gossip.arrienda_tu_finca.repositories.IdempotencyRecordRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Runs an operation once per Idempotency-Key of a user and gives the same response to the retries.
+ * The successful responses are kept in a bounded in-memory cache and in the idempotency_keys table, both expire after
+ * arrienda.idempotency.ttl. The response is saved in the transaction of the operation, so both commit or neither does.
+ * A retry that arrives while the first execution is still running waits for it instead of running it again.
+ * Errors are not kept, a retry after an error runs the operation again
+ */
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Cache<Object, Object> responses;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, CacheManager cacheManager,
+            PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+            @Value("${arrienda.idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${arrienda.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.responses = (Cache<Object, Object>) cacheManager.getCache(CacheConfig.IDEMPOTENT_RESPONSES).getNativeCache();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Runs the operation, or returns the response it gave to the same key before
+     * @param operation name of the operation, the same key can be used once per operation
+     * @param user email of the authenticated user, the same key of two users are different keys
+     * @param key value of the Idempotency-Key header, null or blank runs the operation without saving it
+     * @param request path variables and body of the request, a retry must send the same ones
+     * @param action operation to run, its service calls join the transaction that saves the response
+     * @throws IdempotencyKeyReusedException if the key was used with another request or it is too long
+     * @throws IdempotencyKeyInProgressException if the first execution did not finish in arrienda.idempotency.wait-timeout
+     * @return ResponseEntity<String> of the operation, the saved one for a retry
+     */
+    public ResponseEntity<String> execute(String operation, String user, String key, Object request, Supplier<ResponseEntity<String>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyReusedException("La llave de idempotencia no puede tener mas de " + MAX_KEY_LENGTH + " caracteres");
+        }
+        String id = idOf(operation, user, key);
+        String requestHash = hash(operation, request);
+
+        StoredResponse stored = find(id);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+        CompletableFuture<StoredResponse> running = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> previous = inFlight.putIfAbsent(id, running);
+        if (previous != null) {
+            return replay(await(previous, key), requestHash);
+        }
+        try {
+            // La primera ejecucion pudo terminar entre la busqueda y el registro en curso
+            stored = find(id);
+            if (stored != null) {
+                running.complete(stored);
+                return replay(stored, requestHash);
+            }
+            ResponseEntity<String> response = run(id, requestHash, action);
+            running.complete(new StoredResponse(requestHash, response.getStatusCode().value(), response.getBody(),
+                    LocalDateTime.now().plus(ttl)));
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia guardo la misma llave primero, su transaccion gano y la nuestra se revirtio
+            stored = find(id);
+            if (stored == null) {
+                running.completeExceptionally(e);
+                throw e;
+            }
+            running.complete(stored);
+            return replay(stored, requestHash);
+        } catch (RuntimeException e) {
+            running.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, running);
+        }
+    }
+
+    /**
+     * Deletes the expired responses from the table, it runs every arrienda.idempotency.purge-delay
+     * @return int with the amount of deleted responses
+     */
+    @Scheduled(initialDelayString = "${arrienda.idempotency.purge-delay:PT1H}", fixedDelayString = "${arrienda.idempotency.purge-delay:PT1H}")
+    public int purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        logger.info("Idempotency purge finished, {} expired keys deleted", deleted);
+        return deleted;
+    }
+
+    private ResponseEntity<String> run(String id, String requestHash, Supplier<ResponseEntity<String>> action) {
+        return transactionTemplate.execute(status -> {
+            ResponseEntity<String> response = action.get();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                // Una respuesta de error no se guarda y no deja cambios a medias
+                status.setRollbackOnly();
+                return response;
+            }
+            StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(), response.getBody(),
+                    LocalDateTime.now().plus(ttl));
+            idempotencyRecordRepository.deleteExpiredKey(id, LocalDateTime.now());
+            // Si otra instancia guardo la misma llave, el INSERT falla y esta transaccion se revierte
+            idempotencyRecordRepository.insert(new IdempotencyRecord(id, requestHash, stored.statusCode, stored.body,
+                    stored.expiresAt));
+            afterCommit(() -> responses.put(id, stored));
+            return response;
+        });
+    }
+
+    private void afterCommit(Runnable change) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private StoredResponse find(String id) {
+        LocalDateTime now = LocalDateTime.now();
+        StoredResponse stored = (StoredResponse) responses.getIfPresent(id);
+        if (stored != null) {
+            // La entrada leida de la tabla vive en memoria hasta que vence su registro, no un ttl completo mas
+            if (stored.expiresAt.isAfter(now)) {
+                return stored;
+            }
+            responses.invalidate(id);
+            return null;
+        }
+        IdempotencyRecord record = idempotencyRecordRepository.findById(id).orElse(null);
+        if (record == null || record.getExpiresAt().isBefore(now)) {
+            return null;
+        }
+        stored = new StoredResponse(record.getRequestHash(), record.getStatusCode(), record.getBody(), record.getExpiresAt());
+        responses.put(id, stored);
+        return stored;
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running, String key) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Quien espera recibe el mismo error que la primera ejecucion
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException("La solicitud con la llave " + key + " aun se esta procesando");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException("La solicitud con la llave " + key + " aun se esta procesando");
+        }
+    }
+
+    private ResponseEntity<String> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw new IdempotencyKeyReusedException("La llave de idempotencia ya fue usada con otra solicitud");
+        }
+        return ResponseEntity.status(stored.statusCode).body(stored.body);
+    }
+
+    /**
+     * Builds the id of the saved response, the user goes hashed so the id fits the column whatever the length of the email
+     * @param operation
+     * @param user
+     * @param key
+     * @return String with operation:user:key
+     */
+    String idOf(String operation, String user, String key) {
+        try {
+            byte[] userHash = MessageDigest.getInstance("SHA-256").digest(user.getBytes(StandardCharsets.UTF_8));
+            return operation + ":" + HexFormat.of().formatHex(userHash, 0, 16) + ":" + key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular el hash del usuario", e);
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo calcular el hash de la solicitud", e);
+        }
+    }
+
+    /**
+     * Response saved for a key, with the hash of the request that produced it and the moment its record expires
+     */
+    @Getter
+    @AllArgsConstructor
+    static class StoredResponse {
+        private final String requestHash;
+        private final int statusCode;
+        private final String body;
+        private final LocalDateTime expiresAt;
+    }
+}
@@ -0,0 +1,112 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+
+/**
+ * Keeps in memory the municipality of every available property so a random municipality
+ * can be drawn in O(1), weighted by the amount of properties it has.
+ * Each available property owns one slot, removing a property moves the last slot into its place.
+ */
+@Component
+public class MunicipalitySampler {
+    private final PropertyRepository propertyRepository;
+    private final List<String> slots = new ArrayList<>();
+    private final List<Long> slotOwners = new ArrayList<>();
+    private final Map<Long, Integer> slotByProperty = new HashMap<>();
+    private boolean loaded = false;
+
+    @Autowired
+    public MunicipalitySampler(PropertyRepository propertyRepository) {
+        this.propertyRepository = propertyRepository;
+    }
+
+    /**
+     * Draws a random municipality, the first draw loads the available properties from the database
+     * @return String with the municipality or null if there are no available properties
+     */
+    public synchronized String sample() {
+        if (!loaded) {
+            for (Object[] row : propertyRepository.findAvailablePropertyMunicipalities()) {
+                add((Long) row[0], (String) row[1]);
+            }
+            loaded = true;
+        }
+        if (slots.isEmpty()) {
+            return null;
+        }
+        return slots.get(ThreadLocalRandom.current().nextInt(slots.size()));
+    }
+
+    /**
+     * Registers an available property, or moves it if its municipality changed
+     * @param propertyId
+     * @param municipality
+     */
+    public synchronized void put(Long propertyId, String municipality) {
+        if (!loaded) {
+            return;
+        }
+        remove(propertyId);
+        add(propertyId, municipality);
+    }
+
+    /**
+     * Updates the municipality of a property only if it is already registered
+     * @param propertyId
+     * @param municipality
+     */
+    public synchronized void update(Long propertyId, String municipality) {
+        if (slotByProperty.containsKey(propertyId)) {
+            put(propertyId, municipality);
+        }
+    }
+
+    /**
+     * Removes a property that is no longer available
+     * @param propertyId
+     */
+    public synchronized void remove(Long propertyId) {
+        Integer index = slotByProperty.remove(propertyId);
+        if (index == null) {
+            return;
+        }
+        int last = slots.size() - 1;
+        if (index != last) {
+            Long movedProperty = slotOwners.get(last);
+            slots.set(index, slots.get(last));
+            slotOwners.set(index, movedProperty);
+            slotByProperty.put(movedProperty, index);
+        }
+        slots.remove(last);
+        slotOwners.remove(last);
+    }
+
+    /**
+     * Forgets every registered property, the next draw loads them again from the database.
+     * Used after writes that do not go through put, like the bulk import
+     */
+    public synchronized void reload() {
+        slots.clear();
+        slotOwners.clear();
+        slotByProperty.clear();
+        loaded = false;
+    }
+
+    private void add(Long propertyId, String municipality) {
+        if (municipality == null || slotByProperty.containsKey(propertyId)) {
+            return;
+        }
+        slotByProperty.put(propertyId, slots.size());
+        slots.add(municipality);
+        slotOwners.add(propertyId);
+    }
+}
@@ -0,0 +1,55 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPageRequestException;
+
+/**
+ * Opaque cursor used by the keyset paginated endpoints.
+ * The cursor carries the sort key values of the last row of a page, so the
+ * next page can be requested with a WHERE clause instead of an OFFSET.
+ */
+public final class PageCursor {
+    private static final String SEPARATOR = "|";
+
+    private PageCursor() {
+    }
+
+    /**
+     * Encodes the given key values into an url safe cursor
+     * @param parts
+     * @return String with the encoded cursor
+     */
+    public static String encode(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor created with encode
+     * @param cursor
+     * @param expectedParts
+     * @throws InvalidPageRequestException if the cursor is malformed
+     * @return String[] with the key values of the cursor
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("El cursor " + cursor + " no es valido");
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, -1);
+        if (parts.length != expectedParts) {
+            throw new InvalidPageRequestException("El cursor " + cursor + " no es valido");
+        }
+        return parts;
+    }
+}
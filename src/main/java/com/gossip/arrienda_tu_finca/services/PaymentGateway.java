@@ -0,0 +1,51 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import com.gossip.arrienda_tu_finca.exceptions.PaymentGatewayException;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Payment processor used by PaymentService. The calls block and are only made from the payment workers,
+ * never from the request threads. The implementation is chosen with arrienda.payments.gateway
+ */
+public interface PaymentGateway {
+    /**
+     * Charges a payment. The payment id goes as the idempotency key of the processor, so a retry after a timeout
+     * does not charge twice
+     * @param charge
+     * @throws PaymentGatewayException if the processor could not be reached or failed, the charge is retried
+     * @return Result confirmed, declined, or pending when the processor confirms later
+     */
+    Result charge(Charge charge);
+
+    /**
+     * Asks the processor for the state of a pending charge
+     * @param reference reference returned by charge
+     * @throws PaymentGatewayException if the processor could not be reached, the query is retried
+     * @return Result with the current state of the charge
+     */
+    Result status(String reference);
+
+    enum Outcome {
+        CONFIRMED, DECLINED, PENDING
+    }
+
+    @Getter
+    @AllArgsConstructor
+    class Charge {
+        private final Long paymentId;
+        private final Long requestId;
+        private final Double amount;
+        private final String bank;
+        private final Integer accountNumber;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    class Result {
+        private final Outcome outcome;
+        private final String reference;
+        private final String message;
+    }
+}
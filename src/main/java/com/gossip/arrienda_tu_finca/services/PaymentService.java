@@ -0,0 +1,521 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gossip.arrienda_tu_finca.dto.PaymentCallbackDTO;
+import com.gossip.arrienda_tu_finca.dto.PaymentDTO;
+import com.gossip.arrienda_tu_finca.dto.PaymentStatusDTO;
+import com.gossip.arrienda_tu_finca.entities.Payment;
+import com.gossip.arrienda_tu_finca.entities.PaymentStatus;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidCallbackSignatureException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPaymentException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidStateTransitionException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentGatewayException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentGatewayUnavailableException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentNotFoundException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentQueueFullException;
+import com.gossip.arrienda_tu_finca.exceptions.RentalRequestNotFoundException;
+import com.gossip.arrienda_tu_finca.repositories.PaymentRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Charges the rental requests through the PaymentGateway without holding the request threads.
+ * A payment is saved as QUEUED and handed to a fixed pool of workers once its transaction commits. At most
+ * arrienda.payments.queue-capacity payments are in the pipeline, the next ones are rejected until there is room.
+ * Failed calls are retried with exponential backoff and jitter, pending charges are polled and can also be resolved
+ * by the callback of the gateway. The rental request is only marked as paid when the gateway confirms the charge.
+ * Without a configured gateway the application still starts and the payments are rejected
+ */
+@Service
+public class PaymentService {
+    public static final String SIGNATURE_HEADER = "X-Payment-Signature";
+    private static final String PAYMENT_NOT_FOUND = "Pago no encontrado";
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+    private final PaymentRepository paymentRepository;
+    private final RentalRequestRepository rentalRequestRepository;
+    private final RentalRequestService rentalRequestService;
+    private final PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer gatewayTimer;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService delays;
+    // Pagos en la tubería, desde que se aceptan hasta que llegan a un estado final o se dejan al callback
+    private final Set<Long> inPipeline = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final int queueCapacity;
+    private final int maxAttempts;
+    private final Duration retryBaseDelay;
+    private final Duration pollDelay;
+    private final int maxPolls;
+    private final ObjectMapper objectMapper;
+    private final byte[] callbackSecret;
+    private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+
+    @Autowired
+    public PaymentService(PaymentRepository paymentRepository, RentalRequestRepository rentalRequestRepository,
+            RentalRequestService rentalRequestService, ObjectProvider<PaymentGateway> paymentGateway,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry, ObjectMapper objectMapper,
+            @Value("${arrienda.payments.workers:8}") int workerThreads,
+            @Value("${arrienda.payments.queue-capacity:200}") int queueCapacity,
+            @Value("${arrienda.payments.max-attempts:4}") int maxAttempts,
+            @Value("${arrienda.payments.retry-base-delay:PT0.5S}") Duration retryBaseDelay,
+            @Value("${arrienda.payments.poll-delay:PT5S}") Duration pollDelay,
+            @Value("${arrienda.payments.max-polls:12}") int maxPolls,
+            @Value("${arrienda.payments.callback-secret:}") String callbackSecret) {
+        this.paymentRepository = paymentRepository;
+        this.rentalRequestRepository = rentalRequestRepository;
+        this.rentalRequestService = rentalRequestService;
+        // Sin pasarela los pagos se rechazan, el simulador nunca se usa sin pedirlo
+        this.paymentGateway = paymentGateway.getIfAvailable();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.queueCapacity = queueCapacity;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelay = retryBaseDelay;
+        this.pollDelay = pollDelay;
+        this.maxPolls = maxPolls;
+        this.objectMapper = objectMapper;
+        this.callbackSecret = callbackSecret.getBytes(StandardCharsets.UTF_8);
+        this.gatewayTimer = meterRegistry.timer("payments.gateway.duration");
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Solo espera los reintentos y las consultas, las llamadas a la pasarela las hacen los workers
+        this.delays = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-delays");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("payments.queue.size", reserved);
+    }
+
+    /**
+     * Accepts the payment of an approved rental request and queues its charge. If the request already has
+     * a payment in progress, that payment is returned instead of charging twice
+     * @param requestId
+     * @param paymentDto bank and account number of the renter, can be null
+     * @throws RentalRequestNotFoundException if the request does not exist
+     * @throws InvalidPaymentException if the request is not approved, is already paid or expired, or has no amount
+     * @throws PaymentQueueFullException if there are already arrienda.payments.queue-capacity payments in progress
+     * @throws PaymentGatewayUnavailableException if there is no gateway configured
+     * @return PaymentStatusDTO of the queued payment
+     */
+    public PaymentStatusDTO submit(Long requestId, PaymentDTO paymentDto) {
+        if (paymentGateway == null) {
+            throw new PaymentGatewayUnavailableException("Los pagos no estan disponibles, no hay una pasarela de pagos configurada");
+        }
+        if (reserved.incrementAndGet() > queueCapacity) {
+            reserved.decrementAndGet();
+            throw new PaymentQueueFullException("Hay demasiados pagos en proceso, intente de nuevo en unos segundos");
+        }
+        AtomicBoolean handedOver = new AtomicBoolean(false);
+        try {
+            return transactionTemplate.execute(status -> {
+                RentalRequest request = rentalRequestRepository.lockById(requestId)
+                        .orElseThrow(() -> new RentalRequestNotFoundException("Solicitud de arriendo no encontrada"));
+                checkPayable(request);
+                if (request.getAmount() == null || request.getAmount() <= 0) {
+                    throw new InvalidPaymentException("La solicitud de arriendo no tiene un monto para cobrar.");
+                }
+                Payment active = paymentRepository.findFirstByRequestIdOrderByIdDesc(requestId).orElse(null);
+                if (active != null && !active.getStatus().isFinal()) {
+                    return toDTO(active);
+                }
+                LocalDateTime now = LocalDateTime.now();
+                Payment payment = paymentRepository.save(new Payment(null, requestId, request.getAmount(),
+                        paymentDto == null ? null : paymentDto.getBank(), paymentDto == null ? null : paymentDto.getAccountNumber(),
+                        PaymentStatus.QUEUED, 0, null, null, now, now));
+                handedOver.set(true);
+                // Se encola cuando confirma la transaccion, que puede ser la de la llave de idempotencia
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int completion) {
+                        if (completion == STATUS_COMMITTED) {
+                            enqueue(payment.getId());
+                        } else {
+                            reserved.decrementAndGet();
+                        }
+                    }
+                });
+                return toDTO(payment);
+            });
+        } finally {
+            if (!handedOver.get()) {
+                reserved.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Obtains the state of the last payment of a rental request, the client polls it after paying
+     * @param requestId
+     * @param userEmail email of the authenticated user, only the renter and the host of the request can see it
+     * @throws PaymentNotFoundException if the request has no payments or it is not from the user
+     * @return PaymentStatusDTO of the last payment
+     */
+    public PaymentStatusDTO getStatus(Long requestId, String userEmail) {
+        RentalRequest request = rentalRequestRepository.findForReviewById(requestId)
+                .orElseThrow(() -> new PaymentNotFoundException(PAYMENT_NOT_FOUND));
+        boolean renter = request.getRequester() != null && request.getRequester().getEmail().equals(userEmail);
+        boolean host = request.getProperty().getOwner() != null && request.getProperty().getOwner().getEmail().equals(userEmail);
+        if (!renter && !host) {
+            // Igual que un pago que no existe, no revela los pagos de otros usuarios
+            throw new PaymentNotFoundException(PAYMENT_NOT_FOUND);
+        }
+        return paymentRepository.findFirstByRequestIdOrderByIdDesc(requestId).map(this::toDTO)
+                .orElseThrow(() -> new PaymentNotFoundException(PAYMENT_NOT_FOUND));
+    }
+
+    /**
+     * Applies a callback of the gateway after checking that the gateway signed it. The signature is the
+     * HMAC-SHA256 in hexadecimal of the raw body with arrienda.payments.callback-secret, without a secret every
+     * callback is rejected
+     * @param payload body of the callback as it was received, a PaymentCallbackDTO in JSON
+     * @param signature value of the X-Payment-Signature header
+     * @throws InvalidCallbackSignatureException if the signature is missing or does not match the body
+     * @throws PaymentNotFoundException if no payment has the reference
+     * @return PaymentStatusDTO of the payment after the result
+     */
+    public PaymentStatusDTO handleSignedCallback(String payload, String signature) {
+        if (callbackSecret.length == 0 || signature == null || payload == null) {
+            throw new InvalidCallbackSignatureException("El callback del pago no esta firmado");
+        }
+        byte[] expected = sign(payload).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, signature.trim().toLowerCase().getBytes(StandardCharsets.UTF_8))) {
+            throw new InvalidCallbackSignatureException("La firma del callback del pago no es valida");
+        }
+        PaymentCallbackDTO callback;
+        try {
+            callback = objectMapper.readValue(payload, PaymentCallbackDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new InvalidCallbackSignatureException("El callback del pago no se pudo leer");
+        }
+        return handleCallback(callback.getReference(), callback.getOutcome(), callback.getMessage());
+    }
+
+    /**
+     * Signs a callback body with arrienda.payments.callback-secret, as the gateway does
+     * @param payload body of the callback
+     * @return String with the HMAC-SHA256 in hexadecimal
+     */
+    String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(new SecretKeySpec(callbackSecret, SIGNATURE_ALGORITHM));
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("No se pudo calcular la firma del callback", e);
+        }
+    }
+
+    /**
+     * Applies the result that the gateway sends for a pending charge. A result for a payment already final is ignored
+     * @param reference reference of the charge in the gateway
+     * @param outcome
+     * @param message
+     * @throws PaymentNotFoundException if no payment has the reference
+     * @return PaymentStatusDTO of the payment after the result
+     */
+    public PaymentStatusDTO handleCallback(String reference, PaymentGateway.Outcome outcome, String message) {
+        Payment payment = paymentRepository.findByGatewayReference(reference)
+                .orElseThrow(() -> new PaymentNotFoundException(PAYMENT_NOT_FOUND));
+        if (outcome != null) {
+            apply(payment.getId(), new PaymentGateway.Result(outcome, reference, message));
+        }
+        return paymentRepository.findById(payment.getId()).map(this::toDTO)
+                .orElseThrow(() -> new PaymentNotFoundException(PAYMENT_NOT_FOUND));
+    }
+
+    /**
+     * Queues again the payments that were waiting or being charged when the application stopped, the gateway
+     * receives the same payment id so a charge that already went through is not made twice.
+     * Without a gateway they stay as they are until one is configured
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        if (paymentGateway == null) {
+            logger.warn("No payment gateway configured, set arrienda.payments.gateway to charge the payments");
+            return;
+        }
+        List<Long> ids = new ArrayList<>(paymentRepository.findIdsByStatus(PaymentStatus.QUEUED));
+        ids.addAll(paymentRepository.findIdsByStatus(PaymentStatus.PROCESSING));
+        for (Long paymentId : ids) {
+            reserved.incrementAndGet();
+            enqueue(paymentId);
+        }
+        for (Long paymentId : paymentRepository.findIdsByStatus(PaymentStatus.PENDING)) {
+            reserved.incrementAndGet();
+            inPipeline.add(paymentId);
+            schedulePoll(paymentId, 1);
+        }
+        if (!ids.isEmpty()) {
+            logger.info("{} payments queued again after the restart", ids.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        delays.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void checkPayable(RentalRequest request) {
+        RentalRequestStatus status = RentalRequestStatus.of(request);
+        if (status == RentalRequestStatus.APPROVED) {
+            return;
+        }
+        switch (status) {
+            case PENDING -> throw new InvalidPaymentException("La solicitud de arriendo no ha sido aceptada.");
+            case PAID, COMPLETED -> throw new InvalidPaymentException("La solicitud de arriendo ya ha sido pagada.");
+            case EXPIRED -> throw new InvalidPaymentException("La solicitud de arriendo ha expirado.");
+            default -> throw new InvalidStateTransitionException("La solicitud de arriendo en estado " + status
+                    + " no puede pasar a " + RentalRequestStatus.PAID);
+        }
+    }
+
+    private void enqueue(Long paymentId) {
+        inPipeline.add(paymentId);
+        workers.execute(() -> process(paymentId));
+    }
+
+    private void process(Long paymentId) {
+        try {
+            charge(paymentId);
+        } catch (RuntimeException e) {
+            if (workers.isShutdown()) {
+                // La aplicacion se esta deteniendo, el pago se retoma al iniciar
+                return;
+            }
+            // Un error de la base de datos deja el pago en la cola, se vuelve a intentar como una falla de la pasarela
+            logger.error("Payment {} could not be processed", paymentId, e);
+            retryOrFail(paymentId, e.getMessage());
+        }
+    }
+
+    private void charge(Long paymentId) {
+        Payment payment = transactionTemplate.execute(status -> {
+            Payment locked = paymentRepository.lockById(paymentId).orElse(null);
+            if (locked == null || (locked.getStatus() != PaymentStatus.QUEUED && locked.getStatus() != PaymentStatus.PROCESSING)) {
+                return null;
+            }
+            locked.setStatus(PaymentStatus.PROCESSING);
+            locked.setAttempts(locked.getAttempts() + 1);
+            locked.setUpdatedAt(LocalDateTime.now());
+            return locked;
+        });
+        if (payment == null) {
+            leave(paymentId);
+            return;
+        }
+        PaymentGateway.Result result;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // Fuera de toda transaccion, la latencia de la pasarela no retiene conexiones de la base de datos
+            result = paymentGateway.charge(new PaymentGateway.Charge(payment.getId(), payment.getRequestId(), payment.getAmount(),
+                    payment.getBank(), payment.getAccountNumber()));
+        } catch (PaymentGatewayException e) {
+            retryOrFail(paymentId, e.getMessage());
+            return;
+        } finally {
+            sample.stop(gatewayTimer);
+        }
+        apply(paymentId, result);
+    }
+
+    private void retryOrFail(Long paymentId, String message) {
+        Integer attempts = transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.lockById(paymentId).orElse(null);
+            if (payment == null || payment.getStatus().isFinal()) {
+                return null;
+            }
+            payment.setMessage(message);
+            payment.setUpdatedAt(LocalDateTime.now());
+            if (payment.getAttempts() >= maxAttempts) {
+                payment.setStatus(PaymentStatus.FAILED);
+                return -1;
+            }
+            payment.setStatus(PaymentStatus.QUEUED);
+            return payment.getAttempts();
+        });
+        if (attempts == null || attempts < 0) {
+            if (attempts != null) {
+                completed(PaymentStatus.FAILED);
+                logger.error("Payment {} failed after {} attempts: {}", paymentId, maxAttempts, message);
+            }
+            leave(paymentId);
+            return;
+        }
+        // Espera exponencial con jitter, los pagos que fallaron juntos no vuelven a la pasarela al mismo tiempo
+        long backoff = retryBaseDelay.toMillis() << Math.min(attempts - 1, 16);
+        long delay = (long) (backoff * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+        later(() -> process(paymentId), delay);
+    }
+
+    private void apply(Long paymentId, PaymentGateway.Result result) {
+        switch (result.getOutcome()) {
+            case CONFIRMED -> confirm(paymentId, result);
+            case DECLINED -> finish(paymentId, PaymentStatus.DECLINED, result);
+            case PENDING -> {
+                boolean pending = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    Payment payment = paymentRepository.lockById(paymentId).orElse(null);
+                    if (payment == null || payment.getStatus().isFinal()) {
+                        return false;
+                    }
+                    payment.setStatus(PaymentStatus.PENDING);
+                    payment.setGatewayReference(result.getReference());
+                    payment.setMessage(result.getMessage());
+                    payment.setUpdatedAt(LocalDateTime.now());
+                    return true;
+                }));
+                if (pending && inPipeline.contains(paymentId)) {
+                    schedulePoll(paymentId, 1);
+                }
+            }
+        }
+    }
+
+    private void confirm(Long paymentId, PaymentGateway.Result result) {
+        try {
+            Boolean confirmed = transactionTemplate.execute(status -> {
+                Payment payment = paymentRepository.lockById(paymentId).orElse(null);
+                if (payment == null || payment.getStatus().isFinal()) {
+                    return false;
+                }
+                payment.setStatus(PaymentStatus.CONFIRMED);
+                payment.setGatewayReference(result.getReference());
+                payment.setMessage(result.getMessage());
+                payment.setUpdatedAt(LocalDateTime.now());
+                // El pago y la solicitud confirman juntos, la solicitud solo queda pagada con un cobro confirmado
+                rentalRequestService.payRequest(payment.getRequestId());
+                return true;
+            });
+            if (Boolean.TRUE.equals(confirmed)) {
+                completed(PaymentStatus.CONFIRMED);
+            }
+            leave(paymentId);
+        } catch (RentalRequestNotFoundException | InvalidPaymentException | InvalidStateTransitionException e) {
+            // La pasarela cobro una solicitud que ya no se puede pagar, por ejemplo porque expiro mientras tanto
+            logger.error("Payment {} was confirmed for a request that can not be paid: {}", paymentId, e.getMessage());
+            finish(paymentId, PaymentStatus.REFUND_REQUIRED, new PaymentGateway.Result(result.getOutcome(), result.getReference(),
+                    e.getMessage()));
+        }
+    }
+
+    private void finish(Long paymentId, PaymentStatus finalStatus, PaymentGateway.Result result) {
+        boolean finished = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.lockById(paymentId).orElse(null);
+            if (payment == null || payment.getStatus().isFinal()) {
+                return false;
+            }
+            payment.setStatus(finalStatus);
+            payment.setGatewayReference(result.getReference());
+            payment.setMessage(result.getMessage());
+            payment.setUpdatedAt(LocalDateTime.now());
+            return true;
+        }));
+        if (finished) {
+            completed(finalStatus);
+        }
+        leave(paymentId);
+    }
+
+    private void schedulePoll(Long paymentId, int poll) {
+        later(() -> poll(paymentId, poll), pollDelay.toMillis());
+    }
+
+    private void later(Runnable task, long delayMillis) {
+        if (delays.isShutdown()) {
+            return;
+        }
+        delays.schedule(() -> workers.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Long paymentId, int poll) {
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null || payment.getStatus() != PaymentStatus.PENDING) {
+            leave(paymentId);
+            return;
+        }
+        PaymentGateway.Result result = null;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            result = paymentGateway.status(payment.getGatewayReference());
+        } catch (PaymentGatewayException e) {
+            logger.info("State of payment {} could not be read: {}", paymentId, e.getMessage());
+        } finally {
+            sample.stop(gatewayTimer);
+        }
+        if (result != null && result.getOutcome() != PaymentGateway.Outcome.PENDING) {
+            apply(paymentId, result);
+            return;
+        }
+        if (poll >= maxPolls) {
+            // Sigue pendiente, el callback de la pasarela lo resuelve
+            logger.info("Payment {} still pending after {} polls, waiting for the gateway callback", paymentId, poll);
+            leave(paymentId);
+            return;
+        }
+        schedulePoll(paymentId, poll + 1);
+    }
+
+    private void leave(Long paymentId) {
+        if (inPipeline.remove(paymentId)) {
+            reserved.decrementAndGet();
+        }
+    }
+
+    private void completed(PaymentStatus status) {
+        meterRegistry.counter("payments.completed", "status", status.name()).increment();
+    }
+
+    private PaymentStatusDTO toDTO(Payment payment) {
+        return new PaymentStatusDTO(payment.getId(), payment.getRequestId(), payment.getStatus().name(), payment.getAttempts(),
+                payment.getGatewayReference(), payment.getMessage(), payment.getUpdatedAt());
+    }
+}
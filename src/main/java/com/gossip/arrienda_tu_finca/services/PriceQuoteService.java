@@ -0,0 +1,94 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.gossip.arrienda_tu_finca.dto.PriceQuoteDTO;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidAmountOfResidentsException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidDateException;
+import com.gossip.arrienda_tu_finca.exceptions.PropertyNotFoundException;
+
+/**
+ * Computes the price of a stay from the PriceTable: nights by price per night, plus the optional rules.
+ * The high season surcharge is a percentage over the nights that fall in the configured months,
+ * the extra residents surcharge is a price per night for each resident over the included ones.
+ * A rule with a surcharge of 0 is turned off
+ */
+@Service
+public class PriceQuoteService {
+    private PriceTable priceTable;
+    private Set<Integer> highSeasonMonths;
+    private BigDecimal highSeasonSurcharge;
+    private int includedResidents;
+    private BigDecimal extraResidentPrice;
+
+    @Autowired
+    public PriceQuoteService(PriceTable priceTable,
+            @Value("${arrienda.quote.high-season-months:1,6,7,12}") List<Integer> highSeasonMonths,
+            @Value("${arrienda.quote.high-season-surcharge:0}") double highSeasonSurcharge,
+            @Value("${arrienda.quote.included-residents:2}") int includedResidents,
+            @Value("${arrienda.quote.extra-resident-price:0}") double extraResidentPrice) {
+        this.priceTable = priceTable;
+        this.highSeasonMonths = new HashSet<>(highSeasonMonths);
+        this.highSeasonSurcharge = BigDecimal.valueOf(highSeasonSurcharge);
+        this.includedResidents = includedResidents;
+        this.extraResidentPrice = BigDecimal.valueOf(extraResidentPrice);
+    }
+
+    /**
+     * Quotes a stay in a property
+     * @param propertyId
+     * @param arrivalDate
+     * @param departureDate
+     * @param amountOfResidents null to quote without the extra residents rule
+     * @throws PropertyNotFoundException if the property does not exist or has no price per night
+     * @throws InvalidDateException if the departure is not after the arrival
+     * @throws InvalidAmountOfResidentsException if the property does not allow that many residents
+     * @return PriceQuoteDTO with the amount of the stay and its parts
+     */
+    public PriceQuoteDTO quote(Long propertyId, LocalDate arrivalDate, LocalDate departureDate, Integer amountOfResidents) {
+        if (!departureDate.isAfter(arrivalDate)) {
+            throw new InvalidDateException("La fecha final debe ser posterior a la fecha inicial");
+        }
+        PriceTable.PropertyPrice price = priceTable.get(propertyId);
+        if (price == null) {
+            throw new PropertyNotFoundException("Propiedad con ID " + propertyId + " no fue encontrada");
+        }
+        if (price.getPricePerNight() == null) {
+            throw new PropertyNotFoundException("La propiedad con ID " + propertyId + " no tiene precio por noche");
+        }
+        if (amountOfResidents != null && amountOfResidents > price.getAmountOfResidents()) {
+            throw new InvalidAmountOfResidentsException("La cantidad de residentes no puede ser superior a la permitida en la propiedad");
+        }
+
+        int nights = (int) ChronoUnit.DAYS.between(arrivalDate, departureDate);
+        BigDecimal pricePerNight = BigDecimal.valueOf(price.getPricePerNight());
+        int highSeasonNights = 0;
+        for (LocalDate night = arrivalDate; night.isBefore(departureDate); night = night.plusDays(1)) {
+            if (highSeasonMonths.contains(night.getMonthValue())) {
+                highSeasonNights++;
+            }
+        }
+        BigDecimal baseAmount = pricePerNight.multiply(BigDecimal.valueOf(nights));
+        BigDecimal highSeason = pricePerNight.multiply(BigDecimal.valueOf(highSeasonNights)).multiply(highSeasonSurcharge);
+        int extraResidents = amountOfResidents == null ? 0 : Math.max(0, amountOfResidents - includedResidents);
+        BigDecimal extraResidentsAmount = extraResidentPrice.multiply(BigDecimal.valueOf((long) extraResidents * nights));
+        BigDecimal amount = baseAmount.add(highSeason).add(extraResidentsAmount);
+
+        return new PriceQuoteDTO(propertyId, arrivalDate, departureDate, nights, amountOfResidents, price.getPricePerNight(),
+                round(baseAmount), round(highSeason), round(extraResidentsAmount), round(amount));
+    }
+
+    private static double round(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+}
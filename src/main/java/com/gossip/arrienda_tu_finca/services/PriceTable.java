@@ -0,0 +1,74 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Keeps in memory the price per night and the maximum amount of residents of every property,
+ * so the quotes do not read the database. The first read loads all the properties,
+ * the writes of PropertyService keep it up to date
+ */
+@Component
+public class PriceTable {
+    private final PropertyRepository propertyRepository;
+    private final Map<Long, PropertyPrice> prices = new HashMap<>();
+    private boolean loaded = false;
+
+    @Autowired
+    public PriceTable(PropertyRepository propertyRepository) {
+        this.propertyRepository = propertyRepository;
+    }
+
+    /**
+     * Obtains the price of a property
+     * @param propertyId
+     * @return PropertyPrice with the price per night and the maximum amount of residents, null if the property does not exist
+     */
+    public synchronized PropertyPrice get(Long propertyId) {
+        if (!loaded) {
+            for (Object[] row : propertyRepository.findPropertyPrices()) {
+                prices.put((Long) row[0], new PropertyPrice((Double) row[1], (Integer) row[2]));
+            }
+            loaded = true;
+        }
+        return prices.get(propertyId);
+    }
+
+    /**
+     * Registers the price of a created or updated property
+     * @param property
+     */
+    public synchronized void put(Property property) {
+        if (loaded) {
+            prices.put(property.getId(), new PropertyPrice(property.getPricePerNight(), property.getAmountOfResidents()));
+        }
+    }
+
+    /**
+     * Forgets every price, the next quote loads them again from the database.
+     * Used after writes that do not go through put, like the bulk import
+     */
+    public synchronized void reload() {
+        prices.clear();
+        loaded = false;
+    }
+
+    /**
+     * Price per night of a property, null if it was not set, and the maximum amount of residents
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PropertyPrice {
+        private final Double pricePerNight;
+        private final int amountOfResidents;
+    }
+}
@@ -0,0 +1,91 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.gossip.arrienda_tu_finca.CacheConfig;
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+
+/**
+ * Read-through caches for the property reads. Every write on a property must call evict
+ * so the detail and the list of its municipality are loaded again from the database.
+ * Inside a transaction the entries are removed after it commits, a read between the eviction and the commit
+ * would put the old values back until the ttl
+ */
+@Component
+public class PropertyCache {
+    private final Cache<Object, Object> byId;
+    private final Cache<Object, Object> byMunicipality;
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public PropertyCache(CacheManager cacheManager) {
+        this.byId = (Cache<Object, Object>) cacheManager.getCache(CacheConfig.PROPERTY_BY_ID).getNativeCache();
+        this.byMunicipality = (Cache<Object, Object>) cacheManager.getCache(CacheConfig.PROPERTIES_BY_MUNICIPALITY).getNativeCache();
+    }
+
+    /**
+     * Obtains the property from the cache or from the loader, a null result is not cached
+     * @param id
+     * @param loader
+     * @return PropertyDTO or null if the loader did not find the property
+     */
+    public PropertyDTO getById(Long id, Function<Long, PropertyDTO> loader) {
+        return (PropertyDTO) byId.get(id, key -> loader.apply((Long) key));
+    }
+
+    /**
+     * Obtains the properties of a municipality from the cache or from the loader
+     * @param municipality
+     * @param loader
+     * @return List<PropertyDTO> with the properties of the municipality
+     */
+    @SuppressWarnings("unchecked")
+    public List<PropertyDTO> getByMunicipality(String municipality, Function<String, List<PropertyDTO>> loader) {
+        return (List<PropertyDTO>) byMunicipality.get(municipality, key -> loader.apply((String) key));
+    }
+
+    /**
+     * Removes a property and the list of its municipality from the cache
+     * @param id
+     * @param municipality
+     */
+    public void evict(Long id, String municipality) {
+        afterCommit(() -> {
+            if (id != null) {
+                byId.invalidate(id);
+            }
+            if (municipality != null) {
+                byMunicipality.invalidate(municipality);
+            }
+        });
+    }
+
+    /**
+     * Removes the list of properties of a municipality from the cache
+     * @param municipality
+     */
+    public void evictMunicipality(String municipality) {
+        evict(null, municipality);
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyFacetsDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+
+/**
+ * Bitmap index of the available properties used for the facet counts of the search sidebar.
+ * Each available property owns one bit position and every facet value has a bitset with the properties
+ * that have it, so the count of any combination of filters is an intersection of bitsets.
+ * The positions of removed properties are reused by the next properties that are added
+ */
+@Component
+public class PropertyFacetIndex {
+    static final String[] FACETS = {"municipality", "department", "residents", "price", "petFriendly", "pool", "grill"};
+    private static final int[] RESIDENT_BUCKETS = {1, 3, 5, 9};
+    private static final String[] RESIDENT_LABELS = {"1-2", "3-4", "5-8", "9+"};
+    private static final double[] PRICE_BUCKETS = {0, 100, 200, 500};
+    private static final String[] PRICE_LABELS = {"0-99", "100-199", "200-499", "500+"};
+
+    private final PropertyRepository propertyRepository;
+    private final List<Map<String, BitSet>> bitsByValue = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> slotByProperty = new HashMap<>();
+    private final Map<Integer, String[]> valuesBySlot = new HashMap<>();
+    private boolean loaded = false;
+
+    @Autowired
+    public PropertyFacetIndex(PropertyRepository propertyRepository) {
+        this.propertyRepository = propertyRepository;
+        for (int i = 0; i < FACETS.length; i++) {
+            bitsByValue.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Counts the available properties of every facet value. The counts of a facet apply the filters
+     * of the other facets but not its own, so the sidebar can show the alternatives to the selected value
+     * @param filters selected value by facet name, unknown facet names are ignored
+     * @return PropertyFacetsDTO with the amount of properties that match all the filters and the counts by facet
+     */
+    public synchronized PropertyFacetsDTO count(Map<String, String> filters) {
+        loadIfNeeded();
+        BitSet[] selected = new BitSet[FACETS.length];
+        for (int i = 0; i < FACETS.length; i++) {
+            String value = filters.get(FACETS[i]);
+            if (value != null) {
+                selected[i] = bitsByValue.get(i).getOrDefault(value, new BitSet());
+            }
+        }
+
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        BitSet scratch = new BitSet();
+        for (int i = 0; i < FACETS.length; i++) {
+            BitSet base = intersect(selected, i);
+            Map<String, Integer> facetCounts = new TreeMap<>();
+            for (Map.Entry<String, BitSet> entry : bitsByValue.get(i).entrySet()) {
+                scratch.clear();
+                scratch.or(entry.getValue());
+                scratch.and(base);
+                facetCounts.put(entry.getKey(), scratch.cardinality());
+            }
+            counts.put(FACETS[i], facetCounts);
+        }
+        return new PropertyFacetsDTO(intersect(selected, -1).cardinality(), counts);
+    }
+
+    /**
+     * Indexes a property if it is available, or removes it if it is not
+     * @param property
+     */
+    public synchronized void put(Property property) {
+        if (!loaded) {
+            return;
+        }
+        remove(property.getId());
+        if (property.isAvailable()) {
+            add(property.getId(), new String[] {
+                property.getMunicipality(), property.getDepartment(), residentsBucket(property.getAmountOfResidents()),
+                priceBucket(property.getPricePerNight()), String.valueOf(property.isPetFriendly()),
+                String.valueOf(property.isHasPool()), String.valueOf(property.isHasGril())
+            });
+        }
+    }
+
+    /**
+     * Removes a property that is no longer available
+     * @param propertyId
+     */
+    public synchronized void remove(Long propertyId) {
+        Integer slot = slotByProperty.remove(propertyId);
+        if (slot == null) {
+            return;
+        }
+        String[] values = valuesBySlot.remove(slot);
+        for (int i = 0; i < FACETS.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            BitSet bits = bitsByValue.get(i).get(values[i]);
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                bitsByValue.get(i).remove(values[i]);
+            }
+        }
+        live.clear(slot);
+    }
+
+    /**
+     * Forgets every indexed property, the next count loads them again from the database.
+     * Used after writes that do not go through put, like the bulk import
+     */
+    public synchronized void reload() {
+        bitsByValue.forEach(Map::clear);
+        live.clear();
+        slotByProperty.clear();
+        valuesBySlot.clear();
+        loaded = false;
+    }
+
+    private void loadIfNeeded() {
+        if (loaded) {
+            return;
+        }
+        for (Object[] row : propertyRepository.findAvailablePropertyFacets()) {
+            add((Long) row[0], new String[] {
+                (String) row[1], (String) row[2], residentsBucket((Integer) row[3]), priceBucket((Double) row[4]),
+                String.valueOf(row[5]), String.valueOf(row[6]), String.valueOf(row[7])
+            });
+        }
+        loaded = true;
+    }
+
+    private void add(Long propertyId, String[] values) {
+        int slot = live.nextClearBit(0);
+        live.set(slot);
+        slotByProperty.put(propertyId, slot);
+        valuesBySlot.put(slot, values);
+        for (int i = 0; i < FACETS.length; i++) {
+            if (values[i] != null) {
+                bitsByValue.get(i).computeIfAbsent(values[i], value -> new BitSet()).set(slot);
+            }
+        }
+    }
+
+    private BitSet intersect(BitSet[] selected, int skippedFacet) {
+        BitSet result = (BitSet) live.clone();
+        for (int i = 0; i < selected.length; i++) {
+            if (i != skippedFacet && selected[i] != null) {
+                result.and(selected[i]);
+            }
+        }
+        return result;
+    }
+
+    static String residentsBucket(int amountOfResidents) {
+        for (int i = RESIDENT_BUCKETS.length - 1; i >= 0; i--) {
+            if (amountOfResidents >= RESIDENT_BUCKETS[i]) {
+                return RESIDENT_LABELS[i];
+            }
+        }
+        return null;
+    }
+
+    static String priceBucket(Double pricePerNight) {
+        if (pricePerNight == null) {
+            return null;
+        }
+        for (int i = PRICE_BUCKETS.length - 1; i >= 0; i--) {
+            if (pricePerNight >= PRICE_BUCKETS[i]) {
+                return PRICE_LABELS[i];
+            }
+        }
+        return null;
+    }
+}
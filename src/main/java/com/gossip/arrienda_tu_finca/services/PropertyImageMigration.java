@@ -0,0 +1,94 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.entities.PropertyImage;
+import com.gossip.arrienda_tu_finca.repositories.PropertyImageRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+
+/**
+ * Moves the comma separated imageIds of the properties to the property_image table when the application starts.
+ * It runs once the beans are created and before the web server takes requests, so no read sees a property whose
+ * images have not moved yet. The properties are moved in chunks ordered by id, each chunk in its own transaction.
+ * The column is cleared after each property is moved, so running it again does nothing
+ */
+@Component
+public class PropertyImageMigration implements SmartInitializingSingleton {
+    private final PropertyRepository propertyRepository;
+    private final PropertyImageRepository propertyImageRepository;
+    private final PropertyCache propertyCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private static final Logger logger = LoggerFactory.getLogger(PropertyImageMigration.class);
+
+    @Autowired
+    public PropertyImageMigration(PropertyRepository propertyRepository, PropertyImageRepository propertyImageRepository,
+            PropertyCache propertyCache, PlatformTransactionManager transactionManager,
+            @Value("${arrienda.property.image-migration-chunk-size:500}") int chunkSize) {
+        this.propertyRepository = propertyRepository;
+        this.propertyImageRepository = propertyImageRepository;
+        this.propertyCache = propertyCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    /**
+     * Moves the images of every property that still has imageIds
+     * @return int with the amount of migrated properties
+     */
+    public int migrate() {
+        int migrated = 0;
+        Long lastId = 0L;
+        while (true) {
+            Long after = lastId;
+            List<Long> chunk = transactionTemplate.execute(status -> migrateChunk(after));
+            migrated += chunk.size();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1);
+        }
+        if (migrated > 0) {
+            logger.info("Images of {} properties moved to property_image", migrated);
+        }
+        return migrated;
+    }
+
+    private List<Long> migrateChunk(Long lastId) {
+        List<Object[]> rows = propertyRepository.findLegacyImageIdsAfter(lastId, PageRequest.ofSize(chunkSize));
+        for (Object[] row : rows) {
+            Long propertyId = (Long) row[0];
+            int displayOrder = propertyImageRepository.findNextDisplayOrder(propertyId);
+            for (String imageId : ((String) row[1]).split(",")) {
+                if (imageId.isBlank()) {
+                    continue;
+                }
+                try {
+                    propertyImageRepository.save(new PropertyImage(null, propertyRepository.getReferenceById(propertyId),
+                            Integer.parseInt(imageId.trim()), displayOrder++, false));
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid image id {} in property {}, it is not migrated", imageId, propertyId);
+                }
+            }
+            propertyRepository.clearLegacyImageIds(propertyId);
+            // Una galeria leida antes de mover las imagenes no debe quedar en la cache
+            propertyCache.evict(propertyId, (String) row[2]);
+        }
+        return rows.stream().map(row -> (Long) row[0]).toList();
+    }
+}
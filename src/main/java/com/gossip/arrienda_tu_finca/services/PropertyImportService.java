@@ -0,0 +1,245 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gossip.arrienda_tu_finca.dto.PropertyCreateDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyImportErrorDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyImportReportDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidImportException;
+import com.gossip.arrienda_tu_finca.mappers.PropertyMapper;
+import com.gossip.arrienda_tu_finca.repositories.PropertyBatchRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+@Service
+public class PropertyImportService {
+    private PropertyBatchRepository propertyBatchRepository;
+    private UserRepository userRepository;
+    private PropertyMapper propertyMapper;
+    private MunicipalitySampler municipalitySampler;
+    private PropertyFacetIndex propertyFacetIndex;
+    private PriceTable priceTable;
+    private PropertyCache propertyCache;
+    private ObjectMapper objectMapper;
+    private Validator validator;
+    private TransactionTemplate transactionTemplate;
+    private int batchSize;
+    private static final Logger logger = LoggerFactory.getLogger(PropertyImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    @Autowired
+    public PropertyImportService(PropertyBatchRepository propertyBatchRepository, UserRepository userRepository, PropertyMapper propertyMapper,
+            MunicipalitySampler municipalitySampler, PropertyFacetIndex propertyFacetIndex, PriceTable priceTable, PropertyCache propertyCache, ObjectMapper objectMapper, Validator validator,
+            PlatformTransactionManager transactionManager, @Value("${arrienda.property.import-batch-size:500}") int batchSize) {
+        this.propertyBatchRepository = propertyBatchRepository;
+        this.userRepository = userRepository;
+        this.propertyMapper = propertyMapper;
+        this.municipalitySampler = municipalitySampler;
+        this.propertyFacetIndex = propertyFacetIndex;
+        this.priceTable = priceTable;
+        this.propertyCache = propertyCache;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Creates the properties read from a CSV (with a header row) or JSON Lines input.
+     * Rows are read one at a time, validated as a PropertyCreateDTO and inserted in JDBC batches,
+     * the owner of each email is looked up only once. Invalid rows are skipped and reported.
+     * Each batch is saved in its own transaction, a batch that fails leaves none of its rows
+     * @param input
+     * @param csv true for CSV, false for JSON Lines
+     * @throws IOException if the input can not be read
+     * @throws InvalidImportException if the CSV has no header
+     * @return PropertyImportReportDTO with the amount of imported rows and the errors by row number
+     */
+    public PropertyImportReportDTO importProperties(InputStream input, boolean csv) throws IOException {
+        ImportBatch batch = new ImportBatch();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> header = null;
+        if (csv) {
+            String headerLine = reader.readLine();
+            if (headerLine == null || headerLine.isBlank()) {
+                throw new InvalidImportException("El archivo CSV debe tener una fila de encabezado");
+            }
+            header = parseCsvLine(headerLine).stream().map(String::trim).toList();
+            batch.row++;
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            batch.row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                PropertyCreateDTO propertyCreateDTO = csv ? readCsvRow(header, line) : objectMapper.readValue(line, PropertyCreateDTO.class);
+                batch.add(toProperty(propertyCreateDTO, batch.ownerIds));
+            } catch (InvalidImportException e) {
+                batch.fail(batch.row, e.getMessage());
+            } catch (JsonProcessingException e) {
+                batch.fail(batch.row, "Fila con formato invalido: " + e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                batch.fail(batch.row, "Fila con formato invalido: " + e.getMessage());
+            }
+        }
+        batch.flush();
+
+        municipalitySampler.reload();
+        propertyFacetIndex.reload();
+        priceTable.reload();
+        batch.municipalities.forEach(propertyCache::evictMunicipality);
+        logger.info("Property import finished, {} rows imported and {} rows failed", batch.imported, batch.failed);
+        return new PropertyImportReportDTO(batch.imported, batch.failed, batch.errors);
+    }
+
+    private PropertyCreateDTO readCsvRow(List<String> header, String line) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new InvalidImportException("La fila tiene " + values.size() + " columnas y el encabezado " + header.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            if (!values.get(i).isBlank()) {
+                fields.put(header.get(i), values.get(i).trim());
+            }
+        }
+        return objectMapper.convertValue(fields, PropertyCreateDTO.class);
+    }
+
+    /**
+     * Validates a row and resolves its owner
+     * @param propertyCreateDTO
+     * @param ownerIds ids of the emails already looked up, null if the user does not exist
+     * @throws InvalidImportException if the row is not valid or the owner does not exist
+     * @return Property ready to be inserted
+     */
+    private Property toProperty(PropertyCreateDTO propertyCreateDTO, Map<String, Long> ownerIds) {
+        Set<ConstraintViolation<PropertyCreateDTO>> violations = validator.validate(propertyCreateDTO);
+        if (!violations.isEmpty()) {
+            throw new InvalidImportException(violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+        }
+        String email = propertyCreateDTO.getOwnerEmail();
+        if (!ownerIds.containsKey(email)) {
+            ownerIds.put(email, userRepository.findIdByEmail(email));
+        }
+        Long ownerId = ownerIds.get(email);
+        if (ownerId == null) {
+            throw new InvalidImportException("User with email " + email + " not found");
+        }
+        Property property = propertyMapper.toEntity(propertyCreateDTO);
+        property.setAvailable(true);
+        User owner = new User();
+        owner.setId(ownerId);
+        property.setOwner(owner);
+        return property;
+    }
+
+    /**
+     * Splits a CSV line by commas, values between double quotes can contain commas and "" as a quote
+     * @param line
+     * @return List<String> with the values of the line
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * State of an import: the rows waiting for the next batch and the counters of the report
+     */
+    private class ImportBatch {
+        private final List<Property> pending = new ArrayList<>();
+        private final List<Integer> pendingRows = new ArrayList<>();
+        private final Map<String, Long> ownerIds = new LinkedHashMap<>();
+        private final Set<String> municipalities = new HashSet<>();
+        private final List<PropertyImportErrorDTO> errors = new ArrayList<>();
+        private int row = 0;
+        private int imported = 0;
+        private int failed = 0;
+
+        private void add(Property property) {
+            pending.add(property);
+            pendingRows.add(row);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                // Sin transaccion las filas anteriores a la que fallo quedarian guardadas y reportadas como fallidas
+                transactionTemplate.executeWithoutResult(status -> propertyBatchRepository.insertAll(pending));
+                imported += pending.size();
+                pending.forEach(property -> municipalities.add(property.getMunicipality()));
+            } catch (DataAccessException e) {
+                logger.error("Batch of {} properties could not be inserted", pending.size(), e);
+                pendingRows.forEach(failedRow -> fail(failedRow, "No se pudo guardar la fila: " + e.getMostSpecificCause().getMessage()));
+            }
+            pending.clear();
+            pendingRows.clear();
+        }
+
+        private void fail(int failedRow, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new PropertyImportErrorDTO(failedRow, message));
+            }
+        }
+    }
+}
@@ -1,42 +1,91 @@
 package com.gossip.arrienda_tu_finca.services;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.gossip.arrienda_tu_finca.dto.CursorPageDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyCalendarDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyCreateDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyFacetsDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyImageDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertySearchDTO;
 import com.gossip.arrienda_tu_finca.dto.PropertyUpdateDTO;
 import com.gossip.arrienda_tu_finca.entities.Image;
 import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.PropertyImage;
 import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.ImageNotFoundException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidDateException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPageRequestException;
 import com.gossip.arrienda_tu_finca.exceptions.PropertyNotFoundException;
+import com.gossip.arrienda_tu_finca.mappers.PropertyMapper;
 import com.gossip.arrienda_tu_finca.repositories.ImageRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyImageRepository;
 import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertySpecifications;
 import com.gossip.arrienda_tu_finca.repositories.UserRepository;
 
 @Service
 public class PropertyService {
     private PropertyRepository propertyRepository;
-    private ModelMapper modelMapper;
+    private PropertyMapper propertyMapper;
     private UserRepository userRepository;
     private ImageRepository imageRepository;
+    private PropertyImageRepository propertyImageRepository;
+    private MunicipalitySampler municipalitySampler;
+    private PropertyFacetIndex propertyFacetIndex;
+    private PriceTable priceTable;
+    private AvailabilityIndex availabilityIndex;
+    private PropertyCache propertyCache;
+    private ObjectMapper objectMapper;
+    private int legacyListLimit;
+    private int exportBatchSize;
     private static final Logger logger = LoggerFactory.getLogger(PropertyService.class);
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CALENDARS = 50;
+    private static final int MAX_CALENDAR_DAYS = 366;
 
     @Autowired
-    public PropertyService(PropertyRepository propertyRepository, ModelMapper modelMapper, UserRepository userRepository, ImageRepository imageRepository) {
+    public PropertyService(PropertyRepository propertyRepository, PropertyMapper propertyMapper, UserRepository userRepository, ImageRepository imageRepository,
+            PropertyImageRepository propertyImageRepository, MunicipalitySampler municipalitySampler, PropertyFacetIndex propertyFacetIndex,
+            PriceTable priceTable, AvailabilityIndex availabilityIndex, PropertyCache propertyCache, ObjectMapper objectMapper,
+            @Value("${arrienda.property.legacy-list-limit:500}") int legacyListLimit,
+            @Value("${arrienda.property.export-batch-size:500}") int exportBatchSize) {
         this.propertyRepository = propertyRepository;
-        this.modelMapper = modelMapper; 
+        this.propertyMapper = propertyMapper;
         this.userRepository = userRepository;
         this.imageRepository = imageRepository;
+        this.propertyImageRepository = propertyImageRepository;
+        this.municipalitySampler = municipalitySampler;
+        this.propertyFacetIndex = propertyFacetIndex;
+        this.priceTable = priceTable;
+        this.availabilityIndex = availabilityIndex;
+        this.propertyCache = propertyCache;
+        this.objectMapper = objectMapper;
+        this.legacyListLimit = legacyListLimit;
+        this.exportBatchSize = exportBatchSize;
     }
 
     /**
@@ -46,7 +95,7 @@ public class PropertyService {
      * @return PropertyDTO with the information of the created property
      */
     public PropertyDTO createProperty(PropertyCreateDTO propertyCreateDTO) {
-        Property property = modelMapper.map(propertyCreateDTO, Property.class); 
+        Property property = propertyMapper.toEntity(propertyCreateDTO);
         property.setAvailable(true); 
 
         Long userId = userRepository.findIdByEmail(propertyCreateDTO.getOwnerEmail());
@@ -64,7 +113,13 @@ public class PropertyService {
         property.setOwner(user.get());
 
         Property savedProperty = propertyRepository.save(property);
-        return modelMapper.map(savedProperty, PropertyDTO.class); 
+        municipalitySampler.put(savedProperty.getId(), savedProperty.getMunicipality());
+        propertyFacetIndex.put(savedProperty);
+        priceTable.put(savedProperty);
+        propertyCache.evictMunicipality(savedProperty.getMunicipality());
+        PropertyDTO propertyDTO = propertyMapper.toDTO(savedProperty);
+        propertyDTO.setImages(List.of());
+        return propertyDTO;
     }
 
     /**
@@ -74,20 +129,308 @@ public class PropertyService {
      * @return PropertyDTO with the information of the property
      */
     public PropertyDTO getPropertyById(Long id) {
-        Property property = propertyRepository.findById(id)
-            .orElseThrow(() -> new PropertyNotFoundException("Property with ID " + id + " not found for fetching"));
-        return modelMapper.map(property, PropertyDTO.class);
+        PropertyDTO propertyDTO = propertyCache.getById(id, propertyId -> withImages(propertyRepository.findPropertyDTOById(propertyId)));
+        if (propertyDTO == null) {
+            throw new PropertyNotFoundException("Property with ID " + id + " not found for fetching");
+        }
+        return propertyDTO;
     }
 
     /**
-     * Obtains the information of all properties
-     * @return List<PropertyDTO> with the information of all properties
+     * Obtains the information of the properties, capped to the legacy list limit.
+     * Kept for compatibility, new clients should use getPropertiesPage
+     * @return List<PropertyDTO> with the information of the first properties ordered by id
      */
     public List<PropertyDTO> getAllProperties() {
-        List<Property> properties = propertyRepository.findAll();
-        return properties.stream()
-                .map(property -> modelMapper.map(property, PropertyDTO.class)) // Mapea cada entidad a DTO
-                .collect(Collectors.toList());
+        List<PropertyDTO> properties = propertyRepository.findPageOrderById(0L, PageRequest.ofSize(legacyListLimit));
+        if (properties.size() == legacyListLimit) {
+            logger.warn("Property list truncated to {} elements, use the paginated endpoint", legacyListLimit);
+        }
+        return withImages(properties);
+    }
+
+    /**
+     * Counts the available properties by municipality, department, residents, price, pet friendly, pool and grill
+     * @param filters selected value by facet name
+     * @return PropertyFacetsDTO with the counts of every facet
+     */
+    public PropertyFacetsDTO getFacets(Map<String, String> filters) {
+        return propertyFacetIndex.count(filters);
+    }
+
+    /**
+     * Writes every property to the output as it is read, one batch of rows at a time ordered by id.
+     * Each batch is a keyset query over DTO projections, so no entity is kept in the persistence
+     * context and the memory used does not depend on the size of the catalog
+     * @param out
+     * @param format ndjson (one property per line) or json (a single array)
+     * @throws IOException if the output can not be written
+     * @throws InvalidPageRequestException if the format is not valid
+     */
+    public void exportProperties(OutputStream out, String format) throws IOException {
+        boolean ndjson = isNdjsonExport(format);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (ndjson) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+            PageRequest batch = PageRequest.ofSize(exportBatchSize);
+            Long lastId = 0L;
+            List<PropertyDTO> properties;
+            do {
+                properties = withImages(propertyRepository.findPageOrderById(lastId, batch));
+                for (PropertyDTO property : properties) {
+                    generator.writeObject(property);
+                }
+                generator.flush();
+                if (!properties.isEmpty()) {
+                    lastId = properties.get(properties.size() - 1).getId();
+                }
+            } while (properties.size() == exportBatchSize);
+            if (ndjson) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    /**
+     * Checks the format of an export before the response starts
+     * @param format ndjson or json
+     * @throws InvalidPageRequestException if the format is not valid
+     * @return true for ndjson, false for json
+     */
+    public boolean isNdjsonExport(String format) {
+        return switch (format) {
+            case "ndjson" -> true;
+            case "json" -> false;
+            default -> throw new InvalidPageRequestException("El formato " + format + " no es soportado, use ndjson o json");
+        };
+    }
+
+    /**
+     * Obtains a page of properties using keyset pagination
+     * @param size amount of properties of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param sort id, rating (highest first) or price (lowest first, the properties without price at the end)
+     * @throws InvalidPageRequestException if the sort or the cursor are not valid
+     * @return CursorPageDTO<PropertyDTO> with the properties and the cursor of the next page
+     */
+    public CursorPageDTO<PropertyDTO> getPropertiesPage(Integer size, String cursor, String sort) {
+        int pageSize = resolvePageSize(size);
+        PageRequest limit = PageRequest.ofSize(pageSize);
+        List<PropertyDTO> properties;
+        switch (sort) {
+            case "id" -> {
+                Long lastId = cursor == null ? 0L : parseLong(PageCursor.decode(cursor, 2), sort);
+                properties = propertyRepository.findPageOrderById(lastId, limit);
+            }
+            case "rating" -> {
+                double lastRating = Double.MAX_VALUE;
+                Long lastId = 0L;
+                if (cursor != null) {
+                    String[] parts = PageCursor.decode(cursor, 3);
+                    lastRating = parseDouble(parts, sort);
+                    lastId = parseLong(parts, sort);
+                }
+                properties = propertyRepository.findPageOrderByRating(lastRating, lastId, limit);
+            }
+            case "price" -> {
+                double lastPrice = -1;
+                Long lastId = 0L;
+                boolean withoutPrice = false;
+                if (cursor != null) {
+                    // El cursor guarda el precio de la ultima propiedad, vacio si no tenia
+                    String[] parts = PageCursor.decode(cursor, 3);
+                    withoutPrice = parts[1].isEmpty();
+                    lastPrice = withoutPrice ? lastPrice : parseDouble(parts, sort);
+                    lastId = parseLong(parts, sort);
+                }
+                if (withoutPrice) {
+                    properties = propertyRepository.findPageWithoutPrice(lastId, limit);
+                } else {
+                    properties = new ArrayList<>(propertyRepository.findPageOrderByPrice(lastPrice, lastId, limit));
+                    if (properties.size() < pageSize) {
+                        properties.addAll(propertyRepository.findPageWithoutPrice(0L, PageRequest.ofSize(pageSize - properties.size())));
+                    }
+                }
+            }
+            default -> throw new InvalidPageRequestException("El orden " + sort + " no es soportado, use id, rating o price");
+        }
+        withImages(properties);
+
+        String nextCursor = null;
+        if (properties.size() == pageSize) {
+            PropertyDTO last = properties.get(properties.size() - 1);
+            nextCursor = switch (sort) {
+                case "rating" -> PageCursor.encode(sort, last.getRating(), last.getId());
+                case "price" -> PageCursor.encode(sort, last.getPricePerNight() == null ? "" : last.getPricePerNight(), last.getId());
+                default -> PageCursor.encode(sort, last.getId());
+            };
+        }
+        return new CursorPageDTO<>(properties, properties.size(), nextCursor);
+    }
+
+    /**
+     * Searches the properties that match all the given filters, the filters that are null are ignored
+     * @param search
+     * @param size amount of properties of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @throws InvalidPageRequestException if the cursor is not valid
+     * @return CursorPageDTO<PropertyDTO> with the properties ordered by id and the cursor of the next page
+     */
+    public CursorPageDTO<PropertyDTO> searchProperties(PropertySearchDTO search, Integer size, String cursor) {
+        int pageSize = resolvePageSize(size);
+        Long lastId = cursor == null ? 0L : parseLong(PageCursor.decode(cursor, 2), "search");
+        List<PropertyDTO> properties = withImages(propertyRepository.searchPropertyDTOs(PropertySpecifications.matching(search, lastId), pageSize));
+
+        String nextCursor = null;
+        if (properties.size() == pageSize) {
+            nextCursor = PageCursor.encode("search", properties.get(properties.size() - 1).getId());
+        }
+        return new CursorPageDTO<>(properties, properties.size(), nextCursor);
+    }
+
+    /**
+     * Searches the available properties that match the filters and are free between the given dates.
+     * The taken properties come from the in memory AvailabilityIndex and are skipped while the search is read
+     * @param search
+     * @param arrivalDate
+     * @param departureDate
+     * @param size amount of properties of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @throws InvalidDateException if the departure is not after the arrival
+     * @throws InvalidPageRequestException if the cursor is not valid
+     * @return CursorPageDTO<PropertyDTO> with the free properties ordered by id and the cursor of the next page
+     */
+    public CursorPageDTO<PropertyDTO> searchAvailableProperties(PropertySearchDTO search, LocalDate arrivalDate, LocalDate departureDate,
+            Integer size, String cursor) {
+        if (!departureDate.isAfter(arrivalDate)) {
+            throw new InvalidDateException("La fecha final debe ser posterior a la fecha inicial");
+        }
+        int pageSize = resolvePageSize(size);
+        Long lastId = cursor == null ? 0L : parseLong(PageCursor.decode(cursor, 2), "available");
+        Set<Long> taken = availabilityIndex.findTakenProperties(arrivalDate, departureDate);
+        search.setIsAvailable(true);
+
+        List<PropertyDTO> properties = new ArrayList<>();
+        List<PropertyDTO> batch;
+        do {
+            batch = propertyRepository.searchPropertyDTOs(PropertySpecifications.matching(search, lastId), pageSize);
+            for (PropertyDTO property : batch) {
+                lastId = property.getId();
+                if (!taken.contains(property.getId())) {
+                    properties.add(property);
+                    if (properties.size() == pageSize) {
+                        break;
+                    }
+                }
+            }
+        } while (properties.size() < pageSize && batch.size() == pageSize);
+
+        String nextCursor = null;
+        if (properties.size() == pageSize) {
+            nextCursor = PageCursor.encode("available", properties.get(properties.size() - 1).getId());
+        }
+        return new CursorPageDTO<>(withImages(properties), properties.size(), nextCursor);
+    }
+
+    /**
+     * Obtains the taken days of one or many properties in a single call, read from the AvailabilityIndex.
+     * The index only keeps the stays that have not ended, so the window cannot start before today
+     * @param propertyIds between 1 and 50 properties
+     * @param from first day of the window, today or later
+     * @param to last day of the window, at most 366 days after from
+     * @throws InvalidDateException if the window starts before today or is not valid
+     * @throws InvalidPageRequestException if there are no properties or too many of them
+     * @return List<PropertyCalendarDTO> with one calendar for each property, in the order of the ids
+     */
+    public List<PropertyCalendarDTO> getCalendars(List<Long> propertyIds, LocalDate from, LocalDate to) {
+        if (from.isBefore(LocalDate.now())) {
+            throw new InvalidDateException("El calendario empieza hoy o despues, las noches pasadas no se muestran");
+        }
+        if (to.isBefore(from) || to.isAfter(from.plusDays(MAX_CALENDAR_DAYS - 1))) {
+            throw new InvalidDateException("La ventana del calendario debe tener entre 1 y " + MAX_CALENDAR_DAYS + " dias");
+        }
+        if (propertyIds.isEmpty() || propertyIds.size() > MAX_CALENDARS) {
+            throw new InvalidPageRequestException("Se pueden pedir entre 1 y " + MAX_CALENDARS + " calendarios");
+        }
+        List<PropertyCalendarDTO> calendars = new ArrayList<>();
+        availabilityIndex.findTakenDays(propertyIds, from, to)
+            .forEach((propertyId, days) -> calendars.add(new PropertyCalendarDTO(propertyId, from, to, days)));
+        return calendars;
+    }
+
+    /**
+     * Adds the ordered gallery to the given properties with a single query for all of them.
+     * When no image was chosen as cover the first one of the gallery is the cover
+     * @param properties
+     * @return the same list, with the images of every property
+     */
+    private List<PropertyDTO> withImages(List<PropertyDTO> properties) {
+        if (properties.isEmpty()) {
+            return properties;
+        }
+        List<Long> ids = properties.stream().map(PropertyDTO::getId).toList();
+        Map<Long, List<PropertyImageDTO>> imagesByProperty = propertyImageRepository.findDTOsByPropertyIdIn(ids).stream()
+            .collect(Collectors.groupingBy(PropertyImageDTO::getPropertyId, Collectors.toCollection(ArrayList::new)));
+        for (PropertyDTO property : properties) {
+            List<PropertyImageDTO> images = imagesByProperty.getOrDefault(property.getId(), new ArrayList<>());
+            if (!images.isEmpty() && images.stream().noneMatch(PropertyImageDTO::isCover)) {
+                images.get(0).setCover(true);
+            }
+            property.setImages(images);
+        }
+        return properties;
+    }
+
+    private PropertyDTO withImages(PropertyDTO property) {
+        if (property == null) {
+            return null;
+        }
+        return withImages(List.of(property)).get(0);
+    }
+
+    private int resolvePageSize(Integer size) {
+        return size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Reads the id stored as last value of a property cursor
+     * @param parts
+     * @param sort
+     * @return Long with the id of the last property of the previous page
+     */
+    private Long parseLong(String[] parts, String sort) {
+        checkCursorSort(parts, sort);
+        try {
+            return Long.parseLong(parts[parts.length - 1]);
+        } catch (NumberFormatException e) {
+            throw new InvalidPageRequestException("El cursor no contiene un id valido");
+        }
+    }
+
+    /**
+     * Reads the rating or price stored in a property cursor
+     * @param parts
+     * @param sort
+     * @return double with the sort value of the last property of the previous page
+     */
+    private double parseDouble(String[] parts, String sort) {
+        checkCursorSort(parts, sort);
+        try {
+            return Double.parseDouble(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new InvalidPageRequestException("El cursor no contiene un valor valido para el orden " + sort);
+        }
+    }
+
+    private void checkCursorSort(String[] parts, String sort) {
+        if (!sort.equals(parts[0])) {
+            throw new InvalidPageRequestException("El cursor fue generado para el orden " + parts[0] + " y no para " + sort);
+        }
     }
 
     /**
@@ -98,11 +441,18 @@ public class PropertyService {
      * @return
     */
     public PropertyDTO updateProperty(Long id, PropertyUpdateDTO propertyUpdateDTO) {
-        Property property = propertyRepository.findById(id)
+        Property property = propertyRepository.findWithOwnerById(id)
             .orElseThrow(() -> new PropertyNotFoundException("To update property with ID " + id + " not found"));
-        modelMapper.map(propertyUpdateDTO, property); 
-        Property updatedProperty = propertyRepository.save(property);
-        return modelMapper.map(updatedProperty, PropertyDTO.class);
+        String previousMunicipality = property.getMunicipality();
+        propertyMapper.updateEntity(propertyUpdateDTO, property);
+        propertyRepository.save(property);
+        municipalitySampler.update(id, property.getMunicipality());
+        propertyFacetIndex.put(property);
+        priceTable.put(property);
+        propertyCache.evict(id, previousMunicipality);
+        propertyCache.evictMunicipality(property.getMunicipality());
+        // El dueño ya viene cargado en la entidad leida, la copia que devuelve save lo tendria como proxy sin sesion
+        return withImages(propertyMapper.toDTO(property));
     }
 
     /**
@@ -115,10 +465,14 @@ public class PropertyService {
             .orElseThrow(() -> new PropertyNotFoundException("Property to deactivate with ID " + id + " not found"));
         property.setAvailable(false);
         propertyRepository.save(property);
+        municipalitySampler.remove(id);
+        propertyFacetIndex.remove(id);
+        propertyCache.evict(id, property.getMunicipality());
     }
     
     /**
-     * Upload a photo to a property
+     * Upload a photo to a property, it is added at the end of the gallery.
+     * Each photo is its own property_image row, so concurrent uploads do not overwrite each other
      * @param id
      * @param photo
      * @throws IOException
@@ -132,54 +486,67 @@ public class PropertyService {
         image.setImageData(photo.getBytes());
         int imageId = imageRepository.save(image).getId();
         logger.info("Image with ID {} uploaded", imageId);
-        if (property.getImageIds() == null) {
-            property.setImageIds(String.valueOf(imageId));
-        } else {
-            property.setImageIds(property.getImageIds() + "," + imageId);
+        propertyImageRepository.save(new PropertyImage(null, property, imageId, propertyImageRepository.findNextDisplayOrder(id), false));
+        propertyCache.evict(id, property.getMunicipality());
+    }
+
+    /**
+     * Chooses the cover of a property among the images of its gallery
+     * @param id
+     * @param imageId
+     * @throws PropertyNotFoundException
+     * @throws ImageNotFoundException if the image is not part of the gallery of the property
+     */
+    @Transactional
+    public void setCoverImage(Long id, int imageId) {
+        Property property = propertyRepository.findById(id)
+            .orElseThrow(() -> new PropertyNotFoundException("Property with ID " + id + " not found to set the cover"));
+        if (!propertyImageRepository.existsByPropertyIdAndImageId(id, imageId)) {
+            throw new ImageNotFoundException("Image with id " + imageId + " not found in property " + id);
         }
-        propertyRepository.save(property);
+        propertyImageRepository.updateCover(id, imageId);
+        propertyCache.evict(id, property.getMunicipality());
     }
 
     // Arrendatario
     // Obtener todas las propiedades de un municipio aleatorio
     public List<PropertyDTO> findPropertiesByRandomMunicipality() {
-        String randomMunicipality = propertyRepository.findRandomMunicipality();
-        List<Property> properties = propertyRepository.findPropertiesByMunicipality(randomMunicipality);
-        return properties.stream()
-                .map(property -> modelMapper.map(property, PropertyDTO.class)) 
-                .collect(Collectors.toList());
+        String randomMunicipality = municipalitySampler.sample();
+        if (randomMunicipality == null) {
+            return List.of();
+        }
+        return getCachedPropertiesByMunicipality(randomMunicipality);
     }
 
     // Obtener todas las propiedades con un nombre especifico
     public List<PropertyDTO> findPropertiesByName(String name) {
-        List<Property> properties = propertyRepository.findPropertiesByName(name);
+        List<PropertyDTO> properties = propertyRepository.findPropertiesByName(name);
         if (properties.isEmpty()) {
             throw new PropertyNotFoundException("Propiedades no encontradas con el nombre " + name);
         }
-        return properties.stream()
-                .map(property -> modelMapper.map(property, PropertyDTO.class)) 
-                .collect(Collectors.toList());
+        return withImages(properties);
     }
 
     // Obtener todas las propiedades de un municipio especifico
     public List<PropertyDTO> findPropertiesByMunicipality(String municipality) {
-        List<Property> properties = propertyRepository.findPropertiesByMunicipality(municipality);
+        List<PropertyDTO> properties = getCachedPropertiesByMunicipality(municipality);
         if (properties.isEmpty()) {
             throw new PropertyNotFoundException("Propiedades del municipio " + municipality + " no fueron encontradas");
         }
-        return properties.stream()
-                .map(property -> modelMapper.map(property, PropertyDTO.class)) 
-                .collect(Collectors.toList());
+        return properties;
+    }
+
+    // Las propiedades de un municipio se guardan en cache hasta que alguna de ellas cambie
+    private List<PropertyDTO> getCachedPropertiesByMunicipality(String municipality) {
+        return propertyCache.getByMunicipality(municipality, key -> withImages(propertyRepository.findPropertiesByMunicipality(key)));
     }
 
     // Obtener todas las propiedades con una cantidad de residentes especifica
     public List<PropertyDTO> findPropertiesByAmountOfResidents(Integer amountOfResidents) {
-        List<Property> properties = propertyRepository.findPropertiesByAmountOfResidents(amountOfResidents);
+        List<PropertyDTO> properties = propertyRepository.findPropertiesByAmountOfResidents(amountOfResidents);
         if (properties.isEmpty()) {
             throw new PropertyNotFoundException("Propiedades con cantidad de residentes " + amountOfResidents + " no fueron encontradas");
         }
-        return properties.stream()
-                .map(property -> modelMapper.map(property, PropertyDTO.class)) 
-                .collect(Collectors.toList());
+        return withImages(properties);
     }
 }
@@ -0,0 +1,147 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RatingAggregate;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+/**
+ * Rebuilds the rating aggregates of the properties and users from the comments and fixes the rows that differ.
+ * The reviews keep the aggregates up to date. When the application starts it runs if a property or user still has
+ * an average without aggregates, as the rows written before the upgrade, or always with
+ * arrienda.ratings.reconcile-on-startup=true to verify them.
+ * The ids are read in chunks ordered by id and each chunk is compared with the counts of its own ids in a short
+ * transaction, so a run never holds more than one chunk of rows in memory
+ */
+@Component
+public class RatingReconciliation {
+    private final PropertyRepository propertyRepository;
+    private final UserRepository userRepository;
+    private final RentalRequestRepository rentalRequestRepository;
+    private final PropertyCache propertyCache;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean onStartup;
+    private final int chunkSize;
+    private static final Logger logger = LoggerFactory.getLogger(RatingReconciliation.class);
+
+    @Autowired
+    public RatingReconciliation(PropertyRepository propertyRepository, UserRepository userRepository,
+            RentalRequestRepository rentalRequestRepository, PropertyCache propertyCache,
+            PlatformTransactionManager transactionManager,
+            @Value("${arrienda.ratings.reconcile-on-startup:false}") boolean onStartup,
+            @Value("${arrienda.ratings.reconcile-chunk-size:500}") int chunkSize) {
+        this.propertyRepository = propertyRepository;
+        this.userRepository = userRepository;
+        this.rentalRequestRepository = rentalRequestRepository;
+        this.propertyCache = propertyCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.onStartup = onStartup;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (onStartup || propertyRepository.existsRatingWithoutAggregate() || userRepository.existsRatingWithoutAggregate()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Compares the stored aggregates and averages with the ones computed from the comments and rewrites the wrong ones
+     * @return int with the amount of corrected properties and users
+     */
+    public int reconcile() {
+        int corrected = inChunks(lastId -> propertyRepository.findIdsAfter(lastId, PageRequest.ofSize(chunkSize)),
+                this::reconcileProperties);
+        corrected += inChunks(lastId -> userRepository.findIdsAfter(lastId, PageRequest.ofSize(chunkSize)),
+                this::reconcileUsers);
+        logger.info("Rating reconciliation finished, {} properties and users corrected", corrected);
+        return corrected;
+    }
+
+    private int reconcileProperties(List<Long> propertyIds) {
+        Map<Long, RatingAggregate> ratings = aggregate(rentalRequestRepository.countPropertyRatings(propertyIds));
+        int corrected = 0;
+        for (Property property : propertyRepository.findAllById(propertyIds)) {
+            if (fix("Property", property.getId(), ratings, property.getRatings(), property.getRating(),
+                    property::setRatings, property::setRating)) {
+                propertyCache.evict(property.getId(), property.getMunicipality());
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    private int reconcileUsers(List<Long> userIds) {
+        Map<Long, RatingAggregate> hostRatings = aggregate(rentalRequestRepository.countHostRatings(userIds));
+        Map<Long, RatingAggregate> renterRatings = aggregate(rentalRequestRepository.countRenterRatings(userIds));
+        int corrected = 0;
+        for (User user : userRepository.findAllById(userIds)) {
+            boolean host = fix("Host", user.getId(), hostRatings, user.getHostRatings(), user.getRatingHost(),
+                    user::setHostRatings, user::setRatingHost);
+            boolean renter = fix("Renter", user.getId(), renterRatings, user.getRenterRatings(), user.getRatingRenter(),
+                    user::setRenterRatings, user::setRatingRenter);
+            if (host || renter) {
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * Reads the ids by chunks and reconciles each chunk in its own transaction
+     * @param nextChunk reads the ids after the given id
+     * @param reconcile fixes the rows of a chunk of ids and returns the amount of corrected rows
+     * @return int with the amount of corrected rows
+     */
+    private int inChunks(Function<Long, List<Long>> nextChunk, Function<List<Long>, Integer> reconcile) {
+        int corrected = 0;
+        List<Long> ids = nextChunk.apply(0L);
+        while (!ids.isEmpty()) {
+            List<Long> chunk = ids;
+            corrected += transactionTemplate.execute(status -> reconcile.apply(chunk));
+            ids = chunk.size() < chunkSize ? List.of() : nextChunk.apply(chunk.get(chunk.size() - 1));
+        }
+        return corrected;
+    }
+
+    private static Map<Long, RatingAggregate> aggregate(List<Object[]> counts) {
+        Map<Long, RatingAggregate> aggregates = new HashMap<>();
+        for (Object[] row : counts) {
+            aggregates.computeIfAbsent((Long) row[0], id -> new RatingAggregate()).add((Integer) row[1], ((Long) row[2]).intValue());
+        }
+        return aggregates;
+    }
+
+    private static boolean fix(String kind, Long id, Map<Long, RatingAggregate> expectedRatings, RatingAggregate stored,
+            double storedAverage, Consumer<RatingAggregate> setRatings, DoubleConsumer setAverage) {
+        RatingAggregate expected = expectedRatings.getOrDefault(id, new RatingAggregate());
+        if (expected.equals(stored) && Double.compare(expected.average(), storedAverage) == 0) {
+            return false;
+        }
+        logger.warn("{} {} had ratings {} with average {}, corrected to {}", kind, id, stored, storedAverage, expected);
+        setRatings.accept(expected);
+        setAverage.accept(expected.average());
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.events.RentalRequestCompletedEvent;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Completes the paid rental requests whose departure date already passed, so the hosts do not have to do it one by one.
+ * Each chunk is locked, completed with one UPDATE and announced with one RentalRequestCompletedEvent per request
+ * in its own transaction. The locks keep a host completing the same request at the same time from publishing a second event
+ */
+@Service
+public class RentalRequestCompletionService {
+    private RentalRequestRepository rentalRequestRepository;
+    private PropertyRepository propertyRepository;
+    private AvailabilityIndex availabilityIndex;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionTemplate transactionTemplate;
+    private MeterRegistry meterRegistry;
+    private int chunkSize;
+    private static final Logger logger = LoggerFactory.getLogger(RentalRequestCompletionService.class);
+
+    @Autowired
+    public RentalRequestCompletionService(RentalRequestRepository rentalRequestRepository, PropertyRepository propertyRepository, AvailabilityIndex availabilityIndex,
+            ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${arrienda.completion.chunk-size:500}") int chunkSize) {
+        this.rentalRequestRepository = rentalRequestRepository;
+        this.propertyRepository = propertyRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Completes the finished stays, it runs every arrienda.completion.fixed-delay.
+     * Publishes the rental.requests.completed counter and the rental.requests.completion.duration timer
+     * @return int with the amount of completed requests
+     */
+    @Scheduled(initialDelayString = "${arrienda.completion.initial-delay:PT2M}", fixedDelayString = "${arrienda.completion.fixed-delay:PT1H}")
+    public int completeFinishedStays() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int completed = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> completeChunk(today));
+            completed += chunk;
+        } while (chunk == chunkSize);
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.counter("rental.requests.completed").increment(completed);
+        meterRegistry.timer("rental.requests.completion.duration").record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Rental request completion finished in {} ms, {} requests completed", TimeUnit.NANOSECONDS.toMillis(elapsed), completed);
+        return completed;
+    }
+
+    private int completeChunk(LocalDate today) {
+        List<Object[]> stays = rentalRequestRepository.lockCompletableStays(today, chunkSize);
+        if (stays.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = stays.stream().map(row -> ((Number) row[0]).longValue()).toList();
+        // Las filas estan bloqueadas y cumplen la condicion, el UPDATE las completa todas
+        rentalRequestRepository.completeAll(ids);
+        // Una sola consulta por bloque para los dueños, sin bloquear las filas de las propiedades
+        Set<Long> propertyIds = stays.stream().map(row -> toLong(row[1])).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, String> hostEmails = new HashMap<>();
+        if (!propertyIds.isEmpty()) {
+            for (Object[] row : propertyRepository.findOwnerEmailsByIds(propertyIds)) {
+                hostEmails.put((Long) row[0], (String) row[1]);
+            }
+        }
+        for (Object[] row : stays) {
+            Long requestId = ((Number) row[0]).longValue();
+            // Una solicitud sin propiedad tambien se completa, su evento no tiene propiedad ni dueño
+            Long propertyId = toLong(row[1]);
+            availabilityIndex.remove(requestId);
+            eventPublisher.publishEvent(new RentalRequestCompletedEvent(requestId, propertyId, hostEmails.get(propertyId),
+                    (String) row[2], toLocalDate(row[3])));
+        }
+        return stays.size();
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+}
@@ -0,0 +1,53 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventType;
+import com.gossip.arrienda_tu_finca.events.RentalRequestReviewedEvent;
+import com.gossip.arrienda_tu_finca.events.RentalRequestStatusEvent;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestEventEntryRepository;
+
+/**
+ * Appends an entry to the rental request event log for every state change and review.
+ * The listeners are synchronous, so the entry is inserted in the transaction that publishes the event
+ * and it is only kept if the change commits
+ */
+@Component
+public class RentalRequestEventLog {
+    private final RentalRequestEventEntryRepository eventEntryRepository;
+
+    @Autowired
+    public RentalRequestEventLog(RentalRequestEventEntryRepository eventEntryRepository) {
+        this.eventEntryRepository = eventEntryRepository;
+    }
+
+    @EventListener
+    public void onStatusChanged(RentalRequestStatusEvent event) {
+        append(event.getRequestId(), event.getPropertyId(), RentalRequestEventType.of(event.getStatus()),
+                event.getHostEmail(), event.getRenterEmail());
+    }
+
+    @EventListener
+    public void onReviewed(RentalRequestReviewedEvent event) {
+        append(event.getRequestId(), event.getPropertyId(), event.getType(), event.getHostEmail(), event.getRenterEmail());
+    }
+
+    /**
+     * Lists the history of a rental request
+     * @param requestId
+     * @return List<RentalRequestEventEntry> with the entries of the request in the order they happened
+     */
+    public List<RentalRequestEventEntry> findByRequest(Long requestId) {
+        return eventEntryRepository.findByRequestIdOrderByIdAsc(requestId);
+    }
+
+    private void append(Long requestId, Long propertyId, RentalRequestEventType type, String hostEmail, String renterEmail) {
+        eventEntryRepository.save(new RentalRequestEventEntry(null, requestId, propertyId, type, hostEmail, renterEmail, LocalDateTime.now()));
+    }
+}
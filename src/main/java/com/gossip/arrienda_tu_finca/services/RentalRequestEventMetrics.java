@@ -0,0 +1,37 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+import com.gossip.arrienda_tu_finca.events.RentalRequestEventConsumer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Consumer of the rental request event log that counts the entries by type in the rental.requests.events counter,
+ * used by the analytics dashboards. A batch delivered again is counted again
+ */
+@Component
+public class RentalRequestEventMetrics implements RentalRequestEventConsumer {
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public RentalRequestEventMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return "metrics";
+    }
+
+    @Override
+    public void consume(List<RentalRequestEventEntry> entries) {
+        for (RentalRequestEventEntry entry : entries) {
+            meterRegistry.counter("rental.requests.events", "type", entry.getType().name()).increment();
+        }
+    }
+}
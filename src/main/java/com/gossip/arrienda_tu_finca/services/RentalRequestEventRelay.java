@@ -0,0 +1,114 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.entities.EventRelayOffset;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+import com.gossip.arrienda_tu_finca.events.RentalRequestEventConsumer;
+import com.gossip.arrienda_tu_finca.repositories.EventRelayOffsetRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestEventEntryRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Delivers the rental request event log to every RentalRequestEventConsumer in batches, outside of the request threads.
+ * Each batch is read after the saved position of the consumer, handed to it and the new position is saved
+ * in the same transaction, so a failed batch is delivered again on the next run. A new consumer starts from the first entry
+ */
+@Service
+public class RentalRequestEventRelay {
+    private RentalRequestEventEntryRepository eventEntryRepository;
+    private EventRelayOffsetRepository offsetRepository;
+    private List<RentalRequestEventConsumer> consumers;
+    private TransactionTemplate transactionTemplate;
+    private MeterRegistry meterRegistry;
+    private int batchSize;
+    private Duration gapTimeout;
+    private static final Logger logger = LoggerFactory.getLogger(RentalRequestEventRelay.class);
+
+    @Autowired
+    public RentalRequestEventRelay(RentalRequestEventEntryRepository eventEntryRepository, EventRelayOffsetRepository offsetRepository,
+            List<RentalRequestEventConsumer> consumers, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${arrienda.outbox.batch-size:200}") int batchSize,
+            @Value("${arrienda.outbox.gap-timeout:PT1M}") Duration gapTimeout) {
+        this.eventEntryRepository = eventEntryRepository;
+        this.offsetRepository = offsetRepository;
+        this.consumers = consumers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.gapTimeout = gapTimeout;
+    }
+
+    /**
+     * Delivers the pending entries to every consumer, it runs every arrienda.outbox.fixed-delay.
+     * A consumer that fails keeps its position and does not stop the others.
+     * Publishes the rental.requests.events.relayed and rental.requests.events.failures counters by consumer
+     * @return int with the amount of delivered entries, adding all the consumers
+     */
+    @Scheduled(initialDelayString = "${arrienda.outbox.initial-delay:PT10S}", fixedDelayString = "${arrienda.outbox.fixed-delay:PT1S}")
+    public int relay() {
+        int delivered = 0;
+        for (RentalRequestEventConsumer consumer : consumers) {
+            try {
+                int batch;
+                do {
+                    batch = transactionTemplate.execute(status -> relayBatch(consumer));
+                    delivered += batch;
+                } while (batch == batchSize);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("rental.requests.events.failures", "consumer", consumer.getName()).increment();
+                logger.error("Rental request event consumer {} failed, its batch will be delivered again", consumer.getName(), e);
+            }
+        }
+        return delivered;
+    }
+
+    private int relayBatch(RentalRequestEventConsumer consumer) {
+        EventRelayOffset offset = offsetRepository.lockByConsumer(consumer.getName())
+                .orElseGet(() -> offsetRepository.save(new EventRelayOffset(consumer.getName(), 0L)));
+        List<RentalRequestEventEntry> entries = readyEntries(offset.getLastEventId(),
+                eventEntryRepository.findAfter(offset.getLastEventId(), PageRequest.ofSize(batchSize)));
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        consumer.consume(entries);
+        offset.setLastEventId(entries.get(entries.size() - 1).getId());
+        offsetRepository.save(offset);
+        meterRegistry.counter("rental.requests.events.relayed", "consumer", consumer.getName()).increment(entries.size());
+        return entries.size();
+    }
+
+    /**
+     * Cuts the batch at the first missing id younger than arrienda.outbox.gap-timeout. The ids are taken when
+     * the entry is inserted, so a transaction that is still running can commit a smaller id than one already visible.
+     * Older missing ids come from transactions that were rolled back and are skipped
+     * @param lastId position of the consumer
+     * @param entries entries after the position, sorted by id
+     * @return List<RentalRequestEventEntry> with the entries that can be delivered without leaving one behind
+     */
+    private List<RentalRequestEventEntry> readyEntries(long lastId, List<RentalRequestEventEntry> entries) {
+        LocalDateTime gapLimit = LocalDateTime.now().minus(gapTimeout);
+        long expected = lastId + 1;
+        for (int i = 0; i < entries.size(); i++) {
+            RentalRequestEventEntry entry = entries.get(i);
+            if (entry.getId() != expected && entry.getOccurredAt().isAfter(gapLimit)) {
+                return entries.subList(0, i);
+            }
+            expected = entry.getId() + 1;
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,341 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestStatusChangeDTO;
+import com.gossip.arrienda_tu_finca.events.RentalRequestStatusEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes the state changes of the rental requests to the host and the renter through Server-Sent Events.
+ * Every committed change gets the next id and is kept in a bounded history, so a client that reconnects with
+ * Last-Event-ID receives what it missed, or a reset event when it is no longer in the history.
+ * The ids are <boot epoch>-<sequence>, an id of another boot of the application also receives the reset event.
+ * Each connection has a bounded buffer drained by a small pool of threads, a connection whose buffer is full
+ * is closed instead of holding the changes of the others, and the client resumes from its last id.
+ * The monitor only guards the history and the connection lists, the events are handed to the connections outside it
+ */
+@Component
+public class RentalRequestEventStream {
+    static final String STATUS_EVENT = "rental-request";
+    static final String RESET_EVENT = "reset";
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService sender;
+    private final ArrayDeque<StreamEvent> history = new ArrayDeque<>();
+    private final Map<String, List<Connection>> connectionsByUser = new HashMap<>();
+    // Ordena las publicaciones entre si, para que cada conexion reciba los eventos en el orden de sus ids
+    private final Object publishLock = new Object();
+    private final int historySize;
+    private final int bufferSize;
+    private final int maxConnectionsPerUser;
+    private final long timeoutMillis;
+    private final long epoch = System.currentTimeMillis();
+    private long sequence = 0;
+    private int connections = 0;
+    private static final Logger logger = LoggerFactory.getLogger(RentalRequestEventStream.class);
+
+    @Autowired
+    public RentalRequestEventStream(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${arrienda.events.history-size:1000}") int historySize,
+            @Value("${arrienda.events.buffer-size:64}") int bufferSize,
+            @Value("${arrienda.events.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${arrienda.events.timeout:PT30M}") Duration timeout,
+            @Value("${arrienda.events.sender-threads:2}") int senderThreads) {
+        this.objectMapper = objectMapper;
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.timeoutMillis = timeout.toMillis();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "rental-request-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("rental.requests.stream.connections", this, RentalRequestEventStream::countConnections);
+    }
+
+    /**
+     * Opens a stream with the changes of the rental requests where the user is the host or the renter
+     * @param email email of the authenticated user
+     * @param lastEventId value of the Last-Event-ID header, null on the first connection
+     * @return SseEmitter that the controller returns to keep the response open
+     */
+    public SseEmitter subscribe(String email, String lastEventId) {
+        return subscribe(email, lastEventId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String email, String lastEventId, SseEmitter emitter) {
+        Connection connection = new Connection(email, emitter);
+        emitter.onCompletion(() -> close(connection));
+        emitter.onTimeout(() -> close(connection));
+        emitter.onError(error -> close(connection));
+
+        Connection oldest = null;
+        synchronized (publishLock) {
+            List<SseEventBuilder> missed;
+            synchronized (this) {
+                List<Connection> userConnections = connectionsByUser.computeIfAbsent(email, key -> new ArrayList<>());
+                if (userConnections.size() >= maxConnectionsPerUser) {
+                    // La conexion mas antigua suele ser una pestaña olvidada
+                    oldest = userConnections.get(0);
+                    remove(oldest);
+                    userConnections = connectionsByUser.computeIfAbsent(email, key -> new ArrayList<>());
+                }
+                userConnections.add(connection);
+                connections++;
+                missed = lastEventId == null ? List.of() : missedEvents(email, lastEventId);
+            }
+            // Se entregan antes de soltar publishLock, asi ningun evento nuevo se adelanta a los perdidos
+            missed.forEach(connection::offer);
+        }
+        if (oldest != null) {
+            close(oldest);
+        }
+        return emitter;
+    }
+
+    /**
+     * Sends a committed change to the open streams of its host and its renter
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(RentalRequestStatusEvent event) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(new RentalRequestStatusChangeDTO(event.getRequestId(), event.getPropertyId(),
+                    event.getStatus().name()));
+        } catch (JsonProcessingException e) {
+            logger.error("Rental request event {} could not be serialized", event, e);
+            return;
+        }
+        synchronized (publishLock) {
+            StreamEvent streamEvent;
+            List<Connection> recipients = new ArrayList<>();
+            synchronized (this) {
+                streamEvent = new StreamEvent(++sequence, event.getHostEmail(), event.getRenterEmail(), data);
+                history.addLast(streamEvent);
+                if (history.size() > historySize) {
+                    history.removeFirst();
+                }
+                addConnectionsOf(streamEvent.hostEmail, recipients);
+                if (streamEvent.renterEmail != null && !streamEvent.renterEmail.equals(streamEvent.hostEmail)) {
+                    addConnectionsOf(streamEvent.renterEmail, recipients);
+                }
+            }
+            for (Connection connection : recipients) {
+                connection.offer(streamEvent.toSse());
+            }
+        }
+    }
+
+    /**
+     * Writes a comment to every open stream, so the proxies keep the connection open and the closed ones are detected.
+     * It runs every arrienda.events.heartbeat
+     */
+    @Scheduled(fixedDelayString = "${arrienda.events.heartbeat:PT20S}")
+    public void sendHeartbeats() {
+        List<Connection> open = new ArrayList<>();
+        synchronized (this) {
+            connectionsByUser.values().forEach(open::addAll);
+        }
+        for (Connection connection : open) {
+            connection.offer(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    /**
+     * @return int with the amount of open streams
+     */
+    public synchronized int countConnections() {
+        return connections;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * @param sequence
+     * @return String with the id of the event of this boot with the given sequence
+     */
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private List<SseEventBuilder> missedEvents(String email, String lastEventId) {
+        long lastId = parseSequence(lastEventId.trim());
+        long oldestId = history.isEmpty() ? sequence + 1 : history.peekFirst().id;
+        // Un id de otro arranque no se puede comparar con la secuencia, uno menor que la historia ya fue descartado
+        if (lastId < oldestId - 1 || lastId > sequence) {
+            return List.of(SseEmitter.event().id(eventId(sequence)).name(RESET_EVENT).data(""));
+        }
+        List<SseEventBuilder> missed = new ArrayList<>();
+        for (StreamEvent streamEvent : history) {
+            if (streamEvent.id > lastId && streamEvent.isFor(email)) {
+                missed.add(streamEvent.toSse());
+            }
+        }
+        return missed;
+    }
+
+    private long parseSequence(String lastEventId) {
+        String prefix = epoch + "-";
+        if (!lastEventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void addConnectionsOf(String email, List<Connection> recipients) {
+        if (email == null) {
+            return;
+        }
+        List<Connection> userConnections = connectionsByUser.get(email);
+        if (userConnections != null) {
+            recipients.addAll(userConnections);
+        }
+    }
+
+    private void close(Connection connection) {
+        if (detach(connection)) {
+            // Fuera del monitor, complete espera a que termine un send en curso
+            connection.emitter.complete();
+        }
+    }
+
+    /**
+     * Takes the connection out of the lists so it receives no more events, without completing its emitter
+     * @param connection
+     * @return boolean true if the connection was still open
+     */
+    private boolean detach(Connection connection) {
+        if (!connection.open.compareAndSet(true, false)) {
+            return false;
+        }
+        synchronized (this) {
+            remove(connection);
+        }
+        connection.pending.clear();
+        return true;
+    }
+
+    private void remove(Connection connection) {
+        List<Connection> userConnections = connectionsByUser.get(connection.email);
+        if (userConnections != null && userConnections.remove(connection)) {
+            connections--;
+            if (userConnections.isEmpty()) {
+                connectionsByUser.remove(connection.email);
+            }
+        }
+    }
+
+    /**
+     * A change already serialized, with the two users that can see it
+     */
+    private class StreamEvent {
+        private final long id;
+        private final String hostEmail;
+        private final String renterEmail;
+        private final String data;
+
+        private StreamEvent(long id, String hostEmail, String renterEmail, String data) {
+            this.id = id;
+            this.hostEmail = hostEmail;
+            this.renterEmail = renterEmail;
+            this.data = data;
+        }
+
+        private boolean isFor(String email) {
+            return email.equals(hostEmail) || email.equals(renterEmail);
+        }
+
+        private SseEventBuilder toSse() {
+            return SseEmitter.event().id(eventId(id)).name(STATUS_EVENT).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    /**
+     * An open stream and the events waiting to be written to it, only one thread writes to it at a time
+     */
+    private class Connection {
+        private final String email;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<SseEventBuilder> pending = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        private Connection(String email, SseEmitter emitter) {
+            this.email = email;
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEventBuilder event) {
+            if (!open.get()) {
+                return;
+            }
+            if (!pending.offer(event)) {
+                logger.info("Event stream of {} is too slow, it is closed so the client resumes from its last event", email);
+                // El hilo que le esta escribiendo completa el emisor cuando su send vuelve
+                detach(this);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEventBuilder event;
+                while (open.get() && (event = pending.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // El cliente se desconecto, los eventos siguientes los recupera con Last-Event-ID
+                close(this);
+            } finally {
+                draining.set(false);
+            }
+            if (!open.get()) {
+                emitter.complete();
+                return;
+            }
+            // Un evento pudo llegar despues del ultimo poll y antes de soltar la bandera
+            if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+import com.gossip.arrienda_tu_finca.events.RentalRequestStatusEvent;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Marks as expired the rental requests that were left behind:
+ * approved requests not paid some hours after the approval, and pending or unpaid requests whose arrival date passed.
+ * The ids are read in chunks ordered by id and each chunk is expired with one UPDATE in its own short transaction,
+ * so a run never holds locks on more than one chunk of rows
+ */
+@Service
+public class RentalRequestExpirationService {
+    static final String UNPAID_RULE = "unpaid";
+    static final String PENDING_RULE = "pending";
+
+    private RentalRequestRepository rentalRequestRepository;
+    private AvailabilityIndex availabilityIndex;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionTemplate transactionTemplate;
+    private MeterRegistry meterRegistry;
+    private long unpaidHours;
+    private long daysBeforeArrival;
+    private int chunkSize;
+    private static final Logger logger = LoggerFactory.getLogger(RentalRequestExpirationService.class);
+
+    @Autowired
+    public RentalRequestExpirationService(RentalRequestRepository rentalRequestRepository, AvailabilityIndex availabilityIndex,
+            ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${arrienda.expiration.unpaid-hours:48}") long unpaidHours,
+            @Value("${arrienda.expiration.days-before-arrival:0}") long daysBeforeArrival,
+            @Value("${arrienda.expiration.chunk-size:500}") int chunkSize) {
+        this.rentalRequestRepository = rentalRequestRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.unpaidHours = unpaidHours;
+        this.daysBeforeArrival = daysBeforeArrival;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Expires the stale rental requests, it runs every arrienda.expiration.fixed-delay.
+     * Publishes the rental.requests.expiration.scanned and rental.requests.expired counters by rule
+     * and the rental.requests.expiration.duration timer
+     * @return int with the amount of expired requests
+     */
+    @Scheduled(initialDelayString = "${arrienda.expiration.initial-delay:PT1M}", fixedDelayString = "${arrienda.expiration.fixed-delay:PT5M}")
+    public int expireStaleRequests() {
+        long start = System.nanoTime();
+        LocalDateTime approvedBefore = LocalDateTime.now().minusHours(unpaidHours);
+        LocalDate arrivalBefore = LocalDate.now().plusDays(daysBeforeArrival);
+
+        int unpaid = expireInChunks(UNPAID_RULE,
+                lastId -> rentalRequestRepository.findUnpaidIdsToExpire(lastId, approvedBefore, arrivalBefore, PageRequest.ofSize(chunkSize)),
+                ids -> {
+                    int expired = rentalRequestRepository.expireUnpaid(ids, approvedBefore, arrivalBefore);
+                    announceExpired(ids);
+                    return expired;
+                });
+        int pending = expireInChunks(PENDING_RULE,
+                lastId -> rentalRequestRepository.findPendingIdsToExpire(lastId, arrivalBefore, PageRequest.ofSize(chunkSize)),
+                ids -> {
+                    int expired = rentalRequestRepository.expirePending(ids, arrivalBefore);
+                    announceExpired(ids);
+                    return expired;
+                });
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("rental.requests.expiration.duration").record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Rental request expiration finished in {} ms, {} unpaid and {} pending requests expired",
+                TimeUnit.NANOSECONDS.toMillis(elapsed), unpaid, pending);
+        return unpaid + pending;
+    }
+
+    /**
+     * Frees the dates of the requests of a chunk that were expired and publishes one RentalRequestStatusEvent for each,
+     * inside the transaction of the chunk
+     * @param ids ids of the chunk
+     */
+    private void announceExpired(List<Long> ids) {
+        for (Object[] row : rentalRequestRepository.findExpiredParticipants(ids)) {
+            Long requestId = (Long) row[0];
+            // Las aprobadas ocupaban fechas de la propiedad
+            availabilityIndex.remove(requestId);
+            eventPublisher.publishEvent(new RentalRequestStatusEvent(requestId, (Long) row[1], (String) row[2], (String) row[3],
+                    RentalRequestStatus.EXPIRED));
+        }
+    }
+
+    /**
+     * Reads the ids of a rule by chunks and expires each chunk in its own transaction
+     * @param rule name of the rule used as the tag of the metrics
+     * @param nextChunk reads the ids after the given id
+     * @param expire expires a chunk of ids and returns the amount of updated rows
+     * @return int with the amount of expired requests
+     */
+    private int expireInChunks(String rule, Function<Long, List<Long>> nextChunk, Function<List<Long>, Integer> expire) {
+        int scanned = 0;
+        int expired = 0;
+        List<Long> ids = nextChunk.apply(0L);
+        while (!ids.isEmpty()) {
+            List<Long> chunk = ids;
+            expired += transactionTemplate.execute(status -> expire.apply(chunk));
+            scanned += chunk.size();
+            ids = chunk.size() < chunkSize ? List.of() : nextChunk.apply(chunk.get(chunk.size() - 1));
+        }
+        meterRegistry.counter("rental.requests.expiration.scanned", "rule", rule).increment(scanned);
+        meterRegistry.counter("rental.requests.expired", "rule", rule).increment(expired);
+        return expired;
+    }
+}
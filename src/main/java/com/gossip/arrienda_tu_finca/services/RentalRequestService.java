@@ -2,48 +2,79 @@ package com.gossip.arrienda_tu_finca.services;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiFunction;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.dto.CursorPageDTO;
 import com.gossip.arrienda_tu_finca.dto.RentalRequestCreateDTO;
 import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestSearchDTO;
 import com.gossip.arrienda_tu_finca.entities.Comment;
 import com.gossip.arrienda_tu_finca.entities.Property;
 import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventType;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
 import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.events.RentalRequestCompletedEvent;
+import com.gossip.arrienda_tu_finca.events.RentalRequestReviewedEvent;
+import com.gossip.arrienda_tu_finca.events.RentalRequestStatusEvent;
 import com.gossip.arrienda_tu_finca.exceptions.InvalidAmountOfResidentsException;
 import com.gossip.arrienda_tu_finca.exceptions.InvalidDateException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPageRequestException;
 import com.gossip.arrienda_tu_finca.exceptions.InvalidPaymentException;
 import com.gossip.arrienda_tu_finca.exceptions.InvalidReviewException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidStateTransitionException;
+import com.gossip.arrienda_tu_finca.exceptions.OverlappingRequestException;
 import com.gossip.arrienda_tu_finca.exceptions.PropertyNotFoundException;
 import com.gossip.arrienda_tu_finca.exceptions.RentalRequestNotFoundException;
+import com.gossip.arrienda_tu_finca.mappers.CommentMapper;
+import com.gossip.arrienda_tu_finca.mappers.RentalRequestMapper;
 import com.gossip.arrienda_tu_finca.repositories.CommentRepository;
 import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
 import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestSpecifications;
 import com.gossip.arrienda_tu_finca.repositories.UserRepository;
 
 @Service
 public class RentalRequestService {
 
     private final RentalRequestRepository rentalRequestRepository;
-    private final ModelMapper modelMapper;
+    private final RentalRequestMapper rentalRequestMapper;
+    private final CommentMapper commentMapper;
     private CommentRepository commentRepository;
     private UserRepository userRepository;
     private PropertyRepository propertyRepository;
+    private PropertyCache propertyCache;
+    private AvailabilityIndex availabilityIndex;
+    private ApplicationEventPublisher eventPublisher;
+    private PriceQuoteService priceQuoteService;
     private static final String RENTAL_REQUEST_NOT_FOUND = "Solicitud de arriendo no encontrada";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
     @Autowired
-    public RentalRequestService(RentalRequestRepository rentalRequestRepository, ModelMapper modelMapper, UserRepository userRepository, PropertyRepository propertyRepository, CommentRepository commentRepository) {
+    public RentalRequestService(RentalRequestRepository rentalRequestRepository, RentalRequestMapper rentalRequestMapper, CommentMapper commentMapper, UserRepository userRepository, PropertyRepository propertyRepository, CommentRepository commentRepository, PropertyCache propertyCache, AvailabilityIndex availabilityIndex, ApplicationEventPublisher eventPublisher, PriceQuoteService priceQuoteService) {
         this.rentalRequestRepository = rentalRequestRepository;
-        this.modelMapper = modelMapper;
+        this.rentalRequestMapper = rentalRequestMapper;
+        this.commentMapper = commentMapper;
         this.userRepository = userRepository;
         this.propertyRepository = propertyRepository;
         this.commentRepository = commentRepository;
+        this.propertyCache = propertyCache;
+        this.availabilityIndex = availabilityIndex;
+        this.eventPublisher = eventPublisher;
+        this.priceQuoteService = priceQuoteService;
     }
 
     /**
@@ -53,8 +84,9 @@ public class RentalRequestService {
      * @throws PropertyNotFoundException
      * @throws InvalidRenterException 
      */
+    @Transactional
     public void createRequest(Long propertyId, RentalRequestCreateDTO rentalRequest) {
-        RentalRequest request = modelMapper.map(rentalRequest, RentalRequest.class);
+        RentalRequest request = rentalRequestMapper.toEntity(rentalRequest);
 
         Long userId = userRepository.findIdByEmail(rentalRequest.getRequesterEmail());
         if (userId == null) {
@@ -81,6 +113,10 @@ public class RentalRequestService {
         request.setProperty(property);
         request.setRequester(renter.get());
         request.setRequestDateTime(LocalDateTime.now()); 
+        if (property.getPricePerNight() != null) {
+            request.setAmount(priceQuoteService.quote(propertyId, rentalRequest.getArrivalDate(), rentalRequest.getDepartureDate(),
+                    rentalRequest.getAmountOfResidents()).getAmount());
+        }
         request.setRejected(false);
         request.setCanceled(false); 
         request.setPaid(false);
@@ -88,6 +124,7 @@ public class RentalRequestService {
         request.setApproved(false);
         request.setExpired(false);
         rentalRequestRepository.save(request);
+        publishStatus(request.getId(), RentalRequestStatus.PENDING);
     }
 
     /**
@@ -97,11 +134,11 @@ public class RentalRequestService {
      * @return List<RentalRequest> of the request about the property
      */
     public List<RentalRequestDto> getRequestsByProperty(Long propertyId) {
-        List<RentalRequest> requests = rentalRequestRepository.findByPropertyId(propertyId);
+        List<RentalRequestDto> requests = rentalRequestRepository.findDTOsByPropertyId(propertyId);
         if (requests.isEmpty()) {
             throw new RentalRequestNotFoundException("No se encontraron solicitudes de arriendo para la propiedad con ID: " + propertyId);
         }
-        return requests.stream().map(request -> modelMapper.map(request, RentalRequestDto.class)).toList();
+        return requests;
     }
 
     /**
@@ -110,11 +147,11 @@ public class RentalRequestService {
      * @return
      */
     public List<RentalRequestDto> getRequestsByHost(String hostEmail) {
-        List<RentalRequest> requests = rentalRequestRepository.findByHostEmail(hostEmail);
+        List<RentalRequestDto> requests = rentalRequestRepository.findDTOsByHostEmail(hostEmail);
         if (requests.isEmpty()) {
             throw new RentalRequestNotFoundException("No se encontraron solicitudes de arriendo para el propietario con email: " + hostEmail);
         }
-        return requests.stream().map(request -> modelMapper.map(request, RentalRequestDto.class)).toList();
+        return requests;
     }
 
     /**
@@ -123,102 +160,234 @@ public class RentalRequestService {
      * @return
      */
     public List<RentalRequestDto> getRequestsByRenter(String renterEmail) {
-        List<RentalRequest> requests = rentalRequestRepository.findByRenterEmail(renterEmail);
+        List<RentalRequestDto> requests = rentalRequestRepository.findDTOsByRenterEmail(renterEmail);
         if (requests.isEmpty()) {
             throw new RentalRequestNotFoundException("No se encontraron solicitudes de arriendo para el arrendatario con email: " + renterEmail);
         }
-        return requests.stream().map(request -> modelMapper.map(request, RentalRequestDto.class)).toList();
+        return requests;
+    }
+
+    /**
+     * Obtains a page of the rental requests made to the properties of a host using keyset pagination
+     * @param hostEmail email of the host
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo, the filters that are null are ignored
+     * @param size amount of requests of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param sort newest or oldest, by request date
+     * @throws InvalidPageRequestException if the status, the sort or the cursor are not valid
+     * @return CursorPageDTO<RentalRequestDto> with the requests and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<RentalRequestDto> getRequestsPageByHost(String hostEmail, RentalRequestSearchDTO search, Integer size, String cursor, String sort) {
+        return getRequestsPage(RentalRequestSpecifications.ofHost(hostEmail), search, size, cursor, sort);
+    }
+
+    /**
+     * Obtains a page of the rental requests made by a renter using keyset pagination
+     * @param renterEmail email of the renter
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo, the filters that are null are ignored
+     * @param size amount of requests of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param sort newest or oldest, by request date
+     * @throws InvalidPageRequestException if the status, the sort or the cursor are not valid
+     * @return CursorPageDTO<RentalRequestDto> with the requests and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<RentalRequestDto> getRequestsPageByRenter(String renterEmail, RentalRequestSearchDTO search, Integer size, String cursor, String sort) {
+        return getRequestsPage(RentalRequestSpecifications.ofRenter(renterEmail), search, size, cursor, sort);
     }
 
     /**
-     * Renter cancels the rental request given the request ID
+     * Obtains a page of the rental requests made to a property using keyset pagination
+     * @param propertyId ID of the property
+     * @param search status, arrivalFrom, arrivalTo, requestedFrom and requestedTo, the filters that are null are ignored
+     * @param size amount of requests of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param sort newest or oldest, by request date
+     * @throws InvalidPageRequestException if the status, the sort or the cursor are not valid
+     * @return CursorPageDTO<RentalRequestDto> with the requests and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<RentalRequestDto> getRequestsPageByProperty(Long propertyId, RentalRequestSearchDTO search, Integer size, String cursor, String sort) {
+        return getRequestsPage(RentalRequestSpecifications.ofProperty(propertyId), search, size, cursor, sort);
+    }
+
+    private CursorPageDTO<RentalRequestDto> getRequestsPage(Specification<RentalRequest> scope, RentalRequestSearchDTO search,
+            Integer size, String cursor, String sort) {
+        boolean newestFirst = switch (sort) {
+            case "newest" -> true;
+            case "oldest" -> false;
+            default -> throw new InvalidPageRequestException("El orden " + sort + " no es soportado, use newest u oldest");
+        };
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Specification<RentalRequest> specification = scope.and(RentalRequestSpecifications.matching(search, parseStatus(search.getStatus())));
+        if (cursor != null) {
+            // El cursor guarda el orden, la fecha de la solicitud (vacia si no tiene) y el id de la ultima fila
+            String[] parts = PageCursor.decode(cursor, 3);
+            if (!sort.equals(parts[0])) {
+                throw new InvalidPageRequestException("El cursor fue generado para el orden " + parts[0] + " y no para " + sort);
+            }
+            try {
+                LocalDateTime lastRequestDateTime = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+                specification = specification.and(RentalRequestSpecifications.after(lastRequestDateTime, Long.parseLong(parts[2]), newestFirst));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new InvalidPageRequestException("El cursor " + cursor + " no es valido");
+            }
+        }
+        List<RentalRequestDto> requests = rentalRequestRepository.searchRequestDTOs(specification, newestFirst, pageSize);
+
+        String nextCursor = null;
+        if (requests.size() == pageSize) {
+            RentalRequestDto last = requests.get(requests.size() - 1);
+            nextCursor = PageCursor.encode(sort, last.getRequestDateTime() == null ? "" : last.getRequestDateTime(), last.getId());
+        }
+        return new CursorPageDTO<>(requests, requests.size(), nextCursor);
+    }
+
+    private RentalRequestStatus parseStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return RentalRequestStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("El estado " + status + " no es valido");
+        }
+    }
+
+    /**
+     * Renter cancels the rental request given the request ID, only while it is pending or approved and not paid
      * @param requestId
+     * @throws RentalRequestNotFoundException
+     * @throws InvalidStateTransitionException if the request can not be canceled
      */
+    @Transactional
     public void cancelRequest(Long requestId) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
-        if (optionalRequest.isPresent()) {
-            RentalRequest request = optionalRequest.get();
-            
-            request.setCanceled(true);
-            rentalRequestRepository.save(request);
-        } else {
-            throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
+        if (rentalRequestRepository.cancel(requestId) == 0) {
+            throw invalidTransition(requestId, RentalRequestStatus.CANCELED);
         }
+        availabilityIndex.remove(requestId);
+        publishStatus(requestId, RentalRequestStatus.CANCELED);
     }
 
     /**
-     * Host completes the rental request given the request ID
+     * Host completes the rental request given the request ID, only after it is paid
      * @param requestId
+     * @throws RentalRequestNotFoundException
+     * @throws InvalidStateTransitionException if the request can not be completed
      */
+    @Transactional
     public void completeRequest(Long requestId) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
-        if (optionalRequest.isPresent()) {
-            RentalRequest request = optionalRequest.get();
-            request.setCompleted(true);
-            rentalRequestRepository.save(request);
-        } else {
-            throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
+        if (rentalRequestRepository.complete(requestId) == 0) {
+            throw invalidTransition(requestId, RentalRequestStatus.COMPLETED);
+        }
+        availabilityIndex.remove(requestId);
+        for (Object[] row : rentalRequestRepository.findParticipantsById(requestId)) {
+            eventPublisher.publishEvent(new RentalRequestCompletedEvent(requestId, (Long) row[0], (String) row[1], (String) row[2], (LocalDate) row[3]));
         }
     }
 
     /**
-     * Host rejects the rental request given the request ID
+     * Host rejects the rental request given the request ID, only while it is pending or approved and not paid
      * @param requestId
+     * @throws RentalRequestNotFoundException
+     * @throws InvalidStateTransitionException if the request can not be rejected
      */
+    @Transactional
     public void rejectRequest(Long requestId) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
-        if (optionalRequest.isPresent()) {
-            RentalRequest request = optionalRequest.get();
-            request.setRejected(true);
-            rentalRequestRepository.save(request);
-        } else {
-            throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
+        if (rentalRequestRepository.reject(requestId) == 0) {
+            throw invalidTransition(requestId, RentalRequestStatus.REJECTED);
         }
+        availabilityIndex.remove(requestId);
+        publishStatus(requestId, RentalRequestStatus.REJECTED);
     }
 
     /**
-     * Host approve the rental request given the request ID
+     * Host approve the rental request given the request ID, only while it is pending and no other
+     * approved or paid request of the property shares a night with it.
+     * The row of the property stays locked until the commit, so two approvals of the same property
+     * run one after the other and the second one sees the first. Every read is made after the locks,
+     * so it also holds with the MySQL repeatable read snapshot
      * @param requestId
-     * @return
+     * @throws RentalRequestNotFoundException
+     * @throws OverlappingRequestException if the dates are already taken
+     * @throws InvalidStateTransitionException if the request can not be approved
+     * @return RentalRequest approved
      */
+    @Transactional
     public RentalRequest approveRequest(Long requestId) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
-        if (optionalRequest.isPresent()) {
-            RentalRequest request = optionalRequest.get();
-            request.setApproved(true);
-            rentalRequestRepository.save(request);
-            return request;
-        } else {
-            throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
+        Long propertyId = rentalRequestRepository.lockPropertyIdById(requestId);
+        if (propertyId != null) {
+            propertyRepository.lockById(propertyId);
+            RentalRequest pending = rentalRequestRepository.findById(requestId)
+                    .orElseThrow(() -> new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND));
+            if (pending.getArrivalDate() != null && pending.getDepartureDate() != null
+                    && rentalRequestRepository.existsOverlappingStay(propertyId, requestId, pending.getArrivalDate(), pending.getDepartureDate())) {
+                throw new OverlappingRequestException("La propiedad ya tiene una solicitud aprobada entre " + pending.getArrivalDate()
+                        + " y " + pending.getDepartureDate());
+            }
         }
+        if (rentalRequestRepository.approve(requestId, LocalDateTime.now()) == 0) {
+            throw invalidTransition(requestId, RentalRequestStatus.APPROVED);
+        }
+        RentalRequest request = rentalRequestRepository.findDetailById(requestId)
+                .orElseThrow(() -> new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND));
+        availabilityIndex.put(request);
+        publishStatus(requestId, RentalRequestStatus.APPROVED);
+        return request;
     }
 
     /**
-     * Renter pays the rental request given the request ID
+     * Renter pays the rental request given the request ID, only after it is approved
      * @param requestId
-     * @return
+     * @throws RentalRequestNotFoundException
+     * @throws InvalidPaymentException if the request is not approved, already paid or expired
+     * @throws InvalidStateTransitionException if the request was canceled or rejected
+     * @return RentalRequest paid
      */
+    @Transactional
     public RentalRequest payRequest(Long requestId) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
-        if (optionalRequest.isPresent()) {
-            RentalRequest request = optionalRequest.get();
+        if (rentalRequestRepository.pay(requestId) == 0) {
+            RentalRequest request = rentalRequestRepository.findById(requestId)
+                    .orElseThrow(() -> new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND));
             if (!request.isApproved()) {
                 throw new InvalidPaymentException("La solicitud de arriendo no ha sido aceptada.");
-             }
-             if (request.isPaid()) {
+            }
+            if (request.isPaid()) {
                 throw new InvalidPaymentException("La solicitud de arriendo ya ha sido pagada.");
-             }
-             if (request.isExpired()) {
-                 throw new InvalidPaymentException("La solicitud de arriendo ha expirado.");
-             }
-            request.setPaid(true);
-            rentalRequestRepository.save(request);
-            return request;
-        } else {
-            throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
+            }
+            if (request.isExpired()) {
+                throw new InvalidPaymentException("La solicitud de arriendo ha expirado.");
+            }
+            throw invalidTransition(requestId, RentalRequestStatus.PAID);
+        }
+        publishStatus(requestId, RentalRequestStatus.PAID);
+        return rentalRequestRepository.findDetailById(requestId)
+                .orElseThrow(() -> new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND));
+    }
+
+    /**
+     * Announces that a rental request moved to another state, reading only the ids and emails it needs
+     * @param requestId
+     * @param status new state of the request
+     */
+    private void publishStatus(Long requestId, RentalRequestStatus status) {
+        for (Object[] row : rentalRequestRepository.findParticipantsById(requestId)) {
+            eventPublisher.publishEvent(new RentalRequestStatusEvent(requestId, (Long) row[0], (String) row[1], (String) row[2], status));
         }
     }
 
+    /**
+     * Builds the error of a transition whose guarded update did not match the request
+     * @param requestId
+     * @param target
+     * @throws RentalRequestNotFoundException if the request does not exist
+     * @return InvalidStateTransitionException with the current state of the request
+     */
+    private InvalidStateTransitionException invalidTransition(Long requestId, RentalRequestStatus target) {
+        RentalRequest request = rentalRequestRepository.findById(requestId)
+                .orElseThrow(() -> new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND));
+        return new InvalidStateTransitionException("La solicitud de arriendo en estado " + RentalRequestStatus.of(request)
+                + " no puede pasar a " + target);
+    }
+
     /**
      * Checks if the renter comment is valid and if the renter is correct for the request id
      * @param commentDto
@@ -249,8 +418,11 @@ public class RentalRequestService {
      * @param commentDto
      * @return
      */
+    @Transactional
     public void reviewProperty(Long requestId, CommentDTO commentDto) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
+        // Dos reseñas a la vez de la misma solicitud descontarian la misma calificacion anterior de los acumulados
+        rentalRequestRepository.lockById(requestId);
+        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findForReviewById(requestId);
         if (!optionalRequest.isPresent()) {
             throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
         }
@@ -260,27 +432,12 @@ public class RentalRequestService {
         }
         Comment comment = isRenterCommentValid(request, commentDto);
         Comment databaseComment = commentRepository.save(comment);
+        int removedRating = replacedRating(request.getPropertyComment());
         request.setPropertyComment(databaseComment);
         rentalRequestRepository.save(request);
-        updatePropertyRating(request.getProperty().getId());
-    }
-
-    /**
-     * The rating for the property is updated
-     * @param propertyId
-     * @return
-     */
-    private void updatePropertyRating(Long propertyId) {
-        Property property = propertyRepository.findById(propertyId)
-                .orElseThrow(() -> new PropertyNotFoundException("Propiedad con ID " + propertyId + " no fue encontrada"));
-        List<Comment> requests = rentalRequestRepository.findCommentsByPropertyId(propertyId);
-        double rating = 0;
-        for (Comment request : requests) {
-            rating += request.getRating();
-        }
-        rating = rating / requests.size();
-        property.setRating(rating);
-        propertyRepository.save(property);
+        propertyRepository.addRating(request.getProperty().getId(), databaseComment.getRating(), removedRating);
+        propertyCache.evict(request.getProperty().getId(), request.getProperty().getMunicipality());
+        publishReview(request, RentalRequestEventType.PROPERTY_REVIEWED);
     }
 
     /**
@@ -289,8 +446,11 @@ public class RentalRequestService {
      * @param commentDto
      * @return
      */
+    @Transactional
     public void reviewHost(Long requestId, CommentDTO commentDto) {
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
+        // Dos reseñas a la vez de la misma solicitud descontarian la misma calificacion anterior de los acumulados
+        rentalRequestRepository.lockById(requestId);
+        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findForReviewById(requestId);
         if (!optionalRequest.isPresent()) {
             throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
         }
@@ -300,26 +460,14 @@ public class RentalRequestService {
         }
         Comment comment = isRenterCommentValid(request, commentDto);
         Comment databaseComment = commentRepository.save(comment);
+        int removedRating = replacedRating(request.getHostComment());
         request.setHostComment(databaseComment);
         rentalRequestRepository.save(request);
-        updateHostRating(request);
-    }
-
-    /**
-     * The rating for host is updated
-     * @param requestId
-     * @return
-     */
-    private void updateHostRating(RentalRequest request) {
         User host = request.getProperty().getOwner();
-        List<Comment> requests = rentalRequestRepository.findCommentsByHostEmail(host.getEmail());
-        double rating = 0;
-        for (Comment comment : requests) {
-            rating += comment.getRating();
-        }
-        rating = rating / requests.size();
-        host.setRatingHost(rating);
-        userRepository.save(host);
+        if (host != null) {
+            userRepository.addHostRating(host.getId(), databaseComment.getRating(), removedRating);
+        }
+        publishReview(request, RentalRequestEventType.HOST_REVIEWED);
     }
 
     /**
@@ -335,7 +483,7 @@ public class RentalRequestService {
         if(commentDto.getRating() < 1 || commentDto.getRating() > 5) {
             throw new InvalidReviewException("La calificación debe estar entre 1 y 5.");
         }
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
+        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findForReviewById(requestId);
         if (!optionalRequest.isPresent()) {
             throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
         }
@@ -358,34 +506,42 @@ public class RentalRequestService {
      * @param commentDto
      * @return
      */
+    @Transactional
     public void reviewRenter(Long requestId, CommentDTO commentDto) {
+        // Dos reseñas a la vez de la misma solicitud descontarian la misma calificacion anterior de los acumulados
+        rentalRequestRepository.lockById(requestId);
         Comment comment = isHostCommentValid(requestId, commentDto);
         Comment databaseComment = commentRepository.save(comment);
-        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findById(requestId);
+        Optional<RentalRequest> optionalRequest = rentalRequestRepository.findDetailById(requestId);
         if (!optionalRequest.isPresent()) {
             throw new RentalRequestNotFoundException(RENTAL_REQUEST_NOT_FOUND);
         }
         RentalRequest request = optionalRequest.get();
+        int removedRating = replacedRating(request.getRenterComment());
         request.setRenterComment(databaseComment);
         rentalRequestRepository.save(request);
-        updateRenterRating(request);
+        userRepository.addRenterRating(request.getRequester().getId(), databaseComment.getRating(), removedRating);
+        publishReview(request, RentalRequestEventType.RENTER_REVIEWED);
     }
 
     /**
-     * The rating for the renter is updated
-     * @param RentalRequest
-     * @return
+     * Rating that a review replaces, 0 when the request had no review of that kind
+     * @param previous comment of the request before the review
+     * @return int with the rating to take out of the aggregates
+     */
+    private static int replacedRating(Comment previous) {
+        return previous == null ? 0 : previous.getRating();
+    }
+
+    /**
+     * Announces a review of a rental request loaded with its property and requester
+     * @param request
+     * @param type PROPERTY_REVIEWED, HOST_REVIEWED or RENTER_REVIEWED
      */
-    private void updateRenterRating(RentalRequest request) {
-        User renter = request.getRequester();
-        List<Comment> requests = rentalRequestRepository.findCommentsByRenterEmail(renter.getEmail());
-        double rating = 0;
-        for (Comment comment : requests) {
-            rating += comment.getRating();
-        }
-        rating = rating / requests.size();
-        renter.setRatingRenter(rating);
-        userRepository.save(renter);
+    private void publishReview(RentalRequest request, RentalRequestEventType type) {
+        User host = request.getProperty().getOwner();
+        eventPublisher.publishEvent(new RentalRequestReviewedEvent(request.getId(), request.getProperty().getId(),
+                host == null ? null : host.getEmail(), request.getRequester().getEmail(), type));
     }
 
     /**
@@ -395,7 +551,7 @@ public class RentalRequestService {
      */
     public List<CommentDTO> getRenterComments(String email) {
         List<Comment> comments = rentalRequestRepository.findCommentsByRenterEmail(email);
-        return comments.stream().map(comment -> modelMapper.map(comment, CommentDTO.class)).toList();
+        return comments.stream().map(commentMapper::toDTO).toList();
     }
 
     /**
@@ -405,7 +561,7 @@ public class RentalRequestService {
      */
     public List<CommentDTO> getHostComments(String email) {
         List<Comment> comments = rentalRequestRepository.findCommentsByHostEmail(email);
-        return comments.stream().map(comment -> modelMapper.map(comment, CommentDTO.class)).toList();
+        return comments.stream().map(commentMapper::toDTO).toList();
     }
 
     /**
@@ -415,6 +571,58 @@ public class RentalRequestService {
      */
     public List<CommentDTO> getPropertyComments(Long propertyId) {
         List<Comment> comments = rentalRequestRepository.findCommentsByPropertyId(propertyId);
-        return comments.stream().map(comment -> modelMapper.map(comment, CommentDTO.class)).toList();
-    } 
+        return comments.stream().map(commentMapper::toDTO).toList();
+    }
+
+    /**
+     * Obtains a page of the comments that rate a property, newest first, using keyset pagination
+     * @param propertyId
+     * @param size amount of comments of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @throws InvalidPageRequestException if the cursor is not valid
+     * @return CursorPageDTO<CommentDTO> with the comments and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<CommentDTO> getPropertyCommentsPage(Long propertyId, Integer size, String cursor) {
+        return getCommentsPage(size, cursor, (beforeId, page) -> rentalRequestRepository.findPropertyCommentPage(propertyId, beforeId, page));
+    }
+
+    /**
+     * Obtains a page of the comments that rate a host, newest first, using keyset pagination
+     * @param email
+     * @param size amount of comments of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @throws InvalidPageRequestException if the cursor is not valid
+     * @return CursorPageDTO<CommentDTO> with the comments and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<CommentDTO> getHostCommentsPage(String email, Integer size, String cursor) {
+        return getCommentsPage(size, cursor, (beforeId, page) -> rentalRequestRepository.findHostCommentPage(email, beforeId, page));
+    }
+
+    /**
+     * Obtains a page of the comments that rate a renter, newest first, using keyset pagination
+     * @param email
+     * @param size amount of comments of the page, between 1 and 100
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @throws InvalidPageRequestException if the cursor is not valid
+     * @return CursorPageDTO<CommentDTO> with the comments and the cursor of the next page, empty if there are none
+     */
+    public CursorPageDTO<CommentDTO> getRenterCommentsPage(String email, Integer size, String cursor) {
+        return getCommentsPage(size, cursor, (beforeId, page) -> rentalRequestRepository.findRenterCommentPage(email, beforeId, page));
+    }
+
+    private CursorPageDTO<CommentDTO> getCommentsPage(Integer size, String cursor, BiFunction<Long, Pageable, List<CommentDTO>> query) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null) {
+            // El cursor guarda el id de la ultima reseña de la pagina
+            try {
+                beforeId = Long.parseLong(PageCursor.decode(cursor, 1)[0]);
+            } catch (NumberFormatException e) {
+                throw new InvalidPageRequestException("El cursor " + cursor + " no es valido");
+            }
+        }
+        List<CommentDTO> comments = query.apply(beforeId, PageRequest.of(0, pageSize));
+        String nextCursor = comments.size() == pageSize ? PageCursor.encode(comments.get(comments.size() - 1).getId()) : null;
+        return new CursorPageDTO<>(comments, comments.size(), nextCursor);
+    }
 }
\ No newline at end of file
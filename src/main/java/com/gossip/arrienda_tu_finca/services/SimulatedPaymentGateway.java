@@ -0,0 +1,86 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.gossip.arrienda_tu_finca.exceptions.PaymentGatewayException;
+
+/**
+ * Local stand-in of the payment processor for development and tests, it is only used with
+ * arrienda.payments.gateway=simulated and never charges anything. Every call waits the configured latency,
+ * fails with the failure rate, declines with the decline rate and leaves the charge pending with the pending rate.
+ * A pending charge is confirmed the next time its state is asked
+ */
+@Component
+@ConditionalOnProperty(name = "arrienda.payments.gateway", havingValue = "simulated")
+public class SimulatedPaymentGateway implements PaymentGateway {
+    private final Map<Long, Result> charges = new ConcurrentHashMap<>();
+    private volatile Duration latency;
+    private volatile double failureRate;
+    private volatile double declineRate;
+    private volatile double pendingRate;
+
+    public SimulatedPaymentGateway(@Value("${arrienda.payments.simulated.latency:PT0.2S}") Duration latency,
+            @Value("${arrienda.payments.simulated.failure-rate:0.05}") double failureRate,
+            @Value("${arrienda.payments.simulated.decline-rate:0.0}") double declineRate,
+            @Value("${arrienda.payments.simulated.pending-rate:0.0}") double pendingRate) {
+        this.latency = latency;
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+        this.pendingRate = pendingRate;
+    }
+
+    @Override
+    public Result charge(Charge charge) {
+        simulateCall();
+        // El mismo pago cobrado otra vez devuelve el primer resultado, como la llave de idempotencia del procesador
+        return charges.computeIfAbsent(charge.getPaymentId(), paymentId -> {
+            String reference = "sim-" + paymentId;
+            double draw = ThreadLocalRandom.current().nextDouble();
+            if (draw < declineRate) {
+                return new Result(Outcome.DECLINED, reference, "Fondos insuficientes");
+            }
+            if (draw < declineRate + pendingRate) {
+                return new Result(Outcome.PENDING, reference, "Pago en verificacion");
+            }
+            return new Result(Outcome.CONFIRMED, reference, "Pago aprobado");
+        });
+    }
+
+    @Override
+    public Result status(String reference) {
+        simulateCall();
+        Long paymentId = Long.valueOf(reference.substring("sim-".length()));
+        Result result = charges.computeIfPresent(paymentId, (id, current) -> current.getOutcome() == Outcome.PENDING
+                ? new Result(Outcome.CONFIRMED, reference, "Pago aprobado") : current);
+        if (result == null) {
+            throw new PaymentGatewayException("Cobro " + reference + " no encontrado");
+        }
+        return result;
+    }
+
+    void configure(Duration latency, double failureRate, double declineRate, double pendingRate) {
+        this.latency = latency;
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+        this.pendingRate = pendingRate;
+    }
+
+    private void simulateCall() {
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Llamada a la pasarela interrumpida");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new PaymentGatewayException("La pasarela no respondio");
+        }
+    }
+}
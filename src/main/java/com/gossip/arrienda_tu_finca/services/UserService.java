@@ -3,7 +3,6 @@ package com.gossip.arrienda_tu_finca.services;
 import java.io.IOException;
 import java.util.Optional;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -19,6 +18,7 @@ import com.gossip.arrienda_tu_finca.entities.Image;
 import com.gossip.arrienda_tu_finca.entities.User;
 import com.gossip.arrienda_tu_finca.exceptions.UserNotFoundException;
 import com.gossip.arrienda_tu_finca.exceptions.UserNotValidException;
+import com.gossip.arrienda_tu_finca.mappers.UserMapper;
 import com.gossip.arrienda_tu_finca.repositories.ImageRepository;
 import com.gossip.arrienda_tu_finca.repositories.UserRepository;
 import com.gossip.arrienda_tu_finca.security.CustomUserDetailsService;
@@ -27,16 +27,16 @@ import com.gossip.arrienda_tu_finca.security.JWTTokenService;
 @Service
 public class UserService {
     private final UserRepository userRepository;
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
     private final PasswordEncryptionService passwordEncryptionService;
     private final ImageRepository imageRepository;
     private final CustomUserDetailsService userDetailsService;
     private final JWTTokenService jwtTokenService;
 
     @Autowired
-    public UserService(UserRepository userRepository, ModelMapper modelMapper, ImageRepository imageRepository, CustomUserDetailsService userDetailsService, JWTTokenService jwtTokenService) {
+    public UserService(UserRepository userRepository, UserMapper userMapper, ImageRepository imageRepository, CustomUserDetailsService userDetailsService, JWTTokenService jwtTokenService) {
         this.userRepository = userRepository;
-        this.modelMapper = modelMapper;
+        this.userMapper = userMapper;
         this.passwordEncryptionService = new PasswordEncryptionService();
         this.imageRepository = imageRepository;
         this.userDetailsService = userDetailsService;
@@ -66,7 +66,7 @@ public class UserService {
      * @return TokenDTO with the token of the user
      */
     public TokenDTO login(LoginDTO loginDTO) throws UserNotValidException {
-        User user = modelMapper.map(loginDTO, User.class);
+        User user = userMapper.toEntity(loginDTO);
 
         if (user == null) {
             throw new UserNotValidException("User has no information for login");
@@ -95,7 +95,7 @@ public class UserService {
      * @throws UserNotValidException if the user is not valid with a message explaining why
      */
     public void createUser(UserDTO userDTO) throws UserNotValidException {
-        User user = modelMapper.map(userDTO, User.class);
+        User user = userMapper.toEntity(userDTO);
         
         isUserValid(user);
         isUserEmailAndPasswordValid(user.getEmail(), user.getPassword());
@@ -142,7 +142,7 @@ public class UserService {
      * @throws UserNotFoundException if the user is not found
      */
     public void updateUser(ChangeUserInfoDTO changeUserInfoDTO, Long userId) throws UserNotValidException, UserNotFoundException {
-        User user = modelMapper.map(changeUserInfoDTO, User.class);
+        User user = userMapper.toEntity(changeUserInfoDTO);
         
         Optional<User> optionalUserFromDB = userRepository.findById(userId);
 
@@ -209,7 +209,7 @@ public class UserService {
      * @throws UserNotFoundException if the user is not found
      */
     public void deleteUser(LoginDTO loginDTO, Long userId) {
-        User user = modelMapper.map(loginDTO, User.class);
+        User user = userMapper.toEntity(loginDTO);
 
         Optional<LoginDTO> optionalUserFromDB = Optional.ofNullable(userRepository.findLoginDTOById(userId));
 
@@ -0,0 +1,88 @@
+package com.gossip.arrienda_tu_finca.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RatingAggregate;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.mappers.PropertyMapper;
+import com.gossip.arrienda_tu_finca.mappers.RentalRequestMapper;
+
+/**
+ * Compares the hand written mappers with ModelMapper on the hot entity to DTO paths.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.gossip.arrienda_tu_finca.benchmarks.MappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    private ModelMapper modelMapper;
+    private PropertyMapper propertyMapper;
+    private RentalRequestMapper rentalRequestMapper;
+    private Property property;
+    private RentalRequest rentalRequest;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        propertyMapper = new PropertyMapper();
+        rentalRequestMapper = new RentalRequestMapper();
+        User owner = new User(7L, "host@example.com", "Host", "User", "secret", "3001234567", true, 4.5, false, 0, 12, new RatingAggregate(), new RatingAggregate(), null);
+        property = new Property(3L, "Finca Bella", "Hermosa finca", "Bogota", "Cundinamarca", "Carretera", "Km 5", "www.finca.com",
+                true, 250.0, 4, 2, 8, true, false, true, "1,2", 4.0, new RatingAggregate(), owner);
+        rentalRequest = new RentalRequest();
+        rentalRequest.setId(9L);
+        rentalRequest.setProperty(property);
+        rentalRequest.setRequester(owner);
+        rentalRequest.setAmountOfResidents(4);
+        // First call builds ModelMapper's type maps, keep it out of the measurement
+        modelMapper.map(property, PropertyDTO.class);
+        modelMapper.map(rentalRequest, RentalRequestDto.class);
+    }
+
+    @Benchmark
+    public PropertyDTO propertyModelMapper() {
+        return modelMapper.map(property, PropertyDTO.class);
+    }
+
+    @Benchmark
+    public PropertyDTO propertyMapper() {
+        return propertyMapper.toDTO(property);
+    }
+
+    @Benchmark
+    public RentalRequestDto rentalRequestModelMapper() {
+        return modelMapper.map(rentalRequest, RentalRequestDto.class);
+    }
+
+    @Benchmark
+    public RentalRequestDto rentalRequestMapper() {
+        return rentalRequestMapper.toDTO(rentalRequest);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
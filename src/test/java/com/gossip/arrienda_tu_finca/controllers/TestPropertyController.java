@@ -1,5 +1,6 @@
 package com.gossip.arrienda_tu_finca.controllers;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -12,19 +13,30 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Description;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
 import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
 import com.gossip.arrienda_tu_finca.entities.User;
 import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
 import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+import com.gossip.arrienda_tu_finca.security.CustomUserDetailsService;
+import com.gossip.arrienda_tu_finca.security.JWTAuthorizationFilter;
+import com.gossip.arrienda_tu_finca.security.JWTTokenService;
+import com.gossip.arrienda_tu_finca.services.PropertyImageMigration;
+import com.gossip.arrienda_tu_finca.services.RentalRequestService;
+
+import com.jayway.jsonpath.JsonPath;
 
 import jakarta.transaction.Transactional;
 
@@ -35,7 +47,9 @@ import jakarta.transaction.Transactional;
 )
 @AutoConfigureMockMvc
 @TestPropertySource(
-    locations = "classpath:application-test.properties"
+    locations = "classpath:application-test.properties",
+    properties = {"arrienda.property.export-batch-size=2", "arrienda.property.import-batch-size=2",
+        "arrienda.property.image-migration-chunk-size=1"}
 )
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 class TestPropertyController {
@@ -49,6 +63,21 @@ class TestPropertyController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PropertyImageMigration propertyImageMigration;
+
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+
+    @Autowired
+    private RentalRequestService rentalRequestService;
+
+    @Autowired
+    private JWTTokenService jwtTokenService;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
     @BeforeEach
     @Transactional
     void setUp() {
@@ -56,6 +85,11 @@ class TestPropertyController {
         userRepository.deleteAllInBatch();
     }
 
+    // Cabecera Authorization de un usuario que ya esta guardado
+    private String bearer(String email) {
+        return JWTAuthorizationFilter.PREFIX + jwtTokenService.generarToken(customUserDetailsService.loadByEmail(email));
+    }
+
 
     @Test
     @DirtiesContext
@@ -107,6 +141,140 @@ class TestPropertyController {
     
 
 
+    // 1.1 Caso de éxito: Importar varias propiedades desde un CSV, las filas invalidas se reportan
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test the bulk import of a CSV where some rows are not valid")
+    void givenCsvWithInvalidRows_whenImportProperties_thenValidRowsImportedAndErrorsReported() throws Exception {
+        // Arrange
+        User user = new User();
+        user.setEmail("host@example.com");
+        user.setHost(true);
+        user.setPassword("password");
+        userRepository.save(user);
+        String csv =
+        """
+        name,description,municipality,department,typeOfEntrance,address,link,pricePerNight,amountOfRooms,amountOfBathrooms,amountOfResidents,isPetFriendly,hasPool,hasGril,ownerEmail
+        Finca Uno,"Finca grande, con lago",Medellin,Antioquia,Carretera,Km 1,www.uno.com,150.0,3,2,6,true,false,true,host@example.com
+        Finca Dos,Sin precio,Medellin,Antioquia,Carretera,Km 2,www.dos.com,,3,2,6,true,false,true,host@example.com
+        Finca Tres,Otro dueño,Medellin,Antioquia,Carretera,Km 3,www.tres.com,90.0,1,1,2,false,false,false,nadie@example.com
+        Finca Cuatro,Pequeña,Medellin,Antioquia,Carretera,Km 4,www.cuatro.com,80.0,1,1,2,false,true,false,host@example.com
+        """;
+
+        // Act
+        mvc.perform(MockMvcRequestBuilders.post("/property/import")
+                .header(JWTAuthorizationFilter.HEADER, bearer("host@example.com"))
+                .contentType("text/csv")
+                .content(csv))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].row").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].message").value("Price per night is required"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[1].row").value(4));
+
+        // Assert
+        List<Property> properties = propertyRepository.findAllByOwnerEmail("host@example.com");
+        assertEquals(2, properties.size());
+        assertEquals("Finca grande, con lago", properties.stream().filter(p -> p.getName().equals("Finca Uno")).findFirst().get().getDescription());
+    }
+
+    // 1.2 Caso de éxito: Importar propiedades desde JSON Lines
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test the bulk import of JSON Lines")
+    void givenJsonLines_whenImportProperties_thenPropertiesImported() throws Exception {
+        // Arrange
+        User user = new User();
+        user.setEmail("host@example.com");
+        user.setHost(true);
+        user.setPassword("password");
+        userRepository.save(user);
+        String row = "{\"name\":\"Finca %d\",\"description\":\"Desc\",\"municipality\":\"Cali\",\"department\":\"Valle\",\"typeOfEntrance\":\"Carretera\","
+                + "\"address\":\"Km %d\",\"link\":\"www.finca.com\",\"pricePerNight\":100.0,\"amountOfRooms\":2,\"amountOfBathrooms\":1,"
+                + "\"amountOfResidents\":4,\"isPetFriendly\":true,\"hasPool\":false,\"hasGril\":false,\"ownerEmail\":\"host@example.com\"}\n";
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            body.append(String.format(row, i, i));
+        }
+        body.append("{no es json}\n");
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.post("/property/import")
+                .header(JWTAuthorizationFilter.HEADER, bearer("host@example.com"))
+                .contentType("application/x-ndjson")
+                .content(body.toString()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].row").value(6));
+        mvc.perform(MockMvcRequestBuilders.get("/property/municipality/Cali"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(5));
+    }
+
+    // 1.3 Caso de error: Una fila que la base de datos rechaza hace fallar todo su lote
+    @Test
+    @DirtiesContext
+    @Description("Test that a batch with a row rejected by the database is not saved and all its rows are reported")
+    void givenRowRejectedByDatabase_whenImportProperties_thenItsBatchIsNotSaved() throws Exception {
+        // Arrange
+        User user = new User();
+        user.setEmail("host@example.com");
+        user.setHost(true);
+        user.setPassword("password");
+        userRepository.save(user);
+        String row = "{\"name\":\"%s\",\"description\":\"Desc\",\"municipality\":\"Cali\",\"department\":\"Valle\",\"typeOfEntrance\":\"Carretera\","
+                + "\"address\":\"Km 1\",\"link\":\"www.finca.com\",\"pricePerNight\":100.0,\"amountOfRooms\":2,\"amountOfBathrooms\":1,"
+                + "\"amountOfResidents\":4,\"isPetFriendly\":true,\"hasPool\":false,\"hasGril\":false,\"ownerEmail\":\"host@example.com\"}\n";
+        // El nombre pasa la validacion pero no cabe en la columna
+        String body = String.format(row, "Finca Uno") + String.format(row, "F".repeat(300)) + String.format(row, "Finca Tres");
+
+        // Act
+        mvc.perform(MockMvcRequestBuilders.post("/property/import")
+                .header(JWTAuthorizationFilter.HEADER, bearer("host@example.com"))
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failed").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].row").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[1].row").value(2));
+
+        // Assert
+        List<Property> properties = propertyRepository.findAllByOwnerEmail("host@example.com");
+        assertEquals(1, properties.size());
+        assertEquals("Finca Tres", properties.get(0).getName());
+    }
+
+    // 1.4 Caso de error: Solo un anfitrion puede importar propiedades
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test that the bulk import is rejected without a host token")
+    void givenNoHostToken_whenImportProperties_thenForbiddenAndNothingImported() throws Exception {
+        // Arrange
+        User user = new User();
+        user.setEmail("renter@example.com");
+        user.setRenter(true);
+        user.setPassword("password");
+        userRepository.save(user);
+        String body = "{\"name\":\"Finca Uno\",\"municipality\":\"Cali\",\"pricePerNight\":100.0,\"ownerEmail\":\"renter@example.com\"}\n";
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.post("/property/import")
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mvc.perform(MockMvcRequestBuilders.post("/property/import")
+                .header(JWTAuthorizationFilter.HEADER, bearer("renter@example.com"))
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        assertEquals(0, propertyRepository.findAllByOwnerEmail("renter@example.com").size());
+    }
+
 //Test 2: Crear una propiedad con datos inválidos
  @Test
 @DirtiesContext
@@ -162,6 +330,37 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.municipality").value("Bogota"));
     }
 
+    // 3.1 Caso de éxito: La propiedad en cache se invalida al actualizarla
+    @Test
+    @DirtiesContext
+    @Description("Test that a cached property is read again after it is updated")
+    void givenCachedProperty_whenUpdateProperty_thenGetReturnsUpdatedProperty() throws Exception {
+        // Arrange
+        Property property = new Property();
+        property.setName("Finca Bella");
+        property.setMunicipality("Bogota");
+        propertyRepository.save(property);
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Finca Bella"));
+
+        // Act
+        mvc.perform(MockMvcRequestBuilders.put("/property/" + property.getId())
+            .contentType("application/json")
+            .content("""
+                {
+                    "name": "Finca Actualizada",
+                    "municipality": "Bogota"
+                }
+                """))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Finca Actualizada"));
+    }
+
     // 4. Caso de error: Obtener propiedad con ID inválido
     @Test
     @DirtiesContext
@@ -309,6 +508,103 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
             .andExpect(MockMvcResultMatchers.status().isOk());
     }
 
+    // 9.1 Caso de éxito: Las fotos subidas forman la galeria y se puede elegir la portada
+    @Test
+    @DirtiesContext
+    @Description("Test that the uploaded photos are listed in order and the cover can be chosen")
+    void givenUploadedPhotos_whenSetCoverImage_thenGalleryHasNewCover() throws Exception {
+        // Arrange
+        User host = new User();
+        host.setEmail("host@example.com");
+        host.setHost(true);
+        host.setPassword("password");
+        userRepository.save(host);
+        Property property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+        for (String name : List.of("uno.jpg", "dos.jpg")) {
+            mvc.perform(MockMvcRequestBuilders.multipart("/property/uploadPhoto/" + property.getId())
+                .file(new MockMultipartFile("photo", name, "image/jpeg", "fake-image-content".getBytes())))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        }
+
+        String body = mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId()))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images.length()").value(2))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[0].displayOrder").value(0))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[0].cover").value(true))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[1].cover").value(false))
+            .andReturn().getResponse().getContentAsString();
+        Integer secondImageId = JsonPath.read(body, "$.images[1].imageId");
+
+        // Act
+        mvc.perform(MockMvcRequestBuilders.put("/property/" + property.getId() + "/cover/" + secondImageId))
+            .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mvc.perform(MockMvcRequestBuilders.put("/property/" + property.getId() + "/cover/" + secondImageId)
+            .header(JWTAuthorizationFilter.HEADER, bearer("host@example.com")))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId()))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[0].cover").value(false))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[1].cover").value(true));
+        mvc.perform(MockMvcRequestBuilders.put("/property/" + property.getId() + "/cover/999")
+            .header(JWTAuthorizationFilter.HEADER, bearer("host@example.com")))
+            .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    // 9.2 Caso de éxito: Los ids separados por coma se migran a la galeria
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test that the legacy comma separated image ids are moved to the gallery")
+    void givenLegacyImageIds_whenMigrate_thenGalleryKeepsOrder() throws Exception {
+        // Arrange
+        Property property = new Property();
+        property.setName("Finca Bella");
+        property.setImageIds("7,5");
+        propertyRepository.save(property);
+
+        // Act
+        propertyImageMigration.migrate();
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId()))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images.length()").value(2))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[0].imageId").value(7))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images[1].imageId").value(5))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.imageIds").doesNotExist());
+        assertEquals(0, propertyRepository.findLegacyImageIdsAfter(0L, PageRequest.ofSize(10)).size());
+    }
+
+    // 9.3 Caso de éxito: Una galeria leida antes de la migracion no queda en la cache
+    @Test
+    @DirtiesContext
+    @Description("Test that the migration moves every chunk and evicts the galleries read before it")
+    void givenCachedPropertiesWithLegacyImageIds_whenMigrate_thenGalleriesReadAgain() throws Exception {
+        // Arrange
+        Property first = new Property();
+        first.setName("Finca Uno");
+        first.setMunicipality("Cali");
+        first.setImageIds("7");
+        propertyRepository.save(first);
+        Property second = new Property();
+        second.setName("Finca Dos");
+        second.setMunicipality("Cali");
+        second.setImageIds("8,9");
+        propertyRepository.save(second);
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + second.getId()))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images.length()").value(0));
+
+        // Act
+        int migrated = propertyImageMigration.migrate();
+
+        // Assert
+        assertEquals(2, migrated);
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + second.getId()))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.images.length()").value(2));
+        assertEquals(0, propertyImageMigration.migrate());
+    }
+
     // 10. Caso de error: Subir una foto a una propiedad con ID inexistente
     @Test
     @DirtiesContext
@@ -351,6 +647,360 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].name").value("Finca La Esperanza"));
     }
 
+    // 11.1 Caso de éxito: Obtener las propiedades paginadas por cursor
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test to get the properties page by page following the next cursor")
+    void givenThreeProperties_whenGetPropertiesPage_thenReturnPagesWithCursor() throws Exception {
+        // Arrange
+        for (int i = 1; i <= 3; i++) {
+            Property property = new Property();
+            property.setName("Finca " + i);
+            property.setPricePerNight(100.0 * (4 - i));
+            propertyRepository.save(property);
+        }
+
+        // Act
+        String firstPage = mvc.perform(MockMvcRequestBuilders.get("/property/page")
+                .param("size", "2")
+                .param("sort", "price"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca 3"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].name").value("Finca 2"))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/page")
+                .param("size", "2")
+                .param("sort", "price")
+                .param("cursor", cursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca 1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test that the price pages end with the properties without price instead of skipping them")
+    void givenPropertiesWithoutPrice_whenGetPropertiesPageByPrice_thenTheyComeLast() throws Exception {
+        // Arrange
+        Double[] prices = {100.0, null, null, 50.0};
+        for (int i = 0; i < prices.length; i++) {
+            Property property = new Property();
+            property.setName("Finca " + (i + 1));
+            property.setPricePerNight(prices[i]);
+            propertyRepository.save(property);
+        }
+
+        // Act
+        String firstPage = mvc.perform(MockMvcRequestBuilders.get("/property/page")
+                .param("size", "3")
+                .param("sort", "price"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca 4"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].name").value("Finca 1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[2].name").value("Finca 2"))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/page")
+                .param("size", "3")
+                .param("sort", "price")
+                .param("cursor", cursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca 3"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    // Disponibilidad: una solicitud aprobada ocupa las fechas hasta que se cancela.
+    // Sin transaccion de prueba, el indice se actualiza cuando se confirma cada cambio
+    @Test
+    @DirtiesContext
+    @Description("Test the availability search before and after the approved request is canceled")
+    void givenApprovedRequest_whenSearchAvailableProperties_thenTakenPropertyIsSkipped() throws Exception {
+        // Arrange
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        Property taken = new Property();
+        taken.setName("Finca Ocupada");
+        taken.setAvailable(true);
+        propertyRepository.save(taken);
+        Property free = new Property();
+        free.setName("Finca Libre");
+        free.setAvailable(true);
+        propertyRepository.save(free);
+
+        RentalRequest request = new RentalRequest();
+        request.setProperty(taken);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(10));
+        request.setDepartureDate(LocalDate.now().plusDays(15));
+        rentalRequestRepository.save(request);
+        rentalRequestService.approveRequest(request.getId());
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/available")
+                .param("arrivalDate", LocalDate.now().plusDays(12).toString())
+                .param("departureDate", LocalDate.now().plusDays(20).toString()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca Libre"));
+
+        // La fecha de salida queda libre para la siguiente llegada
+        mvc.perform(MockMvcRequestBuilders.get("/property/available")
+                .param("arrivalDate", LocalDate.now().plusDays(15).toString())
+                .param("departureDate", LocalDate.now().plusDays(20).toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(2));
+
+        rentalRequestService.cancelRequest(request.getId());
+        mvc.perform(MockMvcRequestBuilders.get("/property/available")
+                .param("arrivalDate", LocalDate.now().plusDays(12).toString())
+                .param("departureDate", LocalDate.now().plusDays(20).toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(2));
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/available")
+                .param("arrivalDate", LocalDate.now().plusDays(20).toString())
+                .param("departureDate", LocalDate.now().plusDays(12).toString()))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    // Calendario: las noches ocupadas de varias propiedades en una sola llamada
+    @Test
+    @DirtiesContext
+    @Description("Test the calendars of two properties where one has an approved request across the new year")
+    void givenApprovedRequest_whenGetCalendars_thenTakenNightsListed() throws Exception {
+        // Arrange
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        Property taken = new Property();
+        taken.setName("Finca Ocupada");
+        propertyRepository.save(taken);
+        Property free = new Property();
+        free.setName("Finca Libre");
+        propertyRepository.save(free);
+
+        LocalDate newYear = LocalDate.of(LocalDate.now().getYear() + 1, 1, 1);
+        RentalRequest request = new RentalRequest();
+        request.setProperty(taken);
+        request.setRequester(renter);
+        request.setArrivalDate(newYear.minusDays(2));
+        request.setDepartureDate(newYear.plusDays(1));
+        rentalRequestRepository.save(request);
+        rentalRequestService.approveRequest(request.getId());
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/calendar")
+                .param("propertyIds", taken.getId() + "," + free.getId())
+                .param("from", newYear.minusDays(5).toString())
+                .param("to", newYear.plusDays(5).toString()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].propertyId").value(taken.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].takenDays.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].takenDays[0]").value(newYear.minusDays(2).toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].takenDays[2]").value(newYear.toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].takenDays.length()").value(0));
+
+        rentalRequestService.rejectRequest(request.getId());
+        mvc.perform(MockMvcRequestBuilders.get("/property/calendar")
+                .param("propertyIds", taken.getId().toString())
+                .param("from", newYear.minusDays(5).toString())
+                .param("to", newYear.plusDays(5).toString()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].takenDays.length()").value(0));
+    }
+
+    // Calendario: la ventana no puede empezar antes de hoy
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test that a calendar window starting before today is rejected")
+    void givenWindowStartingYesterday_whenGetCalendars_thenBadRequest() throws Exception {
+        // Arrange
+        Property property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+        LocalDate today = LocalDate.now();
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/calendar")
+                .param("propertyIds", property.getId().toString())
+                .param("from", today.minusDays(1).toString())
+                .param("to", today.plusDays(5).toString()))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.get("/property/calendar")
+                .param("propertyIds", property.getId().toString())
+                .param("from", today.toString())
+                .param("to", today.plusDays(5).toString()))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    // Facetas: los conteos de cada faceta aplican los filtros de las demas
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test the facet counts with a filter and after a property is deactivated")
+    void givenAvailableProperties_whenGetFacets_thenCountsByFacetValue() throws Exception {
+        // Arrange
+        Long deactivatedId = null;
+        for (String municipality : List.of("Bogota", "Bogota", "Medellin")) {
+            Property property = new Property();
+            property.setName("Finca " + municipality);
+            property.setMunicipality(municipality);
+            property.setDepartment(municipality.equals("Bogota") ? "Cundinamarca" : "Antioquia");
+            property.setAmountOfResidents(4);
+            property.setPricePerNight(municipality.equals("Bogota") ? 150.0 : 600.0);
+            property.setHasPool(municipality.equals("Medellin"));
+            property.setAvailable(true);
+            propertyRepository.save(property);
+            deactivatedId = property.getId();
+        }
+        Property unavailable = new Property();
+        unavailable.setMunicipality("Cali");
+        propertyRepository.save(unavailable);
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/facets"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.municipality.Bogota").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.municipality.Cali").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.residents['3-4']").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.price['500+']").value(1));
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/facets").param("municipality", "Bogota"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.municipality.Medellin").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.department.Antioquia").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.pool.false").value(2));
+
+        mvc.perform(MockMvcRequestBuilders.delete("/property/" + deactivatedId))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/property/facets").param("pool", "true"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.facets.municipality.Medellin").doesNotExist());
+    }
+
+    // Exportacion: se guarda sin transaccion para que el hilo asincrono de la respuesta vea las propiedades
+    @Test
+    @DirtiesContext
+    @Description("Test to export all the properties as NDJSON over several batches")
+    void givenThreeProperties_whenExportProperties_thenOneLinePerProperty() throws Exception {
+        // Arrange
+        for (String name : List.of("Finca Uno", "Finca Dos", "Finca Tres")) {
+            Property property = new Property();
+            property.setName(name);
+            property.setMunicipality("Bogota");
+            propertyRepository.save(property);
+        }
+
+        // Act
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/property/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = body.trim().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("Finca Uno", JsonPath.read(lines[0], "$.name"));
+        assertEquals("Finca Tres", JsonPath.read(lines[2], "$.name"));
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test to export all the properties as a single JSON array")
+    void givenThreeProperties_whenExportPropertiesAsJson_thenReturnArray() throws Exception {
+        // Arrange
+        for (String name : List.of("Finca Uno", "Finca Dos", "Finca Tres")) {
+            Property property = new Property();
+            property.setName(name);
+            propertyRepository.save(property);
+        }
+
+        // Act
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/property/export").param("format", "json"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].name").value("Finca Dos"));
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test to export the properties with a format that is not supported")
+    void givenInvalidFormat_whenExportProperties_thenBadRequest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/property/export").param("format", "xml"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    // 11.2 Caso de error: Obtener las propiedades paginadas con un cursor invalido
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test to get a properties page with a cursor that was not generated by the server")
+    void givenInvalidCursor_whenGetPropertiesPage_thenBadRequest() throws Exception {
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/page")
+                .param("cursor", "not-a-cursor"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    // 11.3 Caso de éxito: Buscar propiedades combinando varios filtros
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test to search properties combining municipality, residents, price and pool filters")
+    void givenSeveralFilters_whenSearchProperties_thenReturnOnlyMatchingProperties() throws Exception {
+        // Arrange
+        Property matching = new Property();
+        matching.setName("Finca Bella");
+        matching.setMunicipality("Bogota");
+        matching.setAmountOfResidents(8);
+        matching.setPricePerNight(200.0);
+        matching.setHasPool(true);
+        propertyRepository.save(matching);
+
+        Property withoutPool = new Property();
+        withoutPool.setName("Finca Seca");
+        withoutPool.setMunicipality("Bogota");
+        withoutPool.setAmountOfResidents(8);
+        withoutPool.setPricePerNight(200.0);
+        propertyRepository.save(withoutPool);
+
+        Property tooExpensive = new Property();
+        tooExpensive.setName("Finca Cara");
+        tooExpensive.setMunicipality("Bogota");
+        tooExpensive.setAmountOfResidents(8);
+        tooExpensive.setPricePerNight(900.0);
+        tooExpensive.setHasPool(true);
+        propertyRepository.save(tooExpensive);
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/search")
+                .param("municipality", "Bogota")
+                .param("minResidents", "6")
+                .param("maxPrice", "500")
+                .param("hasPool", "true"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Finca Bella"));
+    }
+
     // Arrendatario
 
     // 12. Caso de éxito: Obtener todas las propiedades de un municipio aleatorio
@@ -364,12 +1014,14 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
         property1.setName("Finca Bella");
         property1.setDescription("Hermosa finca");
         property1.setMunicipality("Bogota");
+        property1.setAvailable(true);
         propertyRepository.save(property1);
 
         Property property2 = new Property();
         property2.setName("Finca La Esperanza");
         property2.setDescription("Finca en el campo");
         property2.setMunicipality("Bogota");
+        property2.setAvailable(true);
         propertyRepository.save(property2);
 
         // Act & Assert
@@ -381,6 +1033,36 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].municipality").value("Bogota"));
     }
 
+    // 12.1 Caso de éxito: El municipio aleatorio solo se sortea entre propiedades disponibles
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test that the random municipality is never taken from a deactivated property")
+    void givenDeactivatedProperty_whenGetPropertiesByRandomMunicipality_thenMunicipalityNotSampled() throws Exception {
+        // Arrange
+        Property available = new Property();
+        available.setName("Finca Bella");
+        available.setMunicipality("Bogota");
+        available.setAvailable(true);
+        propertyRepository.save(available);
+
+        Property deactivated = new Property();
+        deactivated.setName("Finca Cerrada");
+        deactivated.setMunicipality("Medellin");
+        deactivated.setAvailable(true);
+        propertyRepository.save(deactivated);
+
+        mvc.perform(MockMvcRequestBuilders.delete("/property/" + deactivated.getId()))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+
+        // Act & Assert
+        for (int i = 0; i < 10; i++) {
+            mvc.perform(MockMvcRequestBuilders.get("/property/random-municipality"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].municipality").value("Bogota"));
+        }
+    }
+
     // 13. Caso de éxito: Obtener todas las propiedades que coincidan con un nombre en especifico
     @Test
     @DirtiesContext
@@ -513,6 +1195,32 @@ void givenInvalidData_whenCreateProperty_thenBadRequest() throws Exception {
                 .andExpect(MockMvcResultMatchers.status().isNotFound())  // Debe devolver 404 Not Found
                 .andExpect(MockMvcResultMatchers.content().string("Propiedades con cantidad de residentes 999 no fueron encontradas"));  // Verifica el mensaje
     }
-}
 
-    
\ No newline at end of file
+    @Test
+    @DirtiesContext
+    @Transactional
+    @Description("Test to quote a stay in a property")
+    void givenPropertyWithPrice_whenQuote_thenAmountOfTheNights() throws Exception {
+        // Arrange
+        Property property = new Property();
+        property.setName("Finca Bella");
+        property.setPricePerNight(120.0);
+        property.setAmountOfResidents(4);
+        propertyRepository.save(property);
+
+        // Act & Assert
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId() + "/quote")
+                .param("arrivalDate", "2030-03-01")
+                .param("departureDate", "2030-03-04")
+                .param("amountOfResidents", "3"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nights").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.amount").value(360.0));
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + property.getId() + "/quote")
+                .param("arrivalDate", "2030-03-01")
+                .param("departureDate", "2030-03-04")
+                .param("amountOfResidents", "5"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+}
@@ -0,0 +1,210 @@
+package com.gossip.arrienda_tu_finca.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestSearchDTO;
+import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.repositories.CommentRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+import com.gossip.arrienda_tu_finca.services.RentalRequestService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks that the read endpoints run a fixed amount of queries no matter how many rows they return.
+ * Property reads run the projected query plus one batched query for the images of all the properties,
+ * the rental request reads load the associations of their use case in the same query
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+    classes = ArriendaTuFincaApplication.class
+)
+@AutoConfigureMockMvc
+@TestPropertySource(
+    locations = "classpath:application-test.properties",
+    // Las estadisticas de Hibernate cuentan las sentencias SQL de los endpoints de lectura
+    properties = "spring.jpa.properties.hibernate.generate_statistics=true"
+)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+class TestReadStatementCount {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long propertyId;
+    private Long hostId;
+    private Long requestId;
+
+    @BeforeEach
+    void setUp() {
+        rentalRequestRepository.deleteAllInBatch();
+        commentRepository.deleteAllInBatch();
+        propertyRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        renter.setRenter(true);
+        userRepository.save(renter);
+
+        // Three hosts with a property each, an entity read path would load every owner
+        for (int i = 1; i <= 3; i++) {
+            User host = new User();
+            host.setEmail("host" + i + "@example.com");
+            host.setHost(true);
+            userRepository.save(host);
+            hostId = host.getId();
+
+            Property property = new Property();
+            property.setName("Finca " + i);
+            property.setMunicipality("Bogota");
+            property.setPricePerNight(100.0 * i);
+            property.setOwner(host);
+            propertyRepository.save(property);
+            propertyId = property.getId();
+
+            // Cada solicitud tiene una reseña de un autor distinto, leer los autores uno a uno costaria una consulta por reseña
+            RentalRequest request = new RentalRequest();
+            request.setProperty(property);
+            request.setRequester(renter);
+            request.setRenterComment(commentRepository.save(new Comment(null, "Buen arrendatario", i, host)));
+            request.setPropertyComment(commentRepository.save(new Comment(null, "Buena finca", i, renter)));
+            rentalRequestRepository.save(request);
+            requestId = request.getId();
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the property read endpoints run two statements each")
+    void givenProperties_whenReadPropertyEndpoints_thenTwoStatementsPerEndpoint() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/property/" + propertyId))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        assertStatements(2);
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/page"))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(3));
+        assertStatements(2);
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/search").param("municipality", "Bogota"))
+            .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(3));
+        assertStatements(2);
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/municipality/Bogota"))
+            .andExpect(MockMvcResultMatchers.jsonPath("$[2].ownerEmail").value("host3@example.com"));
+        assertStatements(2);
+
+        mvc.perform(MockMvcRequestBuilders.get("/property/residents/0"))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        assertStatements(2);
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the user information endpoint runs one statement")
+    void givenUser_whenGetUserInfo_thenOneStatement() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/user/info/" + hostId))
+            .andExpect(MockMvcResultMatchers.status().isOk());
+        assertStatements(1);
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the rental request listings run one statement each")
+    void givenRequests_whenGetRentalRequestListings_thenOneStatementPerListing() {
+        assertEquals(3, rentalRequestService.getRequestsByRenter("renter@example.com").size());
+        assertStatements(1);
+
+        assertEquals(1, rentalRequestService.getRequestsByHost("host3@example.com").size());
+        assertStatements(1);
+
+        assertEquals(1, rentalRequestService.getRequestsByProperty(propertyId).size());
+        assertStatements(1);
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the paginated rental request listings run one statement each")
+    void givenRequests_whenGetRentalRequestPages_thenOneStatementPerPage() {
+        assertEquals(3, rentalRequestService.getRequestsPageByRenter("renter@example.com", new RentalRequestSearchDTO(), null, null, "newest").getSize());
+        assertStatements(1);
+
+        assertEquals(1, rentalRequestService.getRequestsPageByHost("host3@example.com", new RentalRequestSearchDTO(), null, null, "newest").getSize());
+        assertStatements(1);
+
+        assertEquals(1, rentalRequestService.getRequestsPageByProperty(propertyId, new RentalRequestSearchDTO(), null, null, "oldest").getSize());
+        assertStatements(1);
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the review listings read the comments and their authors in one statement")
+    void givenComments_whenGetCommentListings_thenOneStatementPerListing() {
+        assertEquals(3, rentalRequestService.getRenterComments("renter@example.com").size());
+        assertStatements(1);
+
+        assertEquals("renter@example.com", rentalRequestService.getPropertyComments(propertyId).get(0).getAuthorEmail());
+        assertStatements(1);
+    }
+
+    @Test
+    @DirtiesContext
+    @Description("Test that the fetch plans of the detail and the review load their associations in one statement")
+    void givenRequest_whenLoadWithFetchPlan_thenOneStatement() {
+        RentalRequest detail = rentalRequestRepository.findDetailById(requestId).get();
+        assertEquals(propertyId, detail.getProperty().getId());
+        assertEquals("renter@example.com", detail.getRequester().getEmail());
+        assertStatements(1);
+
+        RentalRequest review = rentalRequestRepository.findForReviewById(requestId).get();
+        assertEquals("host3@example.com", review.getProperty().getOwner().getEmail());
+        assertEquals("renter@example.com", review.getRequester().getEmail());
+        assertStatements(1);
+    }
+
+    private void assertStatements(long expected) {
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        statistics.clear();
+    }
+}
@@ -26,10 +26,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
 import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.PaymentStatus;
 import com.gossip.arrienda_tu_finca.entities.Property;
 import com.gossip.arrienda_tu_finca.entities.RentalRequest;
 import com.gossip.arrienda_tu_finca.entities.User;
 import com.gossip.arrienda_tu_finca.repositories.CommentRepository;
+import com.gossip.arrienda_tu_finca.repositories.PaymentRepository;
 import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
 import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
 import com.gossip.arrienda_tu_finca.repositories.UserRepository;
@@ -59,6 +61,8 @@ class TestRentalRequestController {
     private UserRepository userRepository;
     @Autowired
     private CommentRepository commentRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
 
     @BeforeEach
     @Transactional
@@ -297,12 +301,11 @@ class TestRentalRequestController {
         // Act
         mvc.perform(put("/rental-requests/pay/" + id)
             .contentType(MediaType.APPLICATION_JSON))
-            .andExpect(status().isOk());
+            .andExpect(status().isAccepted());
 
         // Assert
-        List<RentalRequest> rentalRequests = rentalRequestRepository.findAll();
-        assertEquals(1, rentalRequests.size());
-        assertEquals(true, rentalRequests.get(0).isPaid());
+        // La solicitud queda pagada cuando la pasarela confirma el cobro
+        assertEquals(PaymentStatus.QUEUED, paymentRepository.findFirstByRequestIdOrderByIdDesc(id).get().getStatus());
     }
 
     @Test
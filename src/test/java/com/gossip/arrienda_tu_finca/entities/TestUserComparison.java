@@ -29,12 +29,12 @@ class TestUserComparison {
     private static Stream<Arguments> provideUsersForEquality() {
         return Stream.of(
             Arguments.of(
-                new User(1L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, null),
-                new User(2L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, null)
+                new User(1L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, new RatingAggregate(), new RatingAggregate(), null),
+                new User(2L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, new RatingAggregate(), new RatingAggregate(), null)
             ),
             Arguments.of(
-                new User(2L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, null),
-                new User(3L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, null)
+                new User(2L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, new RatingAggregate(), new RatingAggregate(), null),
+                new User(3L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, new RatingAggregate(), new RatingAggregate(), null)
             ),
             Arguments.of(
                 new User(),
@@ -57,11 +57,11 @@ class TestUserComparison {
     private static Stream<Arguments> provideUsersForInequality() {
         return Stream.of(
             Arguments.of(
-                new User(1L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, null),
-                new User(2L, "notjane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, null)
+                new User(1L, "jane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, new RatingAggregate(), new RatingAggregate(), null),
+                new User(2L, "notjane@ex.com", "Jane", "Smith", "password123", "987654321", false, 0D, true, 0D, 0, new RatingAggregate(), new RatingAggregate(), null)
             ),
             Arguments.of(
-                new User(1L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, null),
+                new User(1L, "john@ex.com", "John", "Doe", "password", "123456789", true, 0D, false, 0D, 0, new RatingAggregate(), new RatingAggregate(), null),
                 new User()
             )
         );
@@ -0,0 +1,121 @@
+package com.gossip.arrienda_tu_finca.mappers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.context.annotation.Description;
+
+import com.gossip.arrienda_tu_finca.dto.ChangeUserInfoDTO;
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyCreateDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyUpdateDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestCreateDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.dto.UserDTO;
+import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RatingAggregate;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+
+/**
+ * Checks that the hand written mappers give the same result the ModelMapper did
+ */
+class TestDtoMappers {
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final PropertyMapper propertyMapper = new PropertyMapper();
+    private final RentalRequestMapper rentalRequestMapper = new RentalRequestMapper();
+    private final CommentMapper commentMapper = new CommentMapper();
+    private final UserMapper userMapper = new UserMapper();
+
+    static User sampleUser() {
+        return new User(7L, "host@example.com", "Host", "User", "secret", "3001234567", true, 4.5, false, 0, 12, new RatingAggregate(), new RatingAggregate(), null);
+    }
+
+    static Property sampleProperty() {
+        return new Property(3L, "Finca Bella", "Hermosa finca", "Bogota", "Cundinamarca", "Carretera", "Km 5", "www.finca.com",
+                true, 250.0, 4, 2, 8, true, false, true, "1,2", 4.0, new RatingAggregate(), sampleUser());
+    }
+
+    static RentalRequest sampleRequest() {
+        RentalRequest request = new RentalRequest();
+        request.setId(9L);
+        request.setProperty(sampleProperty());
+        request.setRequester(sampleUser());
+        request.setRequestDateTime(LocalDateTime.of(2024, 10, 1, 12, 0));
+        request.setArrivalDate(LocalDate.of(2024, 11, 1));
+        request.setDepartureDate(LocalDate.of(2024, 11, 5));
+        request.setAmountOfResidents(4);
+        request.setAmount(1000.0);
+        request.setApproved(true);
+        request.setPaid(true);
+        request.setBank("Banco");
+        request.setAccountNumber(1234);
+        return request;
+    }
+
+    @Test
+    @Description("Test the property mappings against ModelMapper")
+    void givenProperty_whenMap_thenSameAsModelMapper() {
+        Property property = sampleProperty();
+        assertEquals(modelMapper.map(property, PropertyDTO.class), propertyMapper.toDTO(property));
+
+        PropertyCreateDTO create = new PropertyCreateDTO("Finca", "Desc", "Bogota", "Cundinamarca", "Carretera", "Km 5", "www.finca.com",
+                150.0, 3, 2, 6, true, false, true, "owner@example.com");
+        assertThat(propertyMapper.toEntity(create)).usingRecursiveComparison().ignoringFields("owner")
+                .isEqualTo(modelMapper.map(create, Property.class));
+
+        PropertyUpdateDTO update = new PropertyUpdateDTO("Nueva", null, "Medellin", "Antioquia", null, "Calle 1", null, 300.0, 5, 3, 10, false, true, false);
+        Property expected = sampleProperty();
+        Property actual = sampleProperty();
+        modelMapper.map(update, expected);
+        propertyMapper.updateEntity(update, actual);
+        assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    @Test
+    @Description("Test the rental request mappings against ModelMapper, property.id goes to propertyId")
+    void givenRentalRequest_whenMap_thenSameAsModelMapper() {
+        RentalRequest request = sampleRequest();
+        RentalRequestDto dto = rentalRequestMapper.toDTO(request);
+        assertThat(dto).usingRecursiveComparison().isEqualTo(modelMapper.map(request, RentalRequestDto.class));
+        assertEquals(3L, dto.getPropertyId());
+        assertEquals("host@example.com", dto.getRequesterEmail());
+
+        RentalRequestCreateDTO create = new RentalRequestCreateDTO("renter@example.com", LocalDate.of(2024, 11, 1), LocalDate.of(2024, 11, 5), 4);
+        RentalRequest mapped = rentalRequestMapper.toEntity(create);
+        RentalRequest reference = modelMapper.map(create, RentalRequest.class);
+        assertEquals(reference.getArrivalDate(), mapped.getArrivalDate());
+        assertEquals(reference.getDepartureDate(), mapped.getDepartureDate());
+        assertEquals(reference.getAmountOfResidents(), mapped.getAmountOfResidents());
+    }
+
+    @Test
+    @Description("Test the comment and user mappings against ModelMapper")
+    void givenCommentAndUser_whenMap_thenSameAsModelMapper() {
+        Comment comment = new Comment(1L, "Muy buena", 5, sampleUser());
+        CommentDTO reference = modelMapper.map(comment, CommentDTO.class);
+        CommentDTO dto = commentMapper.toDTO(comment);
+        assertThat(dto).usingRecursiveComparison().ignoringFields("authorEmail", "authorName").isEqualTo(reference);
+        // ModelMapper no relacionaba user con author y dejaba el autor en null, el mapper lo llena como la consulta de los comentarios
+        assertNull(reference.getAuthorEmail());
+        assertNull(reference.getAuthorName());
+        assertEquals("host@example.com", dto.getAuthorEmail());
+        assertEquals("Host User", dto.getAuthorName());
+        assertThat(commentMapper.toDTO(new Comment(2L, "Sin autor", 3, null))).usingRecursiveComparison()
+                .isEqualTo(modelMapper.map(new Comment(2L, "Sin autor", 3, null), CommentDTO.class));
+
+        UserDTO userDTO = new UserDTO("renter@example.com", "Renter", "User", "Password1$", "300", false, true);
+        assertThat(userMapper.toEntity(userDTO)).usingRecursiveComparison().isEqualTo(modelMapper.map(userDTO, User.class));
+
+        ChangeUserInfoDTO change = new ChangeUserInfoDTO("renter@example.com", "Renter", "User", "300", true, true);
+        assertThat(userMapper.toEntity(change)).usingRecursiveComparison().isEqualTo(modelMapper.map(change, User.class));
+    }
+}
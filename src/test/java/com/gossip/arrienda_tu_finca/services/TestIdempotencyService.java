@@ -0,0 +1,253 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Description;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.CacheConfig;
+import com.gossip.arrienda_tu_finca.entities.IdempotencyRecord;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.IdempotencyKeyReusedException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPaymentException;
+import com.gossip.arrienda_tu_finca.repositories.IdempotencyRecordRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestIdempotencyService {
+    private static final String RENTER = "renter@example.com";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private static String sha256(String value) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ResponseEntity<String> counted(AtomicInteger executions) {
+        executions.incrementAndGet();
+        return new ResponseEntity<>("Ejecucion " + executions.get(), HttpStatus.OK);
+    }
+
+    @Test
+    @Description("Test that a retry with the same key gets the first response from memory or from the table without running again")
+    void givenSameKey_whenRetried_thenFirstResponseReplayed() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        ResponseEntity<String> first = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+
+        // Act
+        ResponseEntity<String> fromMemory = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+        cacheManager.getCache(CacheConfig.IDEMPOTENT_RESPONSES).clear();
+        ResponseEntity<String> fromTable = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+        ResponseEntity<String> otherOperation = idempotencyService.execute("pay", RENTER, "llave-1", 7L, () -> counted(executions));
+
+        // Assert
+        assertEquals(2, executions.get());
+        assertEquals("Ejecucion 1", first.getBody());
+        assertEquals(first.getBody(), fromMemory.getBody());
+        assertEquals(first.getBody(), fromTable.getBody());
+        assertEquals("Ejecucion 2", otherOperation.getBody());
+        assertTrue(idempotencyRecordRepository.existsById(idempotencyService.idOf("create", RENTER, "llave-1")));
+    }
+
+    @Test
+    @Description("Test that a key used again with another request is rejected and that an error is not saved")
+    void givenReusedKeyOrError_whenExecuted_thenRejectedOrRunAgain() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+
+        // Act
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> idempotencyService.execute("create", RENTER, "llave-1", 8L, () -> counted(executions)));
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("create", RENTER, "llave-2", 7L, () -> {
+            throw new IllegalStateException("Falla temporal");
+        }));
+        ResponseEntity<String> afterError = idempotencyService.execute("create", RENTER, "llave-2", 7L, () -> counted(executions));
+
+        // Assert
+        assertEquals("Ejecucion 2", afterError.getBody());
+    }
+
+    @Test
+    @Description("Test that a duplicate that arrives while the first execution runs waits for it instead of running twice")
+    void givenConcurrentDuplicates_whenExecuted_thenRunOnce() throws Exception {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        Future<ResponseEntity<String>> first = executor.submit(() -> idempotencyService.execute("pay", RENTER, "llave-1", 7L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return counted(executions);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<ResponseEntity<String>> duplicate = executor.submit(() -> idempotencyService.execute("pay", RENTER, "llave-1", 7L,
+                () -> counted(executions)));
+        Thread.sleep(200);
+        release.countDown();
+
+        // Assert
+        assertEquals("Ejecucion 1", first.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals("Ejecucion 1", duplicate.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    @Description("Test that when another instance commits the same key first, its response is replayed and ours is rolled back")
+    void givenKeySavedByOtherInstance_whenExecuted_thenOtherResponseReplayed() throws NoSuchAlgorithmException {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        TransactionTemplate otherInstance = new TransactionTemplate(transactionManager);
+        otherInstance.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        String requestHash = sha256("create7");
+        String id = idempotencyService.idOf("create", RENTER, "llave-1");
+
+        // Act
+        ResponseEntity<String> response = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> {
+            // La otra instancia confirma la misma llave mientras esta ejecucion aun corre
+            otherInstance.executeWithoutResult(status -> idempotencyRecordRepository.insert(new IdempotencyRecord(id,
+                    requestHash, 200, "Respuesta de la otra instancia", LocalDateTime.now().plusHours(1))));
+            User duplicate = new User();
+            duplicate.setEmail("duplicado@example.com");
+            userRepository.save(duplicate);
+            return counted(executions);
+        });
+
+        // Assert
+        assertEquals("Respuesta de la otra instancia", response.getBody());
+        assertEquals("Respuesta de la otra instancia", idempotencyRecordRepository.findById(id).get().getBody());
+        assertFalse(userRepository.existsByEmail("duplicado@example.com"));
+    }
+
+    @Test
+    @Description("Test that a response read from the table stays in memory only until its record expires")
+    void givenRecordAboutToExpire_whenRetriedAfterExpiry_thenRunAgain() throws Exception {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        String requestHash = sha256("create7");
+        String id = idempotencyService.idOf("create", RENTER, "llave-1");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> idempotencyRecordRepository.insert(
+                new IdempotencyRecord(id, requestHash, 200, "Respuesta guardada", LocalDateTime.now().plusSeconds(1))));
+
+        // Act
+        ResponseEntity<String> beforeExpiry = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+        Thread.sleep(1500);
+        ResponseEntity<String> afterExpiry = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+
+        // Assert
+        assertEquals("Respuesta guardada", beforeExpiry.getBody());
+        assertEquals("Ejecucion 1", afterExpiry.getBody());
+        assertEquals("Ejecucion 1", idempotencyRecordRepository.findById(id).get().getBody());
+    }
+
+    @Test
+    @Description("Test that two users sending the same key each run their own operation")
+    void givenSameKeyFromOtherUser_whenExecuted_thenRunAgain() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+        ResponseEntity<String> first = idempotencyService.execute("create", RENTER, "llave-1", 7L, () -> counted(executions));
+
+        // Act
+        ResponseEntity<String> otherUser = idempotencyService.execute("create", "otro@example.com", "llave-1", 7L,
+                () -> counted(executions));
+
+        // Assert
+        assertEquals(2, executions.get());
+        assertEquals("Ejecucion 1", first.getBody());
+        assertEquals("Ejecucion 2", otherUser.getBody());
+    }
+
+    @Test
+    @Description("Test that paying again with the same key returns the first response instead of the already paid error")
+    void givenPaidWithKey_whenRetried_thenSameResponse() {
+        // Arrange
+        User renter = new User();
+        renter.setEmail(RENTER);
+        userRepository.save(renter);
+        Property property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(3));
+        request.setDepartureDate(LocalDate.now().plusDays(5));
+        request.setApproved(true);
+        Long requestId = rentalRequestRepository.save(request).getId();
+
+        // Act
+        ResponseEntity<String> first = idempotencyService.execute("pay", RENTER, "llave-1", requestId, () -> {
+            rentalRequestService.payRequest(requestId);
+            return new ResponseEntity<>("Solicitud de arriendo pagada", HttpStatus.OK);
+        });
+        ResponseEntity<String> retry = idempotencyService.execute("pay", RENTER, "llave-1", requestId, () -> {
+            rentalRequestService.payRequest(requestId);
+            return new ResponseEntity<>("Solicitud de arriendo pagada", HttpStatus.OK);
+        });
+
+        // Assert
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertTrue(rentalRequestRepository.findById(requestId).get().isPaid());
+        assertThrows(InvalidPaymentException.class, () -> rentalRequestService.payRequest(requestId));
+    }
+}
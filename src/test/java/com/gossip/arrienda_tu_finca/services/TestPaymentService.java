@@ -0,0 +1,315 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.PaymentDTO;
+import com.gossip.arrienda_tu_finca.dto.PaymentStatusDTO;
+import com.gossip.arrienda_tu_finca.entities.PaymentStatus;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidCallbackSignatureException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPaymentException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentGatewayUnavailableException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentNotFoundException;
+import com.gossip.arrienda_tu_finca.exceptions.PaymentQueueFullException;
+import com.gossip.arrienda_tu_finca.repositories.PaymentRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "arrienda.payments.workers=4", "arrienda.payments.queue-capacity=8", "arrienda.payments.max-attempts=5",
+        "arrienda.payments.retry-base-delay=PT0.01S", "arrienda.payments.poll-delay=PT0.2S", "arrienda.payments.max-polls=3",
+        "arrienda.payments.simulated.latency=PT0.02S", "arrienda.payments.simulated.failure-rate=0",
+        "arrienda.payments.callback-secret=secreto-de-prueba"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestPaymentService {
+    private static final Duration LATENCY = Duration.ofMillis(20);
+    private static final Logger logger = LoggerFactory.getLogger(TestPaymentService.class);
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private SimulatedPaymentGateway simulatedPaymentGateway;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Property property;
+    private User renter;
+
+    @BeforeEach
+    void setUp() {
+        User host = new User();
+        host.setEmail("host@example.com");
+        userRepository.save(host);
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        property.setOwner(host);
+        propertyRepository.save(property);
+    }
+
+    private Long approvedRequest() {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(3));
+        request.setDepartureDate(LocalDate.now().plusDays(5));
+        request.setAmount(300.0);
+        request.setApproved(true);
+        return rentalRequestRepository.save(request).getId();
+    }
+
+    private PaymentDTO paymentDto() {
+        return new PaymentDTO(2, "Banco de Bogota", 123456);
+    }
+
+    private PaymentStatus statusOf(Long requestId) {
+        return paymentRepository.findFirstByRequestIdOrderByIdDesc(requestId).get().getStatus();
+    }
+
+    private static void await(BooleanSupplier condition, long seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    @Description("Test that a payment is charged in the background and the request is paid only after the gateway confirms it")
+    void givenApprovedRequest_whenSubmitted_thenPaidOnConfirmation() throws InterruptedException {
+        // Arrange
+        Long requestId = approvedRequest();
+
+        // Act
+        PaymentStatusDTO queued = paymentService.submit(requestId, paymentDto());
+        PaymentStatusDTO again = paymentService.submit(requestId, paymentDto());
+
+        // Assert
+        assertEquals(PaymentStatus.QUEUED.name(), queued.getStatus());
+        assertEquals(queued.getPaymentId(), again.getPaymentId());
+        await(() -> statusOf(requestId) == PaymentStatus.CONFIRMED, 5);
+        assertTrue(rentalRequestRepository.findById(requestId).get().isPaid());
+        PaymentStatusDTO confirmed = paymentService.getStatus(requestId, "renter@example.com");
+        assertEquals("sim-" + queued.getPaymentId(), confirmed.getReference());
+        assertEquals(1, confirmed.getAttempts());
+        assertThrows(InvalidPaymentException.class, () -> paymentService.submit(requestId, paymentDto()));
+    }
+
+    @Test
+    @Description("Test that a request without an amount is rejected before its payment is queued")
+    void givenRequestWithoutAmount_whenSubmitted_thenRejected() {
+        // Arrange
+        Long requestId = approvedRequest();
+        RentalRequest request = rentalRequestRepository.findById(requestId).get();
+        request.setAmount(null);
+        rentalRequestRepository.save(request);
+
+        // Act
+        assertThrows(InvalidPaymentException.class, () -> paymentService.submit(requestId, paymentDto()));
+
+        // Assert
+        assertTrue(paymentRepository.findFirstByRequestIdOrderByIdDesc(requestId).isEmpty());
+    }
+
+    @Test
+    @Description("Test that a declined charge or one that keeps failing does not pay the request")
+    void givenDeclinedOrFailing_whenSubmitted_thenNotPaid() throws InterruptedException {
+        // Arrange
+        Long declinedId = approvedRequest();
+        Long failingId = approvedRequest();
+
+        // Act
+        simulatedPaymentGateway.configure(LATENCY, 0, 1, 0);
+        paymentService.submit(declinedId, paymentDto());
+        await(() -> statusOf(declinedId) == PaymentStatus.DECLINED, 5);
+        simulatedPaymentGateway.configure(LATENCY, 1, 0, 0);
+        paymentService.submit(failingId, paymentDto());
+
+        // Assert
+        await(() -> statusOf(failingId) == PaymentStatus.FAILED, 5);
+        assertEquals(5, paymentService.getStatus(failingId, "renter@example.com").getAttempts());
+        assertFalse(rentalRequestRepository.findById(declinedId).get().isPaid());
+        assertFalse(rentalRequestRepository.findById(failingId).get().isPaid());
+    }
+
+    @Test
+    @Description("Test that a pending charge is resolved by polling the gateway, or by its callback when polling fails")
+    void givenPendingCharge_whenPolledOrCallback_thenPaid() throws InterruptedException {
+        // Arrange
+        Long polledId = approvedRequest();
+        Long callbackId = approvedRequest();
+        simulatedPaymentGateway.configure(LATENCY, 0, 0, 1);
+
+        // Act
+        paymentService.submit(polledId, paymentDto());
+        await(() -> statusOf(polledId) == PaymentStatus.CONFIRMED, 5);
+        paymentService.submit(callbackId, paymentDto());
+        await(() -> statusOf(callbackId) == PaymentStatus.PENDING, 5);
+        // La pasarela deja de responder las consultas y el resultado llega por el callback
+        simulatedPaymentGateway.configure(LATENCY, 1, 0, 0);
+        PaymentStatusDTO afterCallback = paymentService.handleCallback(paymentService.getStatus(callbackId, "renter@example.com").getReference(),
+                PaymentGateway.Outcome.CONFIRMED, "Pago aprobado");
+
+        // Assert
+        assertTrue(rentalRequestRepository.findById(polledId).get().isPaid());
+        assertEquals(PaymentStatus.CONFIRMED.name(), afterCallback.getStatus());
+        assertTrue(rentalRequestRepository.findById(callbackId).get().isPaid());
+    }
+
+    @Test
+    @Description("Test that a callback without the signature of the gateway is rejected and a signed one is applied")
+    void givenPendingCharge_whenUnsignedCallback_thenRejected() throws InterruptedException {
+        // Arrange
+        Long requestId = approvedRequest();
+        simulatedPaymentGateway.configure(LATENCY, 0, 0, 1);
+        paymentService.submit(requestId, paymentDto());
+        await(() -> statusOf(requestId) == PaymentStatus.PENDING, 5);
+        simulatedPaymentGateway.configure(LATENCY, 1, 0, 0);
+        String payload = "{\"reference\":\"" + paymentService.getStatus(requestId, "renter@example.com").getReference()
+                + "\",\"outcome\":\"CONFIRMED\",\"message\":\"Pago aprobado\"}";
+
+        // Act
+        assertThrows(InvalidCallbackSignatureException.class, () -> paymentService.handleSignedCallback(payload, null));
+        assertThrows(InvalidCallbackSignatureException.class, () -> paymentService.handleSignedCallback(payload,
+                paymentService.sign(payload.replace("CONFIRMED", "DECLINED"))));
+        boolean paidBeforeSigned = rentalRequestRepository.findById(requestId).get().isPaid();
+        PaymentStatusDTO signed = paymentService.handleSignedCallback(payload, paymentService.sign(payload));
+
+        // Assert
+        assertFalse(paidBeforeSigned);
+        assertEquals(PaymentStatus.CONFIRMED.name(), signed.getStatus());
+        assertTrue(rentalRequestRepository.findById(requestId).get().isPaid());
+        assertThrows(PaymentNotFoundException.class, () -> paymentService.getStatus(requestId, "otro@example.com"));
+        assertEquals(signed.getPaymentId(), paymentService.getStatus(requestId, "host@example.com").getPaymentId());
+    }
+
+    @Test
+    @Description("Test that payments over the queue capacity are rejected until the queued ones finish")
+    void givenFullQueue_whenSubmitted_thenRejected() throws InterruptedException {
+        // Arrange
+        simulatedPaymentGateway.configure(Duration.ofSeconds(1), 0, 0, 0);
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            requestIds.add(approvedRequest());
+        }
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            paymentService.submit(requestIds.get(i), paymentDto());
+        }
+
+        // Assert
+        assertThrows(PaymentQueueFullException.class, () -> paymentService.submit(requestIds.get(8), paymentDto()));
+        await(() -> {
+            try {
+                paymentService.submit(requestIds.get(8), paymentDto());
+                return true;
+            } catch (PaymentQueueFullException e) {
+                return false;
+            }
+        }, 10);
+        assertEquals(PaymentStatus.CONFIRMED, statusOf(requestIds.get(0)));
+        await(() -> statusOf(requestIds.get(8)) == PaymentStatus.CONFIRMED, 10);
+    }
+
+    @Test
+    @Description("Test the throughput of the pipeline against the simulated gateway with transient failures")
+    void givenManyPayments_whenSubmitted_thenAllConfirmedInParallel() throws InterruptedException {
+        // Arrange
+        int payments = 200;
+        Duration latency = Duration.ofMillis(100);
+        simulatedPaymentGateway.configure(latency, 0.05, 0, 0);
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = 0; i < payments; i++) {
+            requestIds.add(approvedRequest());
+        }
+
+        // Act
+        long start = System.nanoTime();
+        for (Long requestId : requestIds) {
+            while (true) {
+                try {
+                    paymentService.submit(requestId, paymentDto());
+                    break;
+                } catch (PaymentQueueFullException e) {
+                    // Como un cliente que respeta Retry-After
+                    Thread.sleep(5);
+                }
+            }
+        }
+        await(() -> paymentRepository.findIdsByStatus(PaymentStatus.CONFIRMED).size() == payments, 60);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        logger.info("{} payments confirmed in {} ms, {} payments/s", payments, elapsedMillis, payments * 1000L / Math.max(elapsedMillis, 1));
+        assertTrue(rentalRequestRepository.findAll().stream().allMatch(RentalRequest::isPaid));
+        // Con 4 workers termina antes que cobrando los pagos uno por uno
+        assertTrue(elapsedMillis < payments * latency.toMillis());
+    }
+
+    @Test
+    @Description("Test that without a gateway the service starts, leaves the queued payments alone and rejects new payments")
+    void givenNoGateway_whenSubmitted_thenRejectedAsUnavailable() {
+        // Arrange
+        Long requestId = approvedRequest();
+        PaymentService withoutGateway = new PaymentService(paymentRepository, rentalRequestRepository, rentalRequestService,
+                new StaticListableBeanFactory().getBeanProvider(PaymentGateway.class), transactionManager, meterRegistry,
+                objectMapper, 1, 8, 1, Duration.ofMillis(10), Duration.ofMillis(10), 1, "secreto-de-prueba");
+
+        // Act
+        withoutGateway.resume();
+
+        // Assert
+        assertThrows(PaymentGatewayUnavailableException.class, () -> withoutGateway.submit(requestId, paymentDto()));
+        assertTrue(paymentRepository.findFirstByRequestIdOrderByIdDesc(requestId).isEmpty());
+        withoutGateway.shutdown();
+    }
+}
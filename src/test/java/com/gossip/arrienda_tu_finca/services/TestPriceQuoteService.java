@@ -0,0 +1,146 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.PriceQuoteDTO;
+import com.gossip.arrienda_tu_finca.dto.PropertyUpdateDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestCreateDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidAmountOfResidentsException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidDateException;
+import com.gossip.arrienda_tu_finca.exceptions.PropertyNotFoundException;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Quotes with both optional rules on: 50% more in December and 10 per night for each resident over 2
+ */
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+    "arrienda.quote.high-season-months=12", "arrienda.quote.high-season-surcharge=0.5",
+    "arrienda.quote.included-residents=2", "arrienda.quote.extra-resident-price=10",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestPriceQuoteService {
+    @Autowired
+    private PriceQuoteService priceQuoteService;
+    @Autowired
+    private PropertyService propertyService;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Property property;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setEmail("host@example.com");
+        userRepository.save(owner);
+        property = new Property();
+        property.setName("Finca Bella");
+        property.setPricePerNight(100.0);
+        property.setAmountOfResidents(6);
+        property.setOwner(owner);
+        propertyRepository.save(property);
+    }
+
+    @Test
+    @Description("Test a quote that crosses into the high season with extra residents, and that a second quote does not read the database")
+    void givenStayInHighSeason_whenQuote_thenSurchargesAddedWithoutQueries() {
+        // Arrange
+        LocalDate arrival = LocalDate.of(2030, 11, 29);
+        LocalDate departure = LocalDate.of(2030, 12, 3);
+        priceQuoteService.quote(property.getId(), arrival, departure, 2);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act
+        PriceQuoteDTO quote = priceQuoteService.quote(property.getId(), arrival, departure, 4);
+
+        // Assert
+        assertEquals(4, quote.getNights());
+        assertEquals(400.0, quote.getBaseAmount());
+        assertEquals(100.0, quote.getHighSeasonSurcharge());
+        assertEquals(80.0, quote.getExtraResidentsSurcharge());
+        assertEquals(580.0, quote.getAmount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @Description("Test that a quote uses the new price right after the property is updated")
+    void givenUpdatedPrice_whenQuote_thenNewPrice() {
+        // Arrange
+        LocalDate arrival = LocalDate.of(2030, 3, 1);
+        assertEquals(200.0, priceQuoteService.quote(property.getId(), arrival, arrival.plusDays(2), null).getAmount());
+        PropertyUpdateDTO update = new PropertyUpdateDTO();
+        update.setName("Finca Bella");
+        update.setPricePerNight(150.0);
+        update.setAmountOfResidents(6);
+
+        // Act
+        propertyService.updateProperty(property.getId(), update);
+
+        // Assert
+        assertEquals(300.0, priceQuoteService.quote(property.getId(), arrival, arrival.plusDays(2), null).getAmount());
+    }
+
+    @Test
+    @Description("Test that a new rental request stores the amount of its quote")
+    void givenRentalRequest_whenCreate_thenAmountQuoted() {
+        // Arrange
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        LocalDate arrival = LocalDate.now().plusDays(10);
+        RentalRequestCreateDTO request = new RentalRequestCreateDTO();
+        request.setRequesterEmail("renter@example.com");
+        request.setArrivalDate(arrival);
+        request.setDepartureDate(arrival.plusDays(3));
+        request.setAmountOfResidents(3);
+        PriceQuoteDTO quote = priceQuoteService.quote(property.getId(), arrival, arrival.plusDays(3), 3);
+
+        // Act
+        rentalRequestService.createRequest(property.getId(), request);
+
+        // Assert
+        assertEquals(quote.getAmount(), rentalRequestRepository.findAll().get(0).getAmount());
+    }
+
+    @Test
+    @Description("Test the quotes that can not be computed")
+    void givenInvalidQuote_whenQuote_thenError() {
+        LocalDate arrival = LocalDate.of(2030, 3, 1);
+        assertThrows(PropertyNotFoundException.class, () -> priceQuoteService.quote(property.getId() + 1, arrival, arrival.plusDays(1), null));
+        assertThrows(InvalidDateException.class, () -> priceQuoteService.quote(property.getId(), arrival, arrival, null));
+        assertThrows(InvalidAmountOfResidentsException.class, () -> priceQuoteService.quote(property.getId(), arrival, arrival.plusDays(1), 7));
+    }
+}
@@ -0,0 +1,259 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RatingAggregate;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "arrienda.ratings.reconcile-chunk-size=1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestRatingAggregates {
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RatingReconciliation ratingReconciliation;
+    @Autowired
+    private PropertyImportService propertyImportService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PropertyService propertyService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User host;
+    private User renter;
+    private Property property;
+
+    @BeforeEach
+    void setUp() {
+        host = new User();
+        host.setEmail("host@example.com");
+        userRepository.save(host);
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        property.setOwner(host);
+        propertyRepository.save(property);
+    }
+
+    private Long paidRequest() {
+        return paidRequest(property);
+    }
+
+    private Long paidRequest(Property reviewed) {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(reviewed);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(3));
+        request.setDepartureDate(LocalDate.now().plusDays(5));
+        request.setApproved(true);
+        request.setPaid(true);
+        return rentalRequestRepository.save(request).getId();
+    }
+
+    private void reviewAll(Long requestId, int rating) {
+        rentalRequestService.reviewProperty(requestId, new CommentDTO("Muy buena", rating, "renter@example.com"));
+        rentalRequestService.reviewHost(requestId, new CommentDTO("Muy amable", rating, "renter@example.com"));
+        rentalRequestService.reviewRenter(requestId, new CommentDTO("Muy cuidadoso", rating, "host@example.com"));
+    }
+
+    @Test
+    @Description("Test that each review adds to the sum, count and histogram and that a new review of the same request replaces the old one")
+    void givenReviews_whenSaved_thenAggregatesUpdated() {
+        // Arrange
+        Long first = paidRequest();
+        Long second = paidRequest();
+        Long third = paidRequest();
+
+        // Act
+        reviewAll(first, 5);
+        reviewAll(second, 2);
+        reviewAll(third, 4);
+        reviewAll(third, 3);
+
+        // Assert
+        RatingAggregate expected = new RatingAggregate(10, 3, 0, 1, 1, 0, 1);
+        Property reviewed = propertyRepository.findById(property.getId()).get();
+        assertEquals(expected, reviewed.getRatings());
+        assertEquals(10.0 / 3, reviewed.getRating());
+        User reviewedHost = userRepository.findById(host.getId()).get();
+        assertEquals(expected, reviewedHost.getHostRatings());
+        assertEquals(10.0 / 3, reviewedHost.getRatingHost());
+        User reviewedRenter = userRepository.findById(renter.getId()).get();
+        assertEquals(expected, reviewedRenter.getRenterRatings());
+        assertEquals(10.0 / 3, reviewedRenter.getRatingRenter());
+    }
+
+    @Test
+    @Description("Test that a property read while a review is not committed yet does not keep the old rating in the cache")
+    void givenReadBeforeCommit_whenReviewed_thenCacheHasNewRating() throws Exception {
+        // Arrange
+        Long requestId = paidRequest();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+
+        // Act
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            rentalRequestService.reviewProperty(requestId, new CommentDTO("Muy buena", 4, "renter@example.com"));
+            // Otro hilo lee la propiedad antes de que la reseña confirme y la guarda en la cache con la calificacion anterior
+            try {
+                assertEquals(0.0, reader.submit(() -> propertyService.getPropertyById(property.getId()).getRating()).get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        reader.shutdown();
+
+        // Assert
+        assertEquals(4.0, propertyService.getPropertyById(property.getId()).getRating());
+    }
+
+    @Test
+    @Description("Test that the reconciliation rebuilds wrong aggregates from the comments and leaves the right ones")
+    void givenWrongAggregates_whenReconciled_thenRebuiltFromComments() {
+        // Arrange
+        reviewAll(paidRequest(), 4);
+        reviewAll(paidRequest(), 1);
+        Property wrongProperty = propertyRepository.findById(property.getId()).get();
+        wrongProperty.setRatings(new RatingAggregate(100, 1, 0, 0, 0, 0, 1));
+        wrongProperty.setRating(100);
+        propertyRepository.save(wrongProperty);
+        User wrongRenter = userRepository.findById(renter.getId()).get();
+        wrongRenter.setRenterRatings(new RatingAggregate());
+        userRepository.save(wrongRenter);
+
+        // Act
+        int corrected = ratingReconciliation.reconcile();
+        int correctedAgain = ratingReconciliation.reconcile();
+
+        // Assert
+        assertEquals(2, corrected);
+        assertEquals(0, correctedAgain);
+        RatingAggregate expected = new RatingAggregate(5, 2, 1, 0, 0, 1, 0);
+        assertEquals(expected, propertyRepository.findById(property.getId()).get().getRatings());
+        assertEquals(2.5, propertyRepository.findById(property.getId()).get().getRating());
+        assertEquals(expected, userRepository.findById(renter.getId()).get().getRenterRatings());
+        assertEquals(expected, userRepository.findById(host.getId()).get().getHostRatings());
+    }
+
+    @Test
+    @Description("Test that a property from the bulk import starts without reviews and its first review is counted")
+    void givenImportedProperty_whenReviewed_thenAggregatesStartFromZero() throws IOException {
+        // Arrange
+        String row = "{\"name\":\"Finca Importada\",\"description\":\"Desc\",\"municipality\":\"Cali\",\"department\":\"Valle\","
+                + "\"typeOfEntrance\":\"Carretera\",\"address\":\"Km 1\",\"link\":\"www.finca.com\",\"pricePerNight\":100.0,"
+                + "\"amountOfRooms\":2,\"amountOfBathrooms\":1,\"amountOfResidents\":4,\"isPetFriendly\":true,\"hasPool\":false,"
+                + "\"hasGril\":false,\"ownerEmail\":\"host@example.com\"}\n";
+        propertyImportService.importProperties(new ByteArrayInputStream(row.getBytes(StandardCharsets.UTF_8)), false);
+        Property imported = propertyRepository.findAllByOwnerEmail("host@example.com").stream()
+                .filter(candidate -> candidate.getName().equals("Finca Importada")).findFirst().get();
+
+        // Act
+        RatingAggregate beforeReview = imported.getRatings();
+        rentalRequestService.reviewProperty(paidRequest(imported), new CommentDTO("Muy buena", 4, "renter@example.com"));
+
+        // Assert
+        assertEquals(new RatingAggregate(), beforeReview);
+        Property reviewed = propertyRepository.findById(imported.getId()).get();
+        assertEquals(new RatingAggregate(4, 1, 0, 0, 0, 1, 0), reviewed.getRatings());
+        assertEquals(4.0, reviewed.getRating());
+    }
+
+    @Test
+    @Description("Test that the startup job fills the aggregates of the rows that only have the average from before the upgrade")
+    void givenAverageWithoutAggregates_whenStarted_thenBackfilled() {
+        // Arrange
+        reviewAll(paidRequest(), 4);
+        reviewAll(paidRequest(), 2);
+        // Como una fila escrita antes de los acumulados, la columna nueva quedo en 0
+        Property legacy = propertyRepository.findById(property.getId()).get();
+        legacy.setRatings(new RatingAggregate());
+        propertyRepository.save(legacy);
+        User legacyHost = userRepository.findById(host.getId()).get();
+        legacyHost.setHostRatings(new RatingAggregate());
+        userRepository.save(legacyHost);
+
+        // Act
+        ratingReconciliation.reconcileOnStartup();
+        rentalRequestService.reviewProperty(paidRequest(), new CommentDTO("Muy buena", 3, "renter@example.com"));
+
+        // Assert
+        Property backfilled = propertyRepository.findById(property.getId()).get();
+        assertEquals(new RatingAggregate(9, 3, 0, 1, 1, 1, 0), backfilled.getRatings());
+        assertEquals(3.0, backfilled.getRating());
+        assertEquals(new RatingAggregate(6, 2, 0, 1, 0, 1, 0), userRepository.findById(host.getId()).get().getHostRatings());
+    }
+
+    @Test
+    @Description("Test that concurrent reviews of the same request replace each other without counting twice")
+    void givenConcurrentReviews_whenSaved_thenCountedOnce() throws Exception {
+        // Arrange
+        Long requestId = paidRequest();
+        int reviewers = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(reviewers);
+        List<Future<?>> reviews = new ArrayList<>();
+
+        // Act
+        for (int i = 1; i <= reviewers; i++) {
+            int rating = i;
+            reviews.add(executor.submit(() -> {
+                start.await();
+                rentalRequestService.reviewProperty(requestId, new CommentDTO("Reseña " + rating, rating, "renter@example.com"));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> review : reviews) {
+            review.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        List<Comment> comments = rentalRequestRepository.findCommentsByPropertyId(property.getId());
+        assertEquals(1, comments.size());
+        RatingAggregate ratings = propertyRepository.findById(property.getId()).get().getRatings();
+        assertEquals(1, ratings.getRatingCount());
+        assertEquals(comments.get(0).getRating(), ratings.getRatingSum());
+    }
+}
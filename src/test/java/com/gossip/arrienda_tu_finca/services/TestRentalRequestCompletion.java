@@ -0,0 +1,143 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.events.RentalRequestCompletedEvent;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidStateTransitionException;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "arrienda.completion.chunk-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RecordApplicationEvents
+class TestRentalRequestCompletion {
+    @Autowired
+    private RentalRequestCompletionService rentalRequestCompletionService;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    private Property property;
+    private User renter;
+
+    @BeforeEach
+    void setUp() {
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+    }
+
+    private Long createRequest(int departureDay, boolean paid, boolean canceled) {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(departureDay - 3));
+        request.setDepartureDate(LocalDate.now().plusDays(departureDay));
+        request.setApproved(true);
+        request.setPaid(paid);
+        request.setCanceled(canceled);
+        return rentalRequestRepository.save(request).getId();
+    }
+
+    private boolean isCompleted(Long requestId) {
+        return rentalRequestRepository.findById(requestId).get().isCompleted();
+    }
+
+    @Test
+    @Description("Test that the sweep completes in chunks only the paid requests whose departure passed, with one event each")
+    void givenFinishedStays_whenSweep_thenCompletedWithOneEventEach() {
+        // Arrange
+        List<Long> finished = List.of(createRequest(-1, true, false), createRequest(-3, true, false),
+                createRequest(-10, true, false), createRequest(-2, true, false), createRequest(-5, true, false));
+        Long departsToday = createRequest(0, true, false);
+        Long unpaid = createRequest(-1, false, false);
+        Long canceled = createRequest(-1, true, true);
+
+        // Act
+        int completed = rentalRequestCompletionService.completeFinishedStays();
+
+        // Assert
+        assertEquals(finished.size(), completed);
+        finished.forEach(id -> assertTrue(isCompleted(id)));
+        assertFalse(isCompleted(departsToday));
+        assertFalse(isCompleted(unpaid));
+        assertFalse(isCompleted(canceled));
+        List<RentalRequestCompletedEvent> events = applicationEvents.stream(RentalRequestCompletedEvent.class).toList();
+        assertEquals(finished.size(), events.size());
+        assertTrue(events.stream().map(RentalRequestCompletedEvent::getRequestId).toList().containsAll(finished));
+        assertTrue(events.stream().allMatch(event -> property.getId().equals(event.getPropertyId())
+                && "renter@example.com".equals(event.getRenterEmail()) && event.getDepartureDate().isBefore(LocalDate.now())));
+        assertEquals(0, rentalRequestCompletionService.completeFinishedStays());
+    }
+
+    @Test
+    @Description("Test that a finished stay without property does not stop the sweep of the following ones")
+    void givenFinishedStayWithoutProperty_whenSweep_thenAllCompleted() {
+        // Arrange
+        Long withoutProperty = createRequest(-10, true, false);
+        RentalRequest request = rentalRequestRepository.findById(withoutProperty).get();
+        request.setProperty(null);
+        rentalRequestRepository.save(request);
+        Long withProperty = createRequest(-1, true, false);
+
+        // Act
+        int completed = rentalRequestCompletionService.completeFinishedStays();
+
+        // Assert
+        assertEquals(2, completed);
+        assertTrue(isCompleted(withoutProperty));
+        assertTrue(isCompleted(withProperty));
+        assertTrue(applicationEvents.stream(RentalRequestCompletedEvent.class)
+                .anyMatch(event -> withoutProperty.equals(event.getRequestId()) && event.getPropertyId() == null));
+    }
+
+    @Test
+    @Description("Test that a request completed by the host is not completed again by the sweep")
+    void givenCompletedByHost_whenSweep_thenNoSecondEvent() {
+        // Arrange
+        Long requestId = createRequest(-1, true, false);
+        rentalRequestService.completeRequest(requestId);
+
+        // Act
+        int completed = rentalRequestCompletionService.completeFinishedStays();
+
+        // Assert
+        assertEquals(0, completed);
+        assertEquals(1, applicationEvents.stream(RentalRequestCompletedEvent.class).count());
+        assertThrows(InvalidStateTransitionException.class, () -> rentalRequestService.completeRequest(requestId));
+    }
+}
@@ -0,0 +1,186 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventEntry;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestEventType;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.events.RentalRequestEventConsumer;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidStateTransitionException;
+import com.gossip.arrienda_tu_finca.repositories.EventRelayOffsetRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestEventEntryRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "arrienda.outbox.batch-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import(TestRentalRequestEventLog.RecordingConsumerConfig.class)
+class TestRentalRequestEventLog {
+    @Autowired
+    private RentalRequestEventLog rentalRequestEventLog;
+    @Autowired
+    private RentalRequestEventRelay rentalRequestEventRelay;
+    @Autowired
+    private RecordingConsumer recordingConsumer;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private RentalRequestEventEntryRepository eventEntryRepository;
+    @Autowired
+    private EventRelayOffsetRepository offsetRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long requestId;
+
+    /**
+     * Consumer that keeps the ids it receives and can fail the next batch
+     */
+    static class RecordingConsumer implements RentalRequestEventConsumer {
+        private final List<Long> received = new ArrayList<>();
+        private boolean failNext = false;
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void consume(List<RentalRequestEventEntry> entries) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("Consumidor caido");
+            }
+            entries.forEach(entry -> received.add(entry.getId()));
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingConsumerConfig {
+        @Bean
+        RecordingConsumer recordingConsumer() {
+            return new RecordingConsumer();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        User host = new User();
+        host.setEmail("host@example.com");
+        userRepository.save(host);
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        Property property = new Property();
+        property.setName("Finca Bella");
+        property.setOwner(host);
+        propertyRepository.save(property);
+
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(3));
+        request.setDepartureDate(LocalDate.now().plusDays(5));
+        requestId = rentalRequestRepository.save(request).getId();
+    }
+
+    private RentalRequestEventEntry entry(LocalDateTime occurredAt) {
+        return eventEntryRepository.save(new RentalRequestEventEntry(null, requestId, null, RentalRequestEventType.CREATED,
+                null, null, occurredAt));
+    }
+
+    @Test
+    @Description("Test that every transition and review appends one entry and a failed transition appends none")
+    void givenLifecycle_whenTransitions_thenLogInOrder() {
+        // Arrange
+        rentalRequestService.approveRequest(requestId);
+        rentalRequestService.payRequest(requestId);
+
+        // Act
+        assertThrows(InvalidStateTransitionException.class, () -> rentalRequestService.cancelRequest(requestId));
+        rentalRequestService.reviewProperty(requestId, new CommentDTO("Muy buena", 5, "renter@example.com"));
+        rentalRequestService.completeRequest(requestId);
+
+        // Assert
+        List<RentalRequestEventEntry> entries = rentalRequestEventLog.findByRequest(requestId);
+        assertEquals(List.of(RentalRequestEventType.APPROVED, RentalRequestEventType.PAID, RentalRequestEventType.PROPERTY_REVIEWED,
+                RentalRequestEventType.COMPLETED), entries.stream().map(RentalRequestEventEntry::getType).toList());
+        assertTrue(entries.stream().allMatch(entry -> "host@example.com".equals(entry.getHostEmail())
+                && "renter@example.com".equals(entry.getRenterEmail())));
+    }
+
+    @Test
+    @Description("Test that the relay delivers the log in batches once, and again after the consumer fails")
+    void givenEntries_whenRelay_thenDeliveredAtLeastOnce() {
+        // Arrange
+        rentalRequestService.approveRequest(requestId);
+        rentalRequestService.payRequest(requestId);
+        rentalRequestService.completeRequest(requestId);
+        List<Long> ids = rentalRequestEventLog.findByRequest(requestId).stream().map(RentalRequestEventEntry::getId).toList();
+        recordingConsumer.failNext = true;
+
+        // Act
+        rentalRequestEventRelay.relay();
+        List<Long> afterFailure = new ArrayList<>(recordingConsumer.received);
+        rentalRequestEventRelay.relay();
+        rentalRequestEventRelay.relay();
+
+        // Assert
+        assertTrue(afterFailure.isEmpty());
+        assertEquals(ids, recordingConsumer.received);
+        assertEquals(ids.get(2), offsetRepository.findById("recording").get().getLastEventId());
+        assertEquals(ids.get(2), offsetRepository.findById("metrics").get().getLastEventId());
+    }
+
+    @Test
+    @Description("Test that the relay waits for a recent missing id and skips it once it is older than the gap timeout")
+    void givenMissingId_whenRelay_thenWaitsUntilGapTimeout() {
+        // Arrange
+        RentalRequestEventEntry first = entry(LocalDateTime.now());
+        RentalRequestEventEntry missing = entry(LocalDateTime.now());
+        RentalRequestEventEntry third = entry(LocalDateTime.now());
+        // Como una transaccion que aun no confirma, o que fue revertida
+        eventEntryRepository.delete(missing);
+
+        // Act
+        rentalRequestEventRelay.relay();
+        List<Long> beforeTimeout = new ArrayList<>(recordingConsumer.received);
+        third.setOccurredAt(LocalDateTime.now().minusMinutes(2));
+        eventEntryRepository.save(third);
+        rentalRequestEventRelay.relay();
+
+        // Assert
+        assertEquals(List.of(first.getId()), beforeTimeout);
+        assertEquals(List.of(first.getId(), third.getId()), recordingConsumer.received);
+    }
+}
@@ -0,0 +1,228 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.events.RentalRequestStatusEvent;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties",
+        properties = {"arrienda.events.history-size=2", "arrienda.events.buffer-size=2"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestRentalRequestEventStream {
+    @Autowired
+    private RentalRequestEventStream rentalRequestEventStream;
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long requestId;
+
+    @BeforeEach
+    void setUp() {
+        User host = new User();
+        host.setEmail("host@example.com");
+        userRepository.save(host);
+        User renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        Property property = new Property();
+        property.setName("Finca Bella");
+        property.setOwner(host);
+        propertyRepository.save(property);
+
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(3));
+        request.setDepartureDate(LocalDate.now().plusDays(5));
+        requestId = rentalRequestRepository.save(request).getId();
+    }
+
+    /**
+     * SseEmitter that keeps the text of every event instead of writing it to a response, send and complete wait for release
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release;
+
+        private RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        private RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void complete() {
+            // Como el emisor real, complete espera a que termine el send en curso
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.complete();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    @Description("Test that a committed transition is pushed to the host and the renter of the request and to nobody else")
+    void givenOpenStreams_whenApproved_thenHostAndRenterReceiveIt() throws InterruptedException {
+        // Arrange
+        RecordingEmitter host = new RecordingEmitter();
+        RecordingEmitter renter = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        rentalRequestEventStream.subscribe("host@example.com", null, host);
+        rentalRequestEventStream.subscribe("renter@example.com", null, renter);
+        rentalRequestEventStream.subscribe("other@example.com", null, other);
+
+        // Act
+        rentalRequestService.approveRequest(requestId);
+
+        // Assert
+        await(() -> host.sent.size() == 1 && renter.sent.size() == 1);
+        for (RecordingEmitter emitter : List.of(host, renter)) {
+            String event = emitter.sent.get(0);
+            assertTrue(event.startsWith("id:" + rentalRequestEventStream.eventId(1) + "\nevent:rental-request\ndata:"));
+            assertTrue(event.contains("\"requestId\":" + requestId));
+            assertTrue(event.contains("\"status\":\"APPROVED\""));
+        }
+        assertTrue(other.sent.isEmpty());
+        assertEquals(3, rentalRequestEventStream.countConnections());
+    }
+
+    @Test
+    @Description("Test that a client that reconnects with Last-Event-ID receives only the changes it missed")
+    void givenLastEventId_whenReconnect_thenMissedEventsReplayed() throws InterruptedException {
+        // Arrange
+        rentalRequestService.approveRequest(requestId);
+        rentalRequestService.payRequest(requestId);
+        RecordingEmitter renter = new RecordingEmitter();
+
+        // Act
+        rentalRequestEventStream.subscribe("renter@example.com", rentalRequestEventStream.eventId(1), renter);
+
+        // Assert
+        await(() -> renter.sent.size() == 1);
+        assertTrue(renter.sent.get(0).startsWith("id:" + rentalRequestEventStream.eventId(2) + "\nevent:rental-request\n"));
+        assertTrue(renter.sent.get(0).contains("\"status\":\"PAID\""));
+    }
+
+    @Test
+    @Description("Test that a client that missed changes no longer kept, or that comes from before a restart, receives a reset event")
+    void givenDiscardedEvents_whenReconnect_thenReset() throws InterruptedException {
+        // Arrange
+        rentalRequestService.approveRequest(requestId);
+        rentalRequestService.payRequest(requestId);
+        rentalRequestService.completeRequest(requestId);
+        RecordingEmitter missed = new RecordingEmitter();
+        RecordingEmitter restarted = new RecordingEmitter();
+        RecordingEmitter legacy = new RecordingEmitter();
+
+        // Act
+        rentalRequestEventStream.subscribe("renter@example.com", rentalRequestEventStream.eventId(0), missed);
+        // Antes del reinicio la secuencia habia llegado a 2, el mismo numero en el arranque nuevo ya es otro evento
+        rentalRequestEventStream.subscribe("host@example.com", "1-2", restarted);
+        rentalRequestEventStream.subscribe("host@example.com", "2", legacy);
+
+        // Assert
+        await(() -> missed.sent.size() == 1 && restarted.sent.size() == 1 && legacy.sent.size() == 1);
+        String reset = "id:" + rentalRequestEventStream.eventId(3) + "\nevent:reset\n";
+        assertTrue(missed.sent.get(0).startsWith(reset));
+        assertTrue(restarted.sent.get(0).startsWith(reset));
+        assertTrue(legacy.sent.get(0).startsWith(reset));
+    }
+
+    @Test
+    @Description("Test that a stream whose buffer is full is closed without blocking the others")
+    void givenSlowClient_whenBufferFull_thenOnlyItsStreamIsClosed() throws InterruptedException {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter();
+        rentalRequestEventStream.subscribe("renter@example.com", null, slow);
+        rentalRequestEventStream.subscribe("host@example.com", null, fast);
+
+        // Act
+        // El primer evento queda esperando en send del cliente lento y los siguientes llenan su buffer
+        for (int i = 1; i <= 5; i++) {
+            rentalRequestEventStream.onStatusChanged(new RentalRequestStatusEvent(requestId, 1L, "host@example.com",
+                    "renter@example.com", RentalRequestStatus.PENDING));
+            int received = i;
+            await(() -> fast.sent.size() == received);
+        }
+        release.countDown();
+
+        // Assert
+        assertEquals(1, rentalRequestEventStream.countConnections());
+        assertTrue(slow.sent.size() <= 1);
+    }
+
+    @Test
+    @Description("Test that the heartbeat writes a comment to every open stream")
+    void givenOpenStream_whenHeartbeat_thenCommentSent() throws InterruptedException {
+        // Arrange
+        RecordingEmitter renter = new RecordingEmitter();
+        rentalRequestEventStream.subscribe("renter@example.com", null, renter);
+
+        // Act
+        rentalRequestEventStream.sendHeartbeats();
+
+        // Assert
+        await(() -> renter.sent.size() == 1);
+        assertEquals(":heartbeat\n\n", renter.sent.get(0));
+    }
+}
@@ -0,0 +1,130 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "arrienda.expiration.chunk-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestRentalRequestExpiration {
+    @Autowired
+    private RentalRequestExpirationService rentalRequestExpirationService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Property property;
+    private User renter;
+
+    @BeforeEach
+    void setUp() {
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+    }
+
+    private RentalRequest createRequest(int arrivalDay, LocalDateTime approvedAt, boolean paid) {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(property);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(arrivalDay));
+        request.setDepartureDate(LocalDate.now().plusDays(arrivalDay + 2));
+        request.setApproved(approvedAt != null);
+        request.setApprovedAt(approvedAt);
+        request.setPaid(paid);
+        RentalRequest saved = rentalRequestRepository.save(request);
+        availabilityIndex.put(saved);
+        return saved;
+    }
+
+    private boolean isExpired(RentalRequest request) {
+        return rentalRequestRepository.findById(request.getId()).get().isExpired();
+    }
+
+    @Test
+    @Description("Test that the expiration only marks the unpaid approved requests past the deadline and the pending requests past the arrival")
+    void givenStaleRequests_whenExpire_thenOnlyStaleAreExpired() {
+        // Arrange
+        LocalDateTime threeDaysAgo = LocalDateTime.now().minusDays(3);
+        RentalRequest unpaid = createRequest(10, threeDaysAgo, false);
+        RentalRequest unpaidArrived = createRequest(-1, LocalDateTime.now(), false);
+        RentalRequest recentlyApproved = createRequest(20, LocalDateTime.now().minusHours(1), false);
+        RentalRequest paid = createRequest(30, threeDaysAgo, true);
+        RentalRequest pendingArrived = createRequest(-2, null, false);
+        RentalRequest pendingArrivedToo = createRequest(-5, null, false);
+        RentalRequest pendingArrivesToday = createRequest(0, null, false);
+        RentalRequest pendingFuture = createRequest(5, null, false);
+
+        // Act
+        int expired = rentalRequestExpirationService.expireStaleRequests();
+
+        // Assert
+        assertEquals(4, expired);
+        assertTrue(isExpired(unpaid));
+        assertTrue(isExpired(unpaidArrived));
+        assertTrue(isExpired(pendingArrived));
+        assertTrue(isExpired(pendingArrivedToo));
+        assertFalse(isExpired(recentlyApproved));
+        assertFalse(isExpired(paid));
+        assertFalse(isExpired(pendingArrivesToday));
+        assertFalse(isExpired(pendingFuture));
+        assertTrue(availabilityIndex.isFree(property.getId(), unpaid.getArrivalDate(), unpaid.getDepartureDate()));
+        assertFalse(availabilityIndex.isFree(property.getId(), paid.getArrivalDate(), paid.getDepartureDate()));
+    }
+
+    @Test
+    @Description("Test that the expiration publishes the rows scanned and expired by rule and does nothing on a second run")
+    void givenStaleRequests_whenExpireTwice_thenMetricsCountFirstRun() {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            createRequest(-1 - i, null, false);
+        }
+        createRequest(10, LocalDateTime.now().minusDays(3), false);
+
+        // Act
+        int firstRun = rentalRequestExpirationService.expireStaleRequests();
+        int secondRun = rentalRequestExpirationService.expireStaleRequests();
+
+        // Assert
+        assertEquals(6, firstRun);
+        assertEquals(0, secondRun);
+        assertEquals(5, meterRegistry.counter("rental.requests.expired", "rule", RentalRequestExpirationService.PENDING_RULE).count());
+        assertEquals(5, meterRegistry.counter("rental.requests.expiration.scanned", "rule", RentalRequestExpirationService.PENDING_RULE).count());
+        assertEquals(1, meterRegistry.counter("rental.requests.expired", "rule", RentalRequestExpirationService.UNPAID_RULE).count());
+        assertEquals(2, meterRegistry.timer("rental.requests.expiration.duration").count());
+    }
+}
@@ -0,0 +1,217 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.dto.CommentDTO;
+import com.gossip.arrienda_tu_finca.dto.CursorPageDTO;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestDto;
+import com.gossip.arrienda_tu_finca.dto.RentalRequestSearchDTO;
+import com.gossip.arrienda_tu_finca.entities.Comment;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPageRequestException;
+import com.gossip.arrienda_tu_finca.repositories.CommentRepository;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestRentalRequestListings {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 10, 12, 0);
+
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+
+    private Property property;
+    private Property otherProperty;
+    private User host;
+    private User renter;
+
+    @BeforeEach
+    void setUp() {
+        host = new User();
+        host.setEmail("host@example.com");
+        userRepository.save(host);
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        property.setOwner(host);
+        propertyRepository.save(property);
+        otherProperty = new Property();
+        otherProperty.setName("Finca Lejana");
+        propertyRepository.save(otherProperty);
+    }
+
+    private Long createRequest(Property requestedProperty, LocalDateTime requestDateTime, boolean approved) {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(requestedProperty);
+        request.setRequester(renter);
+        request.setRequestDateTime(requestDateTime);
+        request.setArrivalDate(requestDateTime == null ? null : requestDateTime.toLocalDate().plusDays(30));
+        request.setApproved(approved);
+        return rentalRequestRepository.save(request).getId();
+    }
+
+    private List<Long> readAllPages(Long propertyId, RentalRequestSearchDTO search, int size, String sort) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<RentalRequestDto> page = rentalRequestService.getRequestsPageByProperty(propertyId, search, size, cursor, sort);
+            page.getItems().forEach(request -> ids.add(request.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    @Test
+    @Description("Test that the pages of a property follow the request date, with the id breaking ties and the requests without date at the end")
+    void givenRequests_whenReadAllPages_thenSortedByRequestDate() {
+        // Arrange
+        Long noDate = createRequest(property, null, false);
+        Long oldest = createRequest(property, NOW.minusDays(5), false);
+        Long tieFirst = createRequest(property, NOW.minusDays(1), false);
+        Long tieSecond = createRequest(property, NOW.minusDays(1), true);
+        Long newest = createRequest(property, NOW, false);
+        Long middle = createRequest(property, NOW.minusDays(3), true);
+        createRequest(otherProperty, NOW, false);
+
+        // Act
+        List<Long> newestFirst = readAllPages(property.getId(), new RentalRequestSearchDTO(), 2, "newest");
+        List<Long> oldestFirst = readAllPages(property.getId(), new RentalRequestSearchDTO(), 2, "oldest");
+
+        // Assert
+        assertEquals(List.of(newest, tieSecond, tieFirst, middle, oldest, noDate), newestFirst);
+        assertEquals(List.of(noDate, oldest, middle, tieFirst, tieSecond, newest), oldestFirst);
+    }
+
+    @Test
+    @Description("Test the status and date filters of the listings of the host and the renter")
+    void givenRequests_whenFilter_thenOnlyMatchingRequests() {
+        // Arrange
+        Long pending = createRequest(property, NOW.minusDays(2), false);
+        Long approved = createRequest(property, NOW.minusDays(1), true);
+        Long otherApproved = createRequest(otherProperty, NOW, true);
+        RentalRequestSearchDTO approvedSearch = new RentalRequestSearchDTO();
+        approvedSearch.setStatus("approved");
+        RentalRequestSearchDTO dateSearch = new RentalRequestSearchDTO();
+        dateSearch.setRequestedFrom(NOW.toLocalDate().minusDays(2));
+        dateSearch.setRequestedTo(NOW.toLocalDate().minusDays(2));
+        RentalRequestSearchDTO arrivalSearch = new RentalRequestSearchDTO();
+        arrivalSearch.setArrivalFrom(LocalDate.from(NOW).plusDays(29));
+
+        // Act
+        CursorPageDTO<RentalRequestDto> hostApproved = rentalRequestService.getRequestsPageByHost("host@example.com", approvedSearch, null, null, "newest");
+        CursorPageDTO<RentalRequestDto> renterApproved = rentalRequestService.getRequestsPageByRenter("renter@example.com", approvedSearch, null, null, "newest");
+        CursorPageDTO<RentalRequestDto> requestedThatDay = rentalRequestService.getRequestsPageByRenter("renter@example.com", dateSearch, null, null, "newest");
+        CursorPageDTO<RentalRequestDto> arrivingLater = rentalRequestService.getRequestsPageByRenter("renter@example.com", arrivalSearch, null, null, "oldest");
+        CursorPageDTO<RentalRequestDto> nobody = rentalRequestService.getRequestsPageByHost("nobody@example.com", new RentalRequestSearchDTO(), null, null, "newest");
+
+        // Assert
+        assertEquals(List.of(approved), hostApproved.getItems().stream().map(RentalRequestDto::getId).toList());
+        assertEquals(List.of(otherApproved, approved), renterApproved.getItems().stream().map(RentalRequestDto::getId).toList());
+        assertEquals(List.of(pending), requestedThatDay.getItems().stream().map(RentalRequestDto::getId).toList());
+        assertEquals(List.of(approved, otherApproved), arrivingLater.getItems().stream().map(RentalRequestDto::getId).toList());
+        assertEquals(0, nobody.getSize());
+        assertNull(nobody.getNextCursor());
+    }
+
+    @Test
+    @Description("Test that an unknown status, sort or cursor is rejected")
+    void givenInvalidParameters_whenGetPage_thenInvalidPageRequest() {
+        // Arrange
+        createRequest(property, NOW, false);
+        createRequest(property, NOW.minusDays(1), false);
+        RentalRequestSearchDTO unknownStatus = new RentalRequestSearchDTO();
+        unknownStatus.setStatus("lost");
+        String newestCursor = rentalRequestService.getRequestsPageByProperty(property.getId(), new RentalRequestSearchDTO(), 1, null, "newest").getNextCursor();
+
+        // Act & Assert
+        assertThrows(InvalidPageRequestException.class,
+                () -> rentalRequestService.getRequestsPageByProperty(property.getId(), unknownStatus, null, null, "newest"));
+        assertThrows(InvalidPageRequestException.class,
+                () -> rentalRequestService.getRequestsPageByProperty(property.getId(), new RentalRequestSearchDTO(), null, null, "price"));
+        assertThrows(InvalidPageRequestException.class,
+                () -> rentalRequestService.getRequestsPageByProperty(property.getId(), new RentalRequestSearchDTO(), null, newestCursor, "oldest"));
+        assertThrows(InvalidPageRequestException.class,
+                () -> rentalRequestService.getRequestsPageByProperty(property.getId(), new RentalRequestSearchDTO(), null, "bm90LWEtY3Vyc29y", "newest"));
+    }
+
+    // Cada reseña de la solicitud es un comentario distinto, la del huesped la escribe el anfitrion
+    private Comment review(Long requestId, String content, User author) {
+        Comment propertyComment = commentRepository.save(new Comment(null, content, 4, author));
+        Comment hostComment = commentRepository.save(new Comment(null, content + " anfitrion", 5, author));
+        Comment renterComment = commentRepository.save(new Comment(null, content + " huesped", 3, host));
+        RentalRequest request = rentalRequestRepository.findById(requestId).get();
+        request.setPropertyComment(propertyComment);
+        request.setHostComment(hostComment);
+        request.setRenterComment(renterComment);
+        rentalRequestRepository.save(request);
+        return propertyComment;
+    }
+
+    @Test
+    @Description("Test that the review pages skip the requests without review, go from the newest review and carry the name of the author")
+    void givenReviews_whenReadCommentPages_thenNewestFirstWithAuthorName() {
+        // Arrange
+        renter.setName("Ana");
+        renter.setSurname("Gomez");
+        userRepository.save(renter);
+        Comment oldest = review(createRequest(property, NOW.minusDays(3), true), "Buena", renter);
+        createRequest(property, NOW.minusDays(2), true);
+        Comment middle = review(createRequest(property, NOW.minusDays(1), true), "Muy buena", renter);
+        Comment newest = review(createRequest(property, NOW, true), "Excelente", renter);
+        review(createRequest(otherProperty, NOW, true), "Lejana", renter);
+
+        // Act
+        CursorPageDTO<CommentDTO> first = rentalRequestService.getPropertyCommentsPage(property.getId(), 2, null);
+        CursorPageDTO<CommentDTO> second = rentalRequestService.getPropertyCommentsPage(property.getId(), 2, first.getNextCursor());
+        CursorPageDTO<CommentDTO> hostPage = rentalRequestService.getHostCommentsPage("host@example.com", null, null);
+        CursorPageDTO<CommentDTO> renterPage = rentalRequestService.getRenterCommentsPage("renter@example.com", null, null);
+
+        // Assert
+        assertEquals(List.of(newest.getId(), middle.getId()), first.getItems().stream().map(CommentDTO::getId).toList());
+        assertEquals(List.of(oldest.getId()), second.getItems().stream().map(CommentDTO::getId).toList());
+        assertNull(second.getNextCursor());
+        assertEquals("Ana Gomez", first.getItems().get(0).getAuthorName());
+        assertEquals("renter@example.com", first.getItems().get(0).getAuthorEmail());
+        assertEquals("Excelente", first.getItems().get(0).getContent());
+        assertEquals(List.of("Excelente anfitrion", "Muy buena anfitrion", "Buena anfitrion"),
+                hostPage.getItems().stream().map(CommentDTO::getContent).toList());
+        assertEquals(4, renterPage.getSize());
+        assertTrue(renterPage.getItems().stream().allMatch(comment -> comment.getContent().endsWith(" huesped")
+                && comment.getAuthorEmail().equals("host@example.com")));
+        assertThrows(InvalidPageRequestException.class, () -> rentalRequestService.getRenterCommentsPage("renter@example.com", null, "bm90LWEtY3Vyc29y"));
+    }
+}
\ No newline at end of file
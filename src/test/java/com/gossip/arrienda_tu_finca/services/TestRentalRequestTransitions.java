@@ -0,0 +1,246 @@
+package com.gossip.arrienda_tu_finca.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import com.gossip.arrienda_tu_finca.ArriendaTuFincaApplication;
+import com.gossip.arrienda_tu_finca.entities.Property;
+import com.gossip.arrienda_tu_finca.entities.RentalRequest;
+import com.gossip.arrienda_tu_finca.entities.RentalRequestStatus;
+import com.gossip.arrienda_tu_finca.entities.User;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidPaymentException;
+import com.gossip.arrienda_tu_finca.exceptions.InvalidStateTransitionException;
+import com.gossip.arrienda_tu_finca.exceptions.OverlappingRequestException;
+import com.gossip.arrienda_tu_finca.repositories.PropertyRepository;
+import com.gossip.arrienda_tu_finca.repositories.RentalRequestRepository;
+import com.gossip.arrienda_tu_finca.repositories.UserRepository;
+
+/**
+ * Runs the rental request transitions from several threads at once, each transition is a guarded UPDATE
+ * so only one of the conflicting transitions can win, and the approvals of a property are serialized
+ * so two overlapping requests are never approved
+ */
+@SpringBootTest(classes = ArriendaTuFincaApplication.class)
+@TestPropertySource(locations = "classpath:application-test.properties")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TestRentalRequestTransitions {
+    private static final int ROUNDS = 20;
+    private static final int THREADS = 8;
+    private static final Logger logger = LoggerFactory.getLogger(TestRentalRequestTransitions.class);
+
+    @Autowired
+    private RentalRequestService rentalRequestService;
+    @Autowired
+    private RentalRequestRepository rentalRequestRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private ExecutorService executor;
+    private Property property;
+    private User renter;
+    // Cada solicitud creada con createRequest tiene sus propias noches
+    private int nextArrival = 10;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        renter = new User();
+        renter.setEmail("renter@example.com");
+        userRepository.save(renter);
+        property = new Property();
+        property.setName("Finca Bella");
+        propertyRepository.save(property);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Long createRequest(boolean approved) {
+        Long requestId = createRequest(property, nextArrival, nextArrival + 2, approved);
+        nextArrival += 2;
+        return requestId;
+    }
+
+    private Long createRequest(Property requestedProperty, int arrivalDay, int departureDay, boolean approved) {
+        RentalRequest request = new RentalRequest();
+        request.setProperty(requestedProperty);
+        request.setRequester(renter);
+        request.setArrivalDate(LocalDate.now().plusDays(arrivalDay));
+        request.setDepartureDate(LocalDate.now().plusDays(departureDay));
+        request.setApproved(approved);
+        return rentalRequestRepository.save(request).getId();
+    }
+
+    /**
+     * Starts all the tasks at the same time and counts the ones that did not throw
+     */
+    private int runTogether(List<Callable<Object>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (Callable<Object> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InvalidStateTransitionException
+                        || e.getCause() instanceof InvalidPaymentException
+                        || e.getCause() instanceof OverlappingRequestException,
+                        "Unexpected error " + e.getCause());
+            }
+        }
+        return succeeded;
+    }
+
+    @Test
+    @Description("Test that a request paid and canceled at the same time ends in only one of the two states")
+    void givenApprovedRequest_whenPayAndCancelConcurrently_thenOnlyOneWins() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long requestId = createRequest(true);
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS / 2; i++) {
+                tasks.add(() -> rentalRequestService.payRequest(requestId));
+                tasks.add(() -> {
+                    rentalRequestService.cancelRequest(requestId);
+                    return null;
+                });
+            }
+
+            assertEquals(1, runTogether(tasks));
+            RentalRequest request = rentalRequestRepository.findById(requestId).get();
+            assertFalse(request.isPaid() && request.isCanceled());
+            assertEquals(1, request.getVersion());
+        }
+    }
+
+    @Test
+    @Description("Test that a pending request approved from several threads is approved only once")
+    void givenPendingRequest_whenApproveConcurrently_thenApprovedOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Long requestId = createRequest(false);
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                tasks.add(() -> rentalRequestService.approveRequest(requestId));
+            }
+
+            assertEquals(1, runTogether(tasks));
+            assertEquals(RentalRequestStatus.APPROVED, RentalRequestStatus.of(rentalRequestRepository.findById(requestId).get()));
+        }
+    }
+
+    @Test
+    @Description("Test that overlapping requests of the same property approved at the same time are approved only once")
+    void givenOverlappingRequests_whenApproveConcurrently_thenApprovedOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Todas comparten la noche arrival + THREADS - 1
+            int arrival = 100 + round * 3 * THREADS;
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Long requestId = createRequest(property, arrival + i, arrival + THREADS + i, false);
+                tasks.add(() -> rentalRequestService.approveRequest(requestId));
+            }
+
+            assertEquals(1, runTogether(tasks));
+        }
+        assertEquals(ROUNDS, rentalRequestRepository.findAll().stream().filter(RentalRequest::isApproved).count());
+    }
+
+    @Test
+    @Description("Test the throughput of concurrent approvals over a few properties with random dates, without double bookings")
+    void givenRandomRequests_whenApproveConcurrently_thenNoDoubleBooking() throws Exception {
+        // Arrange
+        Random random = new Random(42);
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Property other = new Property();
+            other.setName("Finca " + i);
+            properties.add(propertyRepository.save(other));
+        }
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int arrival = random.nextInt(120);
+            Long requestId = createRequest(properties.get(i % properties.size()), arrival, arrival + 1 + random.nextInt(6), false);
+            tasks.add(() -> rentalRequestService.approveRequest(requestId));
+        }
+
+        // Act
+        long start = System.nanoTime();
+        int approved = runTogether(tasks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info("{} approvals tried by {} threads in {} s, {} approvals/s, {} approved",
+                tasks.size(), THREADS, String.format("%.3f", seconds), String.format("%.0f", tasks.size() / seconds), approved);
+
+        // Assert
+        List<RentalRequest> stays = rentalRequestRepository.findAll().stream().filter(RentalRequest::isApproved).toList();
+        assertEquals(approved, stays.size());
+        for (RentalRequest stay : stays) {
+            for (RentalRequest other : stays) {
+                boolean overlaps = stay.getProperty().getId().equals(other.getProperty().getId()) && !stay.getId().equals(other.getId())
+                        && stay.getArrivalDate().isBefore(other.getDepartureDate()) && other.getArrivalDate().isBefore(stay.getDepartureDate());
+                assertFalse(overlaps, "Requests " + stay.getId() + " and " + other.getId() + " are both approved");
+            }
+        }
+    }
+
+    @Test
+    @Description("Test the transitions that the state machine does not allow")
+    void givenFinalStates_whenTransition_thenConflict() {
+        Long requestId = createRequest(false);
+        rentalRequestService.rejectRequest(requestId);
+        assertThrows(InvalidStateTransitionException.class, () -> rentalRequestService.approveRequest(requestId));
+        assertThrows(InvalidStateTransitionException.class, () -> rentalRequestService.cancelRequest(requestId));
+
+        Long pendingId = createRequest(false);
+        assertThrows(InvalidStateTransitionException.class, () -> rentalRequestService.completeRequest(pendingId));
+    }
+
+    @Test
+    @Description("Test that saving a stale copy of a request after a transition fails instead of overwriting it")
+    void givenStaleRequest_whenSave_thenOptimisticLockFailure() {
+        Long requestId = createRequest(true);
+        RentalRequest stale = rentalRequestRepository.findById(requestId).get();
+        rentalRequestService.payRequest(requestId);
+
+        stale.setBank("Otro banco");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> rentalRequestRepository.save(stale));
+        assertTrue(rentalRequestRepository.findById(requestId).get().isPaid());
+    }
+}